@@ -0,0 +1,150 @@
+package com.function.comun;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * Pool de conexiones Oracle compartido por todas las funciones de un worker.
+ *
+ * El pool se crea de forma perezosa una sola vez por proceso, a partir de las
+ * variables de entorno DB_URL, DB_USER y DB_PASSWORD (la URL incluye el wallet
+ * en TNS_ADMIN). Su tamaño se ajusta con:
+ * <ul>
+ * <li>DB_POOL_MAX: máximo de conexiones (por defecto 5).</li>
+ * <li>DB_POOL_MIN_IDLE: conexiones inactivas que se mantienen abiertas (por
+ * defecto 1).</li>
+ * <li>DB_POOL_TIMEOUT_MS: espera máxima para obtener una conexión (por defecto
+ * 10000).</li>
+ * <li>DB_POOL_IDLE_TIMEOUT_MS y DB_POOL_MAX_LIFETIME_MS: retiro de conexiones
+ * inactivas o antiguas.</li>
+ * </ul>
+ */
+public final class ConexionBD {
+
+    private static final Logger LOGGER = Logger.getLogger(ConexionBD.class.getName());
+
+    private static final MetricasPool METRICAS = new MetricasPool();
+
+    private static volatile HikariDataSource dataSource;
+
+    private ConexionBD() {
+    }
+
+    /**
+     * Obtiene una conexión del pool. Debe cerrarse (try-with-resources) para
+     * devolverla.
+     */
+    public static Connection getConnection() throws SQLException {
+        DataSource ds;
+        try {
+            ds = getDataSource();
+        } catch (RuntimeException e) {
+            // Configuración inválida o BD inalcanzable: se reporta como error SQL,
+            // igual que lo hacía DriverManager.
+            throw new SQLException("No se pudo inicializar el pool de conexiones: " + e.getMessage(), e);
+        }
+        return ds.getConnection();
+    }
+
+    /**
+     * Retorna el DataSource compartido, creándolo en el primer uso.
+     */
+    public static DataSource getDataSource() {
+        HikariDataSource ds = dataSource;
+        if (ds == null) {
+            synchronized (ConexionBD.class) {
+                ds = dataSource;
+                if (ds == null) {
+                    ds = new HikariDataSource(configuracion(System.getenv()));
+                    dataSource = ds;
+                    calentar(ds);
+                    LOGGER.info("Pool de conexiones creado: " + METRICAS.instantanea());
+                }
+            }
+        }
+        return ds;
+    }
+
+    /**
+     * Crea y calienta el pool en segundo plano, para que la primera invocación
+     * no pague el handshake TLS con la base de datos. No hace nada si DB_URL no
+     * está configurada (por ejemplo, en pruebas unitarias).
+     */
+    public static void precalentar() {
+        if (dataSource != null || System.getenv("DB_URL") == null) {
+            return;
+        }
+        Thread hilo = new Thread(() -> {
+            try {
+                getDataSource();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "No se pudo precalentar el pool de conexiones: " + e.getMessage(), e);
+            }
+        }, "precalentar-pool-bd");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Retorna las métricas actuales del pool: conexiones activas e inactivas,
+     * hilos esperando y tiempos de espera al pedir una conexión.
+     */
+    public static MetricasPool.Instantanea metricas() {
+        return METRICAS.instantanea();
+    }
+
+    /**
+     * Construye la configuración del pool a partir de las variables de entorno.
+     */
+    static HikariConfig configuracion(Map<String, String> env) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("oracle-pool");
+        config.setJdbcUrl(env.get("DB_URL"));
+        config.setUsername(env.get("DB_USER"));
+        config.setPassword(env.get("DB_PASSWORD"));
+
+        int maximo = Entorno.entero(env, "DB_POOL_MAX", 5);
+        config.setMaximumPoolSize(maximo);
+        config.setMinimumIdle(Math.min(Entorno.entero(env, "DB_POOL_MIN_IDLE", 1), maximo));
+        config.setConnectionTimeout(Entorno.entero(env, "DB_POOL_TIMEOUT_MS", 10_000));
+        config.setIdleTimeout(Entorno.entero(env, "DB_POOL_IDLE_TIMEOUT_MS", 600_000));
+        config.setMaxLifetime(Entorno.entero(env, "DB_POOL_MAX_LIFETIME_MS", 1_800_000));
+
+        config.setMetricsTrackerFactory(METRICAS);
+        config.setRegisterMbeans(true);
+        return config;
+    }
+
+    /**
+     * Abre las conexiones mínimas del pool para establecer los handshakes antes
+     * de la primera solicitud.
+     */
+    private static void calentar(HikariDataSource ds) {
+        List<Connection> conexiones = new ArrayList<>();
+        try {
+            for (int i = 0; i < ds.getMinimumIdle(); i++) {
+                conexiones.add(ds.getConnection());
+            }
+        } catch (SQLException e) {
+            LOGGER.warning("Calentamiento parcial del pool: " + e.getMessage());
+        } finally {
+            for (Connection conn : conexiones) {
+                try {
+                    conn.close();
+                } catch (SQLException ignored) {
+                    // La conexión simplemente no vuelve al pool.
+                }
+            }
+        }
+    }
+}
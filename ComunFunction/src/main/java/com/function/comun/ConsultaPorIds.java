@@ -0,0 +1,84 @@
+package com.function.comun;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Consulta un conjunto de ids con WHERE id IN (...) en vez de una consulta
+ * por id. Los ids repetidos se envían una sola vez y, si superan el límite de
+ * Oracle para una lista IN (1000), se reparten en varias consultas sobre la
+ * misma conexión.
+ *
+ * La lista de marcadores se rellena hasta el siguiente tamaño de
+ * {@link #TAMANOS} repitiendo el último id: así cada sentencia tiene a lo
+ * sumo ocho textos SQL distintos, que Oracle parsea una vez y reutiliza desde
+ * el shared pool, en vez de un hard parse nuevo por cada cantidad de ids.
+ */
+public final class ConsultaPorIds {
+
+    /** Máximo de elementos de una lista IN en Oracle. */
+    public static final int MAX_IDS_POR_CONSULTA = 1000;
+
+    /** Cantidades de marcadores con las que se arma la lista IN. */
+    static final int[] TAMANOS = { 8, 16, 32, 64, 128, 256, 512, MAX_IDS_POR_CONSULTA };
+
+    /**
+     * Procesa cada fila del resultado.
+     */
+    @FunctionalInterface
+    public interface Fila {
+        void leer(ResultSet rs) throws SQLException;
+    }
+
+    private ConsultaPorIds() {
+    }
+
+    /**
+     * Ejecuta la consulta para todos los ids.
+     *
+     * @param sql  Sentencia con un único "%s" donde va la lista de marcadores,
+     *             por ejemplo "SELECT ... FROM usuarios WHERE id_usuario IN (%s)".
+     * @param ids  Ids a consultar.
+     * @param fila Se invoca una vez por cada fila leída.
+     */
+    public static void consultar(Connection conn, String sql, Collection<Integer> ids, Fila fila)
+            throws SQLException {
+        List<Integer> unicos = new ArrayList<>(new LinkedHashSet<>(ids));
+        for (int desde = 0; desde < unicos.size(); desde += MAX_IDS_POR_CONSULTA) {
+            List<Integer> tramo = unicos.subList(desde, Math.min(desde + MAX_IDS_POR_CONSULTA, unicos.size()));
+            int tamano = tamanoRelleno(tramo.size());
+            String marcadores = String.join(", ", Collections.nCopies(tamano, "?"));
+            try (PreparedStatement ps = conn.prepareStatement(String.format(sql, marcadores))) {
+                // Los marcadores sobrantes repiten el último id: IN no devuelve filas repetidas
+                for (int i = 0; i < tamano; i++) {
+                    ps.setInt(i + 1, tramo.get(Math.min(i, tramo.size() - 1)));
+                }
+                ps.setFetchSize(tramo.size());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        fila.leer(rs);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Menor tamaño de {@link #TAMANOS} que admite {@code cantidad} ids.
+     */
+    static int tamanoRelleno(int cantidad) {
+        for (int tamano : TAMANOS) {
+            if (cantidad <= tamano) {
+                return tamano;
+            }
+        }
+        throw new IllegalArgumentException("Se permiten hasta " + MAX_IDS_POR_CONSULTA + " ids por consulta.");
+    }
+}
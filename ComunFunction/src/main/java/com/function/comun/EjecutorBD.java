@@ -0,0 +1,76 @@
+package com.function.comun;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecutor de consultas JDBC en segundo plano, para que los resolvers GraphQL
+ * retornen CompletableFuture y los campos hermanos consulten en paralelo.
+ *
+ * Usa tantos hilos como conexiones tiene el pool (DB_POOL_MAX, por defecto
+ * 5): más hilos solo esperarían una conexión libre dentro de Hikari. Las
+ * tareas que exceden ese límite esperan en la cola del ejecutor, y los hilos
+ * inactivos se liberan después de 60 segundos.
+ */
+public final class EjecutorBD {
+
+    private static volatile EjecutorBD instancia;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Operación JDBC que se ejecuta en el ejecutor.
+     */
+    @FunctionalInterface
+    public interface Consulta<T> {
+        T ejecutar() throws SQLException;
+    }
+
+    public EjecutorBD(int hilos) {
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "consultas-bd-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Retorna el ejecutor del worker, dimensionado como el pool de conexiones.
+     */
+    public static EjecutorBD getInstancia() {
+        EjecutorBD e = instancia;
+        if (e == null) {
+            synchronized (EjecutorBD.class) {
+                e = instancia;
+                if (e == null) {
+                    e = new EjecutorBD(Entorno.entero(System.getenv(), "DB_POOL_MAX", 5));
+                    instancia = e;
+                }
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Ejecuta la consulta en segundo plano. Si lanza una excepción, el futuro
+     * se completa con esa misma excepción (sin envolverla), para que GraphQL
+     * informe el mensaje original.
+     */
+    public <T> CompletableFuture<T> ejecutar(Consulta<T> consulta) {
+        CompletableFuture<T> futuro = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                futuro.complete(consulta.ejecutar());
+            } catch (SQLException | RuntimeException e) {
+                futuro.completeExceptionally(e);
+            }
+        });
+        return futuro;
+    }
+}
@@ -0,0 +1,34 @@
+package com.function.comun;
+
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Lectura de parámetros numéricos desde las variables de entorno de la
+ * Function App. Un valor mal escrito se registra y se reemplaza por el valor
+ * por defecto, en vez de impedir que arranque la función.
+ */
+public final class Entorno {
+
+    private static final Logger LOGGER = Logger.getLogger(Entorno.class.getName());
+
+    private Entorno() {
+    }
+
+    /**
+     * Retorna la variable como entero, o el valor por defecto si no existe o no
+     * es numérica.
+     */
+    public static int entero(Map<String, String> env, String nombre, int porDefecto) {
+        String valor = env.get(nombre);
+        if (valor == null || valor.isBlank()) {
+            return porDefecto;
+        }
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warning("Valor no numérico en " + nombre + ", se usa " + porDefecto);
+            return porDefecto;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.function.comun;
+
+import com.google.gson.Gson;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Publicador de eventos hacia un tópico de Azure Event Grid.
+ *
+ * Mantiene un único HttpClient (HTTP/2, keep-alive) por worker, con un
+ * executor acotado y timeouts de conexión y de respuesta, en lugar de crear un
+ * cliente nuevo por cada evento. Se configura con las variables de entorno:
+ * <ul>
+ * <li>EVENT_GRID_TOPIC_ENDPOINT y EVENT_GRID_TOPIC_KEY: tópico de destino
+ * (permite apuntar a un servidor local de pruebas). Sin clave la publicación
+ * queda deshabilitada: cada envío falla de inmediato y los eventos del outbox
+ * esperan pendientes.</li>
+ * <li>EVENT_GRID_CONNECT_TIMEOUT_MS y EVENT_GRID_TIMEOUT_MS: timeouts de
+ * conexión y de respuesta.</li>
+ * <li>EVENT_GRID_HILOS: hilos del executor del cliente HTTP.</li>
+ * <li>EVENT_GRID_MODO: "lote" agrupa los eventos de todas las invocaciones en
+ * micro-lotes (ver {@link LoteEventGrid}); cualquier otro valor envía cada
+ * evento de inmediato.</li>
+ * <li>EVENT_GRID_LOTE_EVENTOS, EVENT_GRID_LOTE_BYTES y EVENT_GRID_LOTE_MS:
+ * límites que disparan el envío de un lote.</li>
+ * <li>EVENT_GRID_COLA_CAPACIDAD, EVENT_GRID_COLA_POLITICA
+ * (bloquear, descartar_nuevo, descartar_antiguo) y EVENT_GRID_COLA_ESPERA_MS:
+ * comportamiento de la cola cuando está llena.</li>
+ * <li>EVENT_GRID_LOTE_ENVIOS: POST simultáneos máximos en modo lote.</li>
+ * </ul>
+ */
+public class EventGridPublisher {
+
+    private static final String ENDPOINT_POR_DEFECTO = "https://topic-cloudnative2.eastus-1.eventgrid.azure.net/api/events";
+
+    private static final Gson GSON = new Gson();
+    private static final Logger LOGGER = Logger.getLogger(EventGridPublisher.class.getName());
+
+    private static volatile EventGridPublisher instancia;
+
+    private final URI endpoint;
+    private final String clave;
+    private final Duration timeout;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+
+    /** Agrupador de eventos; null si cada evento se envía de inmediato. */
+    private volatile LoteEventGrid lotes;
+
+    /**
+     * Crea un publicador hacia el endpoint indicado.
+     *
+     * @param endpoint       URL del tópico (o de un servidor local de pruebas).
+     * @param clave          Clave SAS del tópico (cabecera aeg-sas-key); null o
+     *                       vacía deshabilita la publicación.
+     * @param connectTimeout Tiempo máximo para establecer la conexión.
+     * @param timeout        Tiempo máximo de espera de cada respuesta.
+     * @param hilos          Hilos del executor del cliente HTTP.
+     */
+    public EventGridPublisher(URI endpoint, String clave, Duration connectTimeout, Duration timeout, int hilos) {
+        this.endpoint = endpoint;
+        this.clave = clave == null || clave.isBlank() ? null : clave;
+        this.timeout = timeout;
+        this.executor = crearExecutor(hilos);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * Retorna el publicador compartido del worker, creándolo en el primer uso.
+     */
+    public static EventGridPublisher getInstancia() {
+        EventGridPublisher p = instancia;
+        if (p == null) {
+            synchronized (EventGridPublisher.class) {
+                p = instancia;
+                if (p == null) {
+                    p = desdeEntorno(System.getenv());
+                    instancia = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Crea un publicador configurado con las variables de entorno.
+     */
+    static EventGridPublisher desdeEntorno(Map<String, String> env) {
+        EventGridPublisher publisher = new EventGridPublisher(
+                URI.create(env.getOrDefault("EVENT_GRID_TOPIC_ENDPOINT", ENDPOINT_POR_DEFECTO)),
+                env.get("EVENT_GRID_TOPIC_KEY"),
+                Duration.ofMillis(Entorno.entero(env, "EVENT_GRID_CONNECT_TIMEOUT_MS", 5_000)),
+                Duration.ofMillis(Entorno.entero(env, "EVENT_GRID_TIMEOUT_MS", 10_000)),
+                Entorno.entero(env, "EVENT_GRID_HILOS", 2));
+        if (!publisher.isHabilitado()) {
+            LOGGER.warning("EVENT_GRID_TOPIC_KEY no está definida: la publicación a Event Grid queda deshabilitada");
+        }
+
+        if ("lote".equalsIgnoreCase(env.get("EVENT_GRID_MODO"))) {
+            LoteEventGrid.Politica politica;
+            try {
+                politica = LoteEventGrid.Politica.valueOf(
+                        env.getOrDefault("EVENT_GRID_COLA_POLITICA", "bloquear").trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                politica = LoteEventGrid.Politica.BLOQUEAR;
+            }
+            publisher.conLotes(
+                    Entorno.entero(env, "EVENT_GRID_LOTE_EVENTOS", 100),
+                    Entorno.entero(env, "EVENT_GRID_LOTE_BYTES", 1_000_000),
+                    Duration.ofMillis(Entorno.entero(env, "EVENT_GRID_LOTE_MS", 200)),
+                    Entorno.entero(env, "EVENT_GRID_COLA_CAPACIDAD", 10_000),
+                    politica,
+                    Duration.ofMillis(Entorno.entero(env, "EVENT_GRID_COLA_ESPERA_MS", 1_000)),
+                    Entorno.entero(env, "EVENT_GRID_LOTE_ENVIOS", 4));
+        }
+        return publisher;
+    }
+
+    /**
+     * Activa el modo por lotes: desde ahora {@link #publicar} encola los eventos
+     * y un hilo de fondo los envía agrupados.
+     */
+    public EventGridPublisher conLotes(int maxEventos, int maxBytes, Duration maxEspera, int capacidad,
+            LoteEventGrid.Politica politica, Duration esperaBloqueo, int maxEnvios) {
+        this.lotes = new LoteEventGrid(this, maxEventos, maxBytes, maxEspera, capacidad, politica,
+                esperaBloqueo, maxEnvios);
+        return this;
+    }
+
+    /**
+     * Indica si hay clave para publicar. Sin ella los envíos fallan sin
+     * contactar a Event Grid.
+     */
+    public boolean isHabilitado() {
+        return clave != null;
+    }
+
+    /**
+     * Retorna el agrupador de eventos, o null si el modo por lotes no está activo.
+     */
+    public LoteEventGrid getLotes() {
+        return lotes;
+    }
+
+    /**
+     * Publica un evento y registra el resultado en el logger de la invocación.
+     * En modo lote el evento se encola y se envía junto a otros. No lanza
+     * excepciones: los errores de envío sólo se registran.
+     */
+    public CompletableFuture<Void> publicar(EventoGrid evento, Logger logger) {
+        LoteEventGrid lote = lotes;
+        if (lote != null) {
+            return lote.encolar(evento)
+                    .thenRun(() -> logger.info(
+                            "Evento " + evento.getEventType() + " enviado a Event Grid en lote"))
+                    .exceptionally(e -> {
+                        logger.severe("Error al enviar evento a Event Grid: " + e.getMessage());
+                        return null;
+                    });
+        }
+        return enviar(List.of(evento))
+                .thenAccept(status -> logger.info(
+                        "Evento " + evento.getEventType() + " enviado a Event Grid: " + status))
+                .exceptionally(e -> {
+                    logger.severe("Error al enviar evento a Event Grid: " + e.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * Envía los eventos en un único POST (Event Grid acepta un arreglo).
+     *
+     * @return Código de estado HTTP de la respuesta. Falla si no es 2xx.
+     */
+    public CompletableFuture<Integer> enviar(List<EventoGrid> eventos) {
+        return enviarJson(GSON.toJson(eventos));
+    }
+
+    /**
+     * Envía un arreglo JSON de eventos ya serializado.
+     */
+    CompletableFuture<Integer> enviarJson(String jsonEventos) {
+        if (clave == null) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Publicación a Event Grid deshabilitada: falta EVENT_GRID_TOPIC_KEY"));
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(endpoint)
+                .timeout(timeout)
+                .header("aeg-sas-key", clave)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(jsonEventos))
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new RespuestaNoExitosa(response.statusCode());
+                    }
+                    return response.statusCode();
+                });
+    }
+
+    /**
+     * Respuesta no 2xx de Event Grid, con su código de estado.
+     */
+    public static final class RespuestaNoExitosa extends IllegalStateException {
+
+        private final int status;
+
+        RespuestaNoExitosa(int status) {
+            super("Event Grid respondió " + status);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * Indica si Event Grid rechazó el contenido (400 evento inválido, 413
+         * demasiado grande): repetir el mismo envío no va a servir.
+         */
+        public boolean rechazaContenido() {
+            return status == 400 || status == 413;
+        }
+    }
+
+    private static ExecutorService crearExecutor(int hilos) {
+        AtomicInteger contador = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "event-grid-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,61 @@
+package com.function.comun;
+
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Evento con el esquema de Azure Event Grid (id, eventType, subject,
+ * eventTime, data y dataVersion).
+ */
+public class EventoGrid {
+
+    private final String id;
+    private final String eventType;
+    private final String subject;
+    private final String eventTime;
+    private final Map<String, Object> data;
+    private final String dataVersion;
+
+    public EventoGrid(String id, String eventType, String subject, String eventTime,
+            Map<String, Object> data, String dataVersion) {
+        this.id = id;
+        this.eventType = eventType;
+        this.subject = subject;
+        this.eventTime = eventTime;
+        this.data = data;
+        this.dataVersion = dataVersion;
+    }
+
+    /**
+     * Crea un evento nuevo con id aleatorio, fecha actual y versión "1.0".
+     */
+    public static EventoGrid nuevo(String eventType, String subject, Map<String, Object> data) {
+        return new EventoGrid(UUID.randomUUID().toString(), eventType, subject,
+                OffsetDateTime.now().toString(), data, "1.0");
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getEventTime() {
+        return eventTime;
+    }
+
+    public Map<String, Object> getData() {
+        return data;
+    }
+
+    public String getDataVersion() {
+        return dataVersion;
+    }
+}
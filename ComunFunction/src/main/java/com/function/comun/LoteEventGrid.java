@@ -0,0 +1,260 @@
+package com.function.comun;
+
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Agrupa en micro-lotes los eventos publicados por todas las invocaciones de
+ * un worker y los envía a Event Grid como un único arreglo JSON.
+ *
+ * Un lote se envía cuando alcanza el máximo de eventos, el máximo de bytes o
+ * cuando el primer evento lleva esperando el tiempo máximo. La cola es acotada;
+ * cuando se llena se aplica la {@link Politica} configurada.
+ */
+public class LoteEventGrid {
+
+    /**
+     * Qué hacer cuando la cola de eventos pendientes está llena.
+     */
+    public enum Politica {
+        /** Espera hasta que haya espacio (backpressure); descarta si vence la espera. */
+        BLOQUEAR,
+        /** Descarta el evento que se intenta encolar. */
+        DESCARTAR_NUEVO,
+        /** Descarta el evento más antiguo de la cola para dar espacio al nuevo. */
+        DESCARTAR_ANTIGUO
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(LoteEventGrid.class.getName());
+    private static final Gson GSON = new Gson();
+
+    private final EventGridPublisher publisher;
+    private final int maxEventos;
+    private final int maxBytes;
+    private final long maxEsperaNanos;
+    private final Politica politica;
+    private final Duration esperaBloqueo;
+    private final BlockingQueue<Pendiente> cola;
+    private final Semaphore enviosEnCurso;
+
+    private final LongAdder encolados = new LongAdder();
+    private final LongAdder descartados = new LongAdder();
+    private final LongAdder lotesEnviados = new LongAdder();
+    private final LongAdder eventosEnviados = new LongAdder();
+    private final LongAdder eventosFallidos = new LongAdder();
+
+    /** Evento que no cupo en el lote anterior y abre el siguiente. */
+    private Pendiente sobrante;
+
+    /**
+     * @param publisher     Publicador que realiza los POST a Event Grid.
+     * @param maxEventos    Eventos máximos por lote.
+     * @param maxBytes      Tamaño máximo del arreglo JSON de un lote.
+     * @param maxEspera     Tiempo máximo que espera el primer evento de un lote.
+     * @param capacidad     Eventos pendientes máximos en la cola.
+     * @param politica      Política cuando la cola está llena.
+     * @param esperaBloqueo Espera máxima con la política BLOQUEAR.
+     * @param maxEnvios     POST simultáneos máximos hacia Event Grid.
+     */
+    public LoteEventGrid(EventGridPublisher publisher, int maxEventos, int maxBytes, Duration maxEspera,
+            int capacidad, Politica politica, Duration esperaBloqueo, int maxEnvios) {
+        this.publisher = publisher;
+        this.maxEventos = maxEventos;
+        this.maxBytes = maxBytes;
+        this.maxEsperaNanos = maxEspera.toNanos();
+        this.politica = politica;
+        this.esperaBloqueo = esperaBloqueo;
+        this.cola = new ArrayBlockingQueue<>(capacidad);
+        this.enviosEnCurso = new Semaphore(maxEnvios);
+
+        Thread hilo = new Thread(this::procesar, "event-grid-lotes");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Encola un evento para el próximo lote.
+     *
+     * @return Future que se completa cuando el lote que contiene el evento es
+     *         aceptado por Event Grid, o falla si el evento se descarta o el
+     *         envío falla. Un evento que por sí solo supera el máximo de bytes
+     *         de un lote falla de inmediato con IllegalArgumentException.
+     */
+    public CompletableFuture<Void> encolar(EventoGrid evento) {
+        String json = GSON.toJson(evento);
+        Pendiente pendiente = new Pendiente(json, json.getBytes(StandardCharsets.UTF_8).length);
+        // Un lote de un solo evento ocupa sus bytes más los corchetes del arreglo
+        if (pendiente.bytes + 2 > maxBytes) {
+            descartados.increment();
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Evento " + evento.getEventType() + " de " + pendiente.bytes + " bytes supera el máximo de "
+                            + maxBytes + " bytes de un lote de Event Grid"));
+        }
+
+        boolean aceptado;
+        switch (politica) {
+            case DESCARTAR_NUEVO:
+                aceptado = cola.offer(pendiente);
+                break;
+            case DESCARTAR_ANTIGUO:
+                aceptado = cola.offer(pendiente);
+                while (!aceptado) {
+                    Pendiente antiguo = cola.poll();
+                    if (antiguo != null) {
+                        descartar(antiguo);
+                    }
+                    aceptado = cola.offer(pendiente);
+                }
+                break;
+            default:
+                try {
+                    aceptado = cola.offer(pendiente, esperaBloqueo.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    aceptado = false;
+                }
+        }
+
+        if (aceptado) {
+            encolados.increment();
+        } else {
+            descartar(pendiente);
+        }
+        return pendiente.resultado;
+    }
+
+    /**
+     * Retorna los contadores acumulados del publicador por lotes.
+     */
+    public Metricas metricas() {
+        return new Metricas(encolados.sum(), descartados.sum(), lotesEnviados.sum(),
+                eventosEnviados.sum(), eventosFallidos.sum(), cola.size());
+    }
+
+    private void descartar(Pendiente pendiente) {
+        descartados.increment();
+        pendiente.resultado.completeExceptionally(
+                new IllegalStateException("Cola de Event Grid llena: evento descartado"));
+    }
+
+    /**
+     * Bucle del hilo de envío: arma un lote y lo envía de forma asíncrona.
+     */
+    private void procesar() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<Pendiente> lote = siguienteLote();
+                enviosEnCurso.acquire();
+                enviar(lote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LOGGER.severe("Error inesperado armando lote de eventos: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Arma el siguiente lote. El primer evento siempre cabe: encolar rechaza
+     * los que superan el máximo de bytes por sí solos.
+     */
+    private List<Pendiente> siguienteLote() throws InterruptedException {
+        Pendiente primero = sobrante != null ? sobrante : cola.take();
+        sobrante = null;
+
+        List<Pendiente> lote = new ArrayList<>();
+        lote.add(primero);
+        int bytes = primero.bytes + 2;
+        long limite = System.nanoTime() + maxEsperaNanos;
+
+        while (lote.size() < maxEventos) {
+            long restante = limite - System.nanoTime();
+            if (restante <= 0) {
+                break;
+            }
+            Pendiente p = cola.poll(restante, TimeUnit.NANOSECONDS);
+            if (p == null) {
+                break;
+            }
+            if (bytes + p.bytes + 1 > maxBytes) {
+                sobrante = p;
+                break;
+            }
+            lote.add(p);
+            bytes += p.bytes + 1;
+        }
+        return lote;
+    }
+
+    private void enviar(List<Pendiente> lote) {
+        StringBuilder json = new StringBuilder(lote.size() * 256).append('[');
+        for (int i = 0; i < lote.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(lote.get(i).json);
+        }
+        json.append(']');
+
+        CompletableFuture<Integer> envio;
+        try {
+            envio = publisher.enviarJson(json.toString());
+        } catch (RuntimeException e) {
+            envio = CompletableFuture.failedFuture(e);
+        }
+        envio.whenComplete((status, error) -> {
+            enviosEnCurso.release();
+            if (error == null) {
+                lotesEnviados.increment();
+                eventosEnviados.add(lote.size());
+                lote.forEach(p -> p.resultado.complete(null));
+            } else {
+                eventosFallidos.add(lote.size());
+                LOGGER.severe("Error al enviar lote de " + lote.size() + " eventos a Event Grid: "
+                        + error.getMessage());
+                lote.forEach(p -> p.resultado.completeExceptionally(error));
+            }
+        });
+    }
+
+    /**
+     * Evento ya serializado a la espera de su lote.
+     */
+    private static final class Pendiente {
+        final String json;
+        final int bytes;
+        final CompletableFuture<Void> resultado = new CompletableFuture<>();
+
+        Pendiente(String json, int bytes) {
+            this.json = json;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Contadores del publicador por lotes.
+     */
+    public record Metricas(long encolados, long descartados, long lotesEnviados,
+            long eventosEnviados, long eventosFallidos, int pendientes) {
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "{\"encolados\":%d,\"descartados\":%d,\"lotesEnviados\":%d,\"eventosEnviados\":%d,"
+                            + "\"eventosFallidos\":%d,\"pendientes\":%d}",
+                    encolados, descartados, lotesEnviados, eventosEnviados, eventosFallidos, pendientes);
+        }
+    }
+}
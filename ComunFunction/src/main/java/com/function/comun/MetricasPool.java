@@ -0,0 +1,87 @@
+package com.function.comun;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Acumula las métricas del pool de conexiones: tiempo de espera al pedir una
+ * conexión (borrow-wait), timeouts y conexiones activas/inactivas.
+ * Hikari invoca el tracker en cada préstamo, por eso sólo se usan contadores
+ * atómicos sin bloqueo.
+ */
+public class MetricasPool implements MetricsTrackerFactory {
+
+    private final LongAdder prestamos = new LongAdder();
+    private final LongAdder esperaTotalNanos = new LongAdder();
+    private final LongAccumulator esperaMaximaNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder timeouts = new LongAdder();
+    private final AtomicLong conexionesCreadas = new AtomicLong();
+
+    private volatile PoolStats poolStats;
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                conexionesCreadas.incrementAndGet();
+            }
+
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                prestamos.increment();
+                esperaTotalNanos.add(elapsedAcquiredNanos);
+                esperaMaximaNanos.accumulate(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    /**
+     * Retorna una foto de las métricas actuales del pool.
+     */
+    public Instantanea instantanea() {
+        PoolStats stats = poolStats;
+        long n = prestamos.sum();
+        double esperaPromedioMs = n == 0 ? 0.0
+                : (double) esperaTotalNanos.sum() / n / TimeUnit.MILLISECONDS.toNanos(1);
+        return new Instantanea(
+                stats == null ? 0 : stats.getActiveConnections(),
+                stats == null ? 0 : stats.getIdleConnections(),
+                stats == null ? 0 : stats.getTotalConnections(),
+                stats == null ? 0 : stats.getPendingThreads(),
+                n,
+                esperaPromedioMs,
+                (double) esperaMaximaNanos.get() / TimeUnit.MILLISECONDS.toNanos(1),
+                timeouts.sum(),
+                conexionesCreadas.get());
+    }
+
+    /**
+     * Valores del pool en un instante dado.
+     */
+    public record Instantanea(int activas, int inactivas, int totales, int esperando,
+            long prestamos, double esperaPromedioMs, double esperaMaximaMs,
+            long timeouts, long conexionesCreadas) {
+
+        @Override
+        public String toString() {
+            return String.format(java.util.Locale.ROOT,
+                    "{\"activas\":%d,\"inactivas\":%d,\"totales\":%d,\"esperando\":%d,\"prestamos\":%d,"
+                            + "\"esperaPromedioMs\":%.3f,\"esperaMaximaMs\":%.3f,\"timeouts\":%d,\"conexionesCreadas\":%d}",
+                    activas, inactivas, totales, esperando, prestamos,
+                    esperaPromedioMs, esperaMaximaMs, timeouts, conexionesCreadas);
+        }
+    }
+}
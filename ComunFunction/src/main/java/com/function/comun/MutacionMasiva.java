@@ -0,0 +1,211 @@
+package com.function.comun;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ejecuta la misma sentencia DML para muchos elementos con un único
+ * PreparedStatement por lotes (executeBatch) y una sola transacción, en vez
+ * de una conexión y un commit por elemento.
+ *
+ * Si el lote falla, se deshace y se repite elemento por elemento en la misma
+ * transacción: así se informa el error de cada elemento y se confirma el
+ * resto (igual que el consumidor de eventos). El lote se envía al driver en
+ * tramos de {@link #TAMANO_TRAMO} filas.
+ */
+public final class MutacionMasiva {
+
+    /** Máximo de elementos por mutación. */
+    public static final int MAXIMO_ELEMENTOS = 5000;
+    /** Filas por executeBatch, para acotar la memoria del driver. */
+    public static final int TAMANO_TRAMO = 500;
+
+    private static final String SECUENCIA_SQL = "SELECT sequence_name FROM user_tab_identity_cols "
+            + "WHERE table_name = ? AND column_name = ?";
+
+    /** Secuencia de identidad de cada tabla.columna, consultada una vez por worker. */
+    private static final Map<String, String> SECUENCIAS = new ConcurrentHashMap<>();
+
+    /**
+     * Asigna los parámetros del elemento {@code indice}.
+     */
+    @FunctionalInterface
+    public interface Parametros {
+        void asignar(PreparedStatement ps, int indice) throws SQLException;
+    }
+
+    /**
+     * Eventos que la mutación registra en el outbox según el resultado de
+     * cada elemento (por ejemplo, uno por fila creada).
+     */
+    @FunctionalInterface
+    public interface Eventos {
+        List<EventoGrid> de(Resultado resultado);
+    }
+
+    /**
+     * Filas afectadas por cada elemento, o su error (null si no falló).
+     */
+    public record Resultado(int[] filas, String[] errores) {
+
+        public boolean exitoso(int indice) {
+            return errores[indice] == null;
+        }
+    }
+
+    private MutacionMasiva() {
+    }
+
+    /**
+     * Reserva ids de la secuencia de identidad de la columna en un solo viaje
+     * a la BD. El driver de Oracle no retorna claves generadas en un lote
+     * ("DML Returning cannot be batched"), así que los INSERT masivos envían
+     * el id explícito (las columnas son GENERATED BY DEFAULT).
+     *
+     * @param tabla   Nombre de la tabla en el diccionario (mayúsculas).
+     * @param columna Columna de identidad (mayúsculas).
+     * @return Ids en orden ascendente.
+     */
+    public static List<Integer> reservarIds(Connection conn, String tabla, String columna, int cantidad)
+            throws SQLException {
+        validar(cantidad);
+        String secuencia = SECUENCIAS.get(tabla + "." + columna);
+        if (secuencia == null) {
+            try (PreparedStatement ps = conn.prepareStatement(SECUENCIA_SQL)) {
+                ps.setString(1, tabla);
+                ps.setString(2, columna);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("La columna " + tabla + "." + columna + " no es de identidad.");
+                    }
+                    secuencia = rs.getString(1);
+                }
+            }
+            SECUENCIAS.put(tabla + "." + columna, secuencia);
+        }
+
+        List<Integer> ids = new ArrayList<>(cantidad);
+        String sql = "SELECT \"" + secuencia.replace("\"", "") + "\".NEXTVAL FROM dual CONNECT BY LEVEL <= ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, cantidad);
+            ps.setFetchSize(cantidad);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    /**
+     * Ejecuta la sentencia para los {@code cantidad} elementos y confirma.
+     *
+     * @throws SQLException si falla la conexión o el commit; en ese caso no se
+     *                      confirma ningún elemento.
+     */
+    public static Resultado ejecutar(Connection conn, String sql, int cantidad, Parametros parametros)
+            throws SQLException {
+        return ejecutar(conn, List.of(sql), cantidad, parametros);
+    }
+
+    /**
+     * Ejecuta varias sentencias por elemento, en orden y con los mismos
+     * parámetros (por ejemplo, borrar las filas dependientes antes que la
+     * principal), y confirma. Las filas informadas son las de la última
+     * sentencia. Si al repetir elemento por elemento falla una de ellas, se
+     * deshacen también las anteriores de ese elemento.
+     *
+     * @throws SQLException si falla la conexión o el commit; en ese caso no se
+     *                      confirma ningún elemento.
+     */
+    public static Resultado ejecutar(Connection conn, List<String> sentencias, int cantidad, Parametros parametros)
+            throws SQLException {
+        return ejecutar(conn, sentencias, cantidad, parametros, resultado -> List.of());
+    }
+
+    /**
+     * Como {@link #ejecutar(Connection, List, int, Parametros)}, pero antes
+     * del commit registra en el outbox los eventos que indica {@code eventos}:
+     * se confirman o se descartan junto con las filas que describen.
+     */
+    public static Resultado ejecutar(Connection conn, List<String> sentencias, int cantidad, Parametros parametros,
+            Eventos eventos) throws SQLException {
+        validar(cantidad);
+        int[] filas = new int[cantidad];
+        String[] errores = new String[cantidad];
+        if (cantidad == 0) {
+            return new Resultado(filas, errores);
+        }
+
+        conn.setAutoCommit(false);
+        List<PreparedStatement> preparadas = new ArrayList<>(sentencias.size());
+        try {
+            for (String sql : sentencias) {
+                preparadas.add(conn.prepareStatement(sql));
+            }
+            PreparedStatement ultima = preparadas.get(preparadas.size() - 1);
+            try {
+                for (int desde = 0; desde < cantidad; desde += TAMANO_TRAMO) {
+                    int hasta = Math.min(desde + TAMANO_TRAMO, cantidad);
+                    for (PreparedStatement ps : preparadas) {
+                        for (int i = desde; i < hasta; i++) {
+                            parametros.asignar(ps, i);
+                            ps.addBatch();
+                        }
+                        int[] tramo = ps.executeBatch();
+                        if (ps == ultima) {
+                            System.arraycopy(tramo, 0, filas, desde, hasta - desde);
+                        }
+                    }
+                }
+            } catch (BatchUpdateException e) {
+                // No todos los drivers indican qué fila falló: se repite una a una
+                conn.rollback();
+                for (PreparedStatement ps : preparadas) {
+                    ps.clearBatch();
+                }
+                for (int i = 0; i < cantidad; i++) {
+                    Savepoint punto = preparadas.size() > 1 ? conn.setSavepoint() : null;
+                    try {
+                        for (PreparedStatement ps : preparadas) {
+                            parametros.asignar(ps, i);
+                            filas[i] = ps.executeUpdate();
+                        }
+                    } catch (SQLException fila) {
+                        if (punto != null) {
+                            conn.rollback(punto);
+                        }
+                        filas[i] = 0;
+                        errores[i] = fila.getMessage();
+                    }
+                }
+            }
+            Outbox.registrar(conn, eventos.de(new Resultado(filas, errores)));
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            for (PreparedStatement ps : preparadas) {
+                ps.close();
+            }
+        }
+        return new Resultado(filas, errores);
+    }
+
+    private static void validar(int cantidad) {
+        if (cantidad > MAXIMO_ELEMENTOS) {
+            throw new IllegalArgumentException("Se permiten hasta " + MAXIMO_ELEMENTOS + " elementos por mutación.");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.function.comun;
+
+import com.google.gson.Gson;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Registro de eventos en la tabla outbox_eventos.
+ *
+ * El evento se inserta con la misma conexión (y transacción) que la mutación
+ * que lo origina, de modo que se confirma o se descarta junto con ella.
+ * {@link OutboxRelay} lo publica después en Event Grid.
+ */
+public final class Outbox {
+
+    static final String INSERT_SQL = "INSERT INTO outbox_eventos "
+            + "(id_evento, tipo_evento, asunto, fecha_evento, data, version_data) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final Gson GSON = new Gson();
+
+    private Outbox() {
+    }
+
+    /**
+     * Inserta el evento en el outbox. No hace commit: eso queda a cargo de la
+     * transacción de la mutación.
+     */
+    public static void registrar(Connection conn, EventoGrid evento) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            asignar(ps, evento);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Inserta varios eventos con un solo executeBatch (mutaciones masivas).
+     * Tampoco hace commit.
+     */
+    public static void registrar(Connection conn, List<EventoGrid> eventos) throws SQLException {
+        if (eventos.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            for (EventoGrid evento : eventos) {
+                asignar(ps, evento);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static void asignar(PreparedStatement ps, EventoGrid evento) throws SQLException {
+        ps.setString(1, evento.getId());
+        ps.setString(2, evento.getEventType());
+        ps.setString(3, evento.getSubject());
+        ps.setString(4, evento.getEventTime());
+        ps.setString(5, GSON.toJson(evento.getData()));
+        ps.setString(6, evento.getDataVersion());
+    }
+}
@@ -0,0 +1,336 @@
+package com.function.comun;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * Publica en Event Grid los eventos pendientes de la tabla outbox_eventos.
+ *
+ * Cada lote se reserva en una transacción corta: se lee en orden de id con
+ * FOR UPDATE SKIP LOCKED (varios workers pueden drenar a la vez sin repetir
+ * filas), se marca con reservado_hasta y se confirma. El POST a Event Grid se
+ * hace sin transacción abierta ni conexión tomada del pool, y el resultado se
+ * marca en una segunda transacción. Si el worker muere entre medio, la reserva
+ * vence y otro drenado vuelve a enviar el lote (la entrega es
+ * al-menos-una-vez). La lectura se corta a los OUTBOX_LOTE primeros registros
+ * con setMaxRows y no con ROWNUM: en Oracle ROWNUM se aplica antes del ORDER
+ * BY y de saltar las filas bloqueadas.
+ *
+ * Si Event Grid rechaza el contenido de un lote (400 o 413), el lote se divide
+ * en mitades hasta aislar los eventos rechazados, de modo que uno inválido no
+ * frena al resto. Solo esos eventos suman un intento y, al llegar a
+ * OUTBOX_MAX_INTENTOS, quedan descartados (enviado = 2) para revisión manual.
+ * Cualquier otro error (5xx, 429, timeout, sin conexión) es una caída de Event
+ * Grid: no cuenta intentos, libera la reserva y pausa los drenados en segundo
+ * plano durante OUTBOX_PAUSA_S; los reintenta la función temporizada.
+ *
+ * <pre>
+ * ALTER TABLE outbox_eventos ADD (reservado_hasta TIMESTAMP);
+ * </pre>
+ *
+ * Variables de entorno: OUTBOX_LOTE (eventos por POST, por defecto 100),
+ * OUTBOX_MAX_LOTES (lotes por drenado, por defecto 20), OUTBOX_MAX_INTENTOS
+ * (por defecto 10), OUTBOX_RESERVA_S (duración de la reserva, por defecto
+ * 120) y OUTBOX_PAUSA_S (por defecto 30).
+ */
+public class OutboxRelay {
+
+    private static final Logger LOGGER = Logger.getLogger(OutboxRelay.class.getName());
+
+    // Con SKIP LOCKED, Oracle bloquea cada fila al leerla: setMaxRows acota
+    // también los bloqueos al tamaño del lote
+    private static final String SELECT_PENDIENTES_SQL = "SELECT id_outbox, id_evento, tipo_evento, asunto, "
+            + "fecha_evento, data, version_data, intentos FROM outbox_eventos "
+            + "WHERE enviado = 0 AND intentos < ? AND (reservado_hasta IS NULL OR reservado_hasta < ?) "
+            + "ORDER BY id_outbox FOR UPDATE SKIP LOCKED";
+    private static final String RESERVAR_SQL = "UPDATE outbox_eventos SET reservado_hasta = ? WHERE id_outbox = ?";
+    private static final String MARCAR_ENVIADO_SQL = "UPDATE outbox_eventos "
+            + "SET enviado = 1, enviado_en = CURRENT_TIMESTAMP, reservado_hasta = NULL WHERE id_outbox = ?";
+    // En el SET, intentos es el valor anterior a la actualización. La reserva
+    // hace de marca: si venció y otro worker tomó la fila, no se toca
+    private static final String MARCAR_RECHAZO_SQL = "UPDATE outbox_eventos "
+            + "SET intentos = intentos + 1, enviado = CASE WHEN intentos + 1 >= ? THEN 2 ELSE 0 END, "
+            + "reservado_hasta = NULL WHERE id_outbox = ? AND reservado_hasta = ?";
+    private static final String LIBERAR_SQL = "UPDATE outbox_eventos "
+            + "SET reservado_hasta = NULL WHERE id_outbox = ? AND reservado_hasta = ?";
+
+    private static volatile OutboxRelay instancia;
+
+    private final DataSource dataSource;
+    private final EventGridPublisher publisher;
+    private final int tamanoLote;
+    private final int maxLotes;
+    private final int maxIntentos;
+    private final Duration reserva;
+    private final Duration pausa;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "outbox-relay");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean drenadoProgramado = new AtomicBoolean();
+    // System.nanoTime() hasta el que no se programan drenados tras una caída
+    private volatile long pausaHasta = System.nanoTime();
+
+    public OutboxRelay(DataSource dataSource, EventGridPublisher publisher, int tamanoLote, int maxLotes,
+            int maxIntentos, Duration reserva, Duration pausa) {
+        this.dataSource = dataSource;
+        this.publisher = publisher;
+        this.tamanoLote = tamanoLote;
+        this.maxLotes = maxLotes;
+        this.maxIntentos = maxIntentos;
+        this.reserva = reserva;
+        this.pausa = pausa;
+    }
+
+    /**
+     * Retorna el relay del worker, que usa el pool y el publicador compartidos.
+     */
+    public static OutboxRelay getInstancia() {
+        OutboxRelay r = instancia;
+        if (r == null) {
+            synchronized (OutboxRelay.class) {
+                r = instancia;
+                if (r == null) {
+                    r = new OutboxRelay(ConexionBD.getDataSource(), EventGridPublisher.getInstancia(),
+                            Entorno.entero(System.getenv(), "OUTBOX_LOTE", 100),
+                            Entorno.entero(System.getenv(), "OUTBOX_MAX_LOTES", 20),
+                            Entorno.entero(System.getenv(), "OUTBOX_MAX_INTENTOS", 10),
+                            Duration.ofSeconds(Entorno.entero(System.getenv(), "OUTBOX_RESERVA_S", 120)),
+                            Duration.ofSeconds(Entorno.entero(System.getenv(), "OUTBOX_PAUSA_S", 30)));
+                    instancia = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Pide un drenado en segundo plano, sin bloquear la solicitud que acaba de
+     * confirmar su transacción. Las peticiones que llegan mientras hay un
+     * drenado pendiente se agrupan en ese mismo drenado, y tras una caída de
+     * Event Grid no se programan drenados durante OUTBOX_PAUSA_S.
+     */
+    public void programarDrenado() {
+        if (System.nanoTime() - pausaHasta < 0) {
+            return;
+        }
+        if (drenadoProgramado.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                drenadoProgramado.set(false);
+                try {
+                    drenar();
+                } catch (SQLException | RuntimeException e) {
+                    LOGGER.warning("Drenado del outbox fallido, se reintentará: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Envía lotes de eventos pendientes hasta vaciar el outbox, alcanzar
+     * OUTBOX_MAX_LOTES o encontrar Event Grid caído.
+     *
+     * @return Cantidad de eventos publicados.
+     */
+    public int drenar() throws SQLException {
+        int total = 0;
+        for (int i = 0; i < maxLotes; i++) {
+            Lote lote = reservar();
+            if (lote.ids.isEmpty()) {
+                break;
+            }
+            publicar(lote, 0, lote.ids.size());
+            marcar(lote);
+            total += lote.enviados.size();
+            if (lote.caida) {
+                pausaHasta = System.nanoTime() + pausa.toNanos();
+                break;
+            }
+            if (lote.ids.size() < tamanoLote) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Lee y reserva el siguiente lote en una transacción corta.
+     */
+    private Lote reservar() throws SQLException {
+        Instant ahora = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        // Milisegundos: el valor se compara después con el guardado en la tabla
+        Lote lote = new Lote(Timestamp.from(ahora.plus(reserva)));
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = conn.prepareStatement(SELECT_PENDIENTES_SQL)) {
+                    ps.setInt(1, maxIntentos);
+                    ps.setTimestamp(2, Timestamp.from(ahora));
+                    ps.setMaxRows(tamanoLote);
+                    ps.setFetchSize(tamanoLote);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            lote.ids.add(rs.getLong("id_outbox"));
+                            lote.intentos.add(rs.getInt("intentos"));
+                            lote.eventos.add(aJson(rs));
+                        }
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement(RESERVAR_SQL)) {
+                    for (Long id : lote.ids) {
+                        ps.setTimestamp(1, lote.reservadoHasta);
+                        ps.setLong(2, id);
+                        ps.addBatch();
+                    }
+                    if (!lote.ids.isEmpty()) {
+                        ps.executeBatch();
+                    }
+                }
+                conn.commit();
+                return lote;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Marca el resultado del envío: enviados, rechazados (suman un intento) y
+     * el resto, que solo se libera para el próximo drenado.
+     */
+    private void marcar(Lote lote) throws SQLException {
+        List<Long> descartados = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement enviado = conn.prepareStatement(MARCAR_ENVIADO_SQL);
+                    PreparedStatement rechazo = conn.prepareStatement(MARCAR_RECHAZO_SQL);
+                    PreparedStatement liberar = conn.prepareStatement(LIBERAR_SQL)) {
+                for (int i = 0; i < lote.ids.size(); i++) {
+                    Long id = lote.ids.get(i);
+                    if (lote.enviados.contains(id)) {
+                        enviado.setLong(1, id);
+                        enviado.addBatch();
+                    } else if (lote.rechazados.contains(id)) {
+                        if (lote.intentos.get(i) + 1 >= maxIntentos) {
+                            descartados.add(id);
+                        }
+                        rechazo.setInt(1, maxIntentos);
+                        rechazo.setLong(2, id);
+                        rechazo.setTimestamp(3, lote.reservadoHasta);
+                        rechazo.addBatch();
+                    } else {
+                        liberar.setLong(1, id);
+                        liberar.setTimestamp(2, lote.reservadoHasta);
+                        liberar.addBatch();
+                    }
+                }
+                enviado.executeBatch();
+                rechazo.executeBatch();
+                liberar.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                // Las filas quedan reservadas hasta que venza la reserva
+                conn.rollback();
+                throw e;
+            }
+        }
+        if (!descartados.isEmpty()) {
+            LOGGER.severe("Eventos del outbox descartados tras " + maxIntentos + " rechazos de Event Grid "
+                    + "(id_outbox): " + descartados);
+        }
+    }
+
+    /**
+     * Envía los eventos [desde, hasta) del lote. Si Event Grid rechaza el
+     * contenido, divide el rango para aislar los eventos rechazados; ante una
+     * caída deja de enviar.
+     */
+    private void publicar(Lote lote, int desde, int hasta) {
+        if (lote.caida) {
+            return;
+        }
+        JsonArray eventos = new JsonArray();
+        for (int i = desde; i < hasta; i++) {
+            eventos.add(lote.eventos.get(i));
+        }
+        try {
+            publisher.enviarJson(eventos.toString()).join();
+            lote.enviados.addAll(lote.ids.subList(desde, hasta));
+            return;
+        } catch (CompletionException e) {
+            if (!(e.getCause() instanceof EventGridPublisher.RespuestaNoExitosa respuesta)
+                    || !respuesta.rechazaContenido()) {
+                LOGGER.warning("Event Grid no disponible, se reintentará el outbox: " + e.getCause().getMessage());
+                lote.caida = true;
+                return;
+            }
+            LOGGER.warning("Event Grid rechazó un lote de " + (hasta - desde) + " eventos del outbox: "
+                    + respuesta.getMessage());
+        }
+        if (hasta - desde == 1) {
+            lote.rechazados.add(lote.ids.get(desde));
+            return;
+        }
+        int mitad = (desde + hasta) >>> 1;
+        publicar(lote, desde, mitad);
+        publicar(lote, mitad, hasta);
+    }
+
+    /**
+     * Reconstruye el evento con el esquema de Event Grid. El campo data se
+     * guarda como JSON y se reincorpora sin convertirlo a Map (así los enteros
+     * no se vuelven decimales).
+     */
+    private static JsonObject aJson(ResultSet rs) throws SQLException {
+        JsonObject evento = new JsonObject();
+        evento.addProperty("id", rs.getString("id_evento"));
+        evento.addProperty("eventType", rs.getString("tipo_evento"));
+        evento.addProperty("subject", rs.getString("asunto"));
+        evento.addProperty("eventTime", rs.getString("fecha_evento"));
+        String data = rs.getString("data");
+        evento.add("data", data == null ? new JsonObject() : JsonParser.parseString(data));
+        evento.addProperty("dataVersion", rs.getString("version_data"));
+        return evento;
+    }
+
+    /**
+     * Eventos reservados en un drenado y el resultado de su envío.
+     */
+    private static final class Lote {
+        final Timestamp reservadoHasta;
+        final List<Long> ids = new ArrayList<>();
+        final List<Integer> intentos = new ArrayList<>();
+        final List<JsonObject> eventos = new ArrayList<>();
+        final Set<Long> enviados = new HashSet<>();
+        final Set<Long> rechazados = new HashSet<>();
+        boolean caida;
+
+        Lote(Timestamp reservadoHasta) {
+            this.reservadoHasta = reservadoHasta;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.function.comun;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Paginación por cursor (keyset sobre el id) para los listados GraphQL.
+ *
+ * El cursor es opaco para el cliente: codifica en Base64 el tipo y el último
+ * id entregado. La consulta pide una fila más que el tamaño de página para
+ * saber si hay página siguiente sin un COUNT(*):
+ *
+ * <pre>
+ * SELECT ... WHERE id &gt; ? ORDER BY id FETCH FIRST ? ROWS ONLY
+ * </pre>
+ */
+public final class Paginacion {
+
+    /**
+     * Máximo de filas por página de los listados. También acota el 'first'
+     * con que se calcula el costo de una consulta (CostoConsulta).
+     */
+    public static final int TAMANO_MAXIMO = 500;
+
+    private Paginacion() {
+    }
+
+    /**
+     * Valida el argumento first y aplica el valor por defecto y el máximo.
+     */
+    public static int tamano(Integer first, int porDefecto, int maximo) {
+        if (first == null) {
+            return porDefecto;
+        }
+        if (first < 0) {
+            throw new IllegalArgumentException("El argumento 'first' no puede ser negativo.");
+        }
+        return Math.min(first, maximo);
+    }
+
+    /**
+     * Codifica el cursor de una fila.
+     */
+    public static String cursor(String tipo, int id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((tipo + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Retorna el id a partir del cual continuar (exclusivo), o 0 si no hay
+     * cursor.
+     */
+    public static int despuesDe(String after, String tipo) {
+        if (after == null || after.isEmpty()) {
+            return 0;
+        }
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+            if (!valor.startsWith(tipo + ":")) {
+                throw new IllegalArgumentException("Cursor inválido: " + after);
+            }
+            return Integer.parseInt(valor.substring(tipo.length() + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + after, e);
+        }
+    }
+
+    /**
+     * Arma la conexión GraphQL (edges, nodes y pageInfo) a partir de hasta
+     * first + 1 filas leídas en orden de id.
+     *
+     * @param filas   Filas leídas; cada una contiene el id en la clave "id".
+     * @param first   Tamaño de la página.
+     * @param tipo    Prefijo del cursor (por ejemplo "usuario").
+     */
+    public static Map<String, Object> conexion(List<Map<String, Object>> filas, int first, String tipo) {
+        boolean hayMas = filas.size() > first;
+        List<Map<String, Object>> nodos = hayMas ? filas.subList(0, first) : filas;
+
+        List<Map<String, Object>> edges = new ArrayList<>(nodos.size());
+        String endCursor = null;
+        for (Map<String, Object> nodo : nodos) {
+            endCursor = cursor(tipo, ((Number) nodo.get("id")).intValue());
+            Map<String, Object> edge = new LinkedHashMap<>();
+            edge.put("cursor", endCursor);
+            edge.put("node", nodo);
+            edges.add(edge);
+        }
+
+        Map<String, Object> pageInfo = new LinkedHashMap<>();
+        pageInfo.put("hasNextPage", hayMas);
+        pageInfo.put("endCursor", endCursor);
+
+        Map<String, Object> conexion = new LinkedHashMap<>();
+        conexion.put("edges", edges);
+        conexion.put("nodes", nodos);
+        conexion.put("pageInfo", pageInfo);
+        return conexion;
+    }
+}
@@ -0,0 +1,186 @@
+package com.function.comun.graphql;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Mide el arranque en frío de un endpoint GraphQL y sirve de ejecución de
+ * entrenamiento para el archivo AppCDS (perfil cds de las funciones GraphQL).
+ *
+ * Carga la función empaquetada (target/azure-functions/&lt;app&gt;: el jar de la
+ * función y lib/*.jar) con un URLClassLoader propio, como el worker de Java de
+ * Azure Functions, y hace lo mismo que la primera invocación: instancia el
+ * proveedor (parseo del esquema y armado del esquema ejecutable) y responde
+ * una consulta por el camino del handler (CodecGraphQL.leer,
+ * LoteGraphQL.entrada, execute y CodecGraphQL.escribir). La consulta de cada
+ * función pasa por sus resolvers, DataLoaders y JDBC: con DB_URL, DB_USER y
+ * DB_PASSWORD de una base de pruebas se entrena el camino completo; sin base,
+ * los resolvers fallan al pedir la conexión y el entrenamiento cubre solo
+ * hasta ahí (esos errores se informan pero no hacen fallar el build). Además
+ * carga, sin inicializarlas, las clases del jar de la función y las que se
+ * indiquen (el driver de Oracle y el pool), que de otro modo se cargan en la
+ * primera invocación. Si el esquema, el wiring o la consulta son inválidos,
+ * el build falla aquí y no en la primera invocación en Azure.
+ *
+ * Se ejecuta como archivo fuente ({@code java ArranqueEnFrio.java}), sin
+ * classpath de aplicación: así el archivo CDS no registra rutas del equipo de
+ * build y sirve con el classpath del worker.
+ *
+ * Cada ejecución agrega una línea JSON al archivo de salida con el tiempo
+ * desde la carga de clases hasta la primera respuesta. Si supera el máximo
+ * indicado (0 = sin límite), termina con error para que el build falle.
+ *
+ * Uso: {@code java [-XX:ArchiveClassesAtExit=app-cds.jsa] ArranqueEnFrio.java
+ * <dirApp> <claseProveedor> <cuerpoJson> <salida> <etiqueta> <maximoMs>
+ * [clases a precargar, separadas por espacios o comas...]}
+ */
+public class ArranqueEnFrio {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 6) {
+            System.err.println("Uso: ArranqueEnFrio <dirApp> <claseProveedor> <cuerpoJson> <salida> <etiqueta>"
+                    + " <maximoMs> [clases...]");
+            System.exit(2);
+        }
+        File dirApp = new File(args[0]);
+        String claseProveedor = args[1];
+        String cuerpo = args[2];
+        Path salida = Path.of(args[3]);
+        String etiqueta = args[4];
+        long maximoMs = Long.parseLong(args[5]);
+
+        int clasesAntes = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+        long inicio = System.nanoTime();
+
+        List<File> jars = new ArrayList<>();
+        File[] raiz = dirApp.listFiles((d, nombre) -> nombre.endsWith(".jar"));
+        File[] lib = new File(dirApp, "lib").listFiles((d, nombre) -> nombre.endsWith(".jar"));
+        if (raiz == null || raiz.length != 1 || lib == null) {
+            throw new IllegalArgumentException("No se encontró la función empaquetada en " + dirApp
+                    + " (ejecutar antes mvn package)");
+        }
+        jars.add(raiz[0]);
+        jars.addAll(List.of(lib));
+        URL[] urls = new URL[jars.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = jars.get(i).toURI().toURL();
+        }
+
+        // Sin delegar en el classpath de la aplicación, como el worker
+        try (URLClassLoader cargador = new URLClassLoader(urls, ClassLoader.getPlatformClassLoader())) {
+            Object proveedor = cargador.loadClass(claseProveedor).getConstructor().newInstance();
+            long proveedorListo = System.nanoTime();
+
+            byte[] respuesta = responder(cargador, proveedor, cuerpo);
+            long primeraRespuesta = System.nanoTime();
+
+            List<String> adicionales = new ArrayList<>();
+            for (String arg : List.of(args).subList(6, args.length)) {
+                for (String nombre : arg.split(",")) {
+                    if (!nombre.isBlank()) {
+                        adicionales.add(nombre.trim());
+                    }
+                }
+            }
+            int precargadas = precargar(cargador, raiz[0], adicionales);
+            int clases = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount() - clasesAntes;
+
+            long arranqueMs = (primeraRespuesta - inicio) / 1_000_000;
+            String linea = String.format(Locale.ROOT,
+                    "{\"fecha\":\"%s\",\"etiqueta\":\"%s\",\"proveedor\":\"%s\",\"proveedorMs\":%d,"
+                            + "\"primeraRespuestaMs\":%d,\"arranqueMs\":%d,\"clasesCargadas\":%d,"
+                            + "\"clasesPrecargadas\":%d,\"bytesRespuesta\":%d}",
+                    Instant.now(), etiqueta, claseProveedor, (proveedorListo - inicio) / 1_000_000,
+                    (primeraRespuesta - proveedorListo) / 1_000_000, arranqueMs, clases, precargadas,
+                    respuesta.length);
+            System.out.println("Arranque en frío: " + linea);
+            Files.writeString(salida, linea + System.lineSeparator(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+            if (maximoMs > 0 && arranqueMs > maximoMs) {
+                System.err.println("El arranque (" + arranqueMs + " ms) supera el máximo de " + maximoMs + " ms.");
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Ejecuta la consulta por el mismo camino que el handler HTTP. Se usa
+     * reflexión porque las clases viven en el cargador de la función.
+     */
+    private static byte[] responder(ClassLoader cargador, Object proveedor, String cuerpo) throws Exception {
+        Class<?> codec = cargador.loadClass("com.function.comun.graphql.CodecGraphQL");
+        Class<?> peticionClase = cargador.loadClass("com.function.comun.graphql.CodecGraphQL$Peticion");
+        Class<?> lote = cargador.loadClass("com.function.comun.graphql.LoteGraphQL");
+        Class<?> registroClase = cargador.loadClass("org.dataloader.DataLoaderRegistry");
+        Class<?> entradaClase = cargador.loadClass("graphql.ExecutionInput");
+        Class<?> resultadoClase = cargador.loadClass("graphql.ExecutionResult");
+        Class<?> graphQLClase = cargador.loadClass("graphql.GraphQL");
+        try {
+            Object peticion = codec.getMethod("leer", String.class).invoke(null, cuerpo);
+            Object registro = proveedor.getClass().getMethod("nuevoRegistro").invoke(proveedor);
+            Object entrada = lote.getMethod("entrada", peticionClase, registroClase).invoke(null, peticion, registro);
+            Object graphQL = proveedor.getClass().getMethod("getGraphQL").invoke(proveedor);
+            Object resultado = graphQLClase.getMethod("execute", entradaClase).invoke(graphQL, entrada);
+            List<?> errores = (List<?>) resultadoClase.getMethod("getErrors").invoke(resultado);
+            for (Object error : errores) {
+                // Un resolver que falla (sin BD en el build) no invalida el entrenamiento; el resto sí
+                Object tipo = error.getClass().getMethod("getErrorType").invoke(error);
+                if (!"DataFetchingException".equals(String.valueOf(tipo))) {
+                    throw new IllegalStateException("La consulta de entrenamiento respondió con errores: " + errores);
+                }
+            }
+            if (!errores.isEmpty()) {
+                System.err.println("La consulta de entrenamiento no llegó a la BD (" + errores.size()
+                        + " errores de resolvers); el archivo CDS no incluye el camino JDBC completo.");
+            }
+            return (byte[]) codec.getMethod("escribir", resultadoClase).invoke(null, resultado);
+        } catch (InvocationTargetException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Carga sin inicializar las clases del jar de la función y las indicadas.
+     * Las que no se pueden enlazar (dependencias opcionales ausentes) se
+     * omiten.
+     */
+    private static int precargar(ClassLoader cargador, File jarFuncion, List<String> adicionales)
+            throws IOException {
+        List<String> nombres = new ArrayList<>(adicionales);
+        try (JarFile jar = new JarFile(jarFuncion)) {
+            Enumeration<JarEntry> entradas = jar.entries();
+            while (entradas.hasMoreElements()) {
+                String nombre = entradas.nextElement().getName();
+                if (nombre.endsWith(".class") && !nombre.equals("module-info.class")) {
+                    nombres.add(nombre.substring(0, nombre.length() - 6).replace('/', '.'));
+                }
+            }
+        }
+        int cargadas = 0;
+        for (String nombre : nombres) {
+            try {
+                Class.forName(nombre, false, cargador);
+                cargadas++;
+            } catch (ClassNotFoundException | LinkageError e) {
+                System.err.println("No se pudo precargar " + nombre + ": " + e);
+            }
+        }
+        return cargadas;
+    }
+}
@@ -0,0 +1,422 @@
+package com.function.comun.graphql;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQLContext;
+import graphql.execution.ExecutionStepInfo;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.language.OperationDefinition;
+
+import com.function.comun.Entorno;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Caché de respuestas GraphQL ya serializadas, con ETag.
+ *
+ * La clave es el id del documento (el mismo SHA-256 que usa
+ * {@link DocumentosPreparados}, o el hash APQ del cliente), el operationName y
+ * las variables con sus claves ordenadas. Solo se guardan consultas (no
+ * mutaciones) sin errores cuyos resolvers estén todos asociados a tablas en
+ * {@code tablasPorCampo}.
+ *
+ * La invalidación es por tabla: cada tabla tiene una versión global del
+ * worker, y cada entrada recuerda la versión de las tablas que leyó al
+ * ejecutarse. Las entradas con alguna versión vieja se descartan al leerlas.
+ * Las versiones se incrementan por dos vías:
+ * <ul>
+ * <li>en el propio worker, una mutación GraphQL de cualquiera de sus
+ * endpoints incrementa las tablas que modifica al completarse;</li>
+ * <li>desde otros workers y Function Apps, con
+ * {@link #invalidarDesdeEventGrid}: las mutaciones REST y GraphQL registran
+ * su evento de cambio en el outbox y cada app GraphQL está suscrita a ellos
+ * (InvalidarCacheGraphQL, InvalidarCacheRolesGraphQL).</li>
+ * </ul>
+ *
+ * Las versiones viven en memoria y Event Grid entrega cada evento a una sola
+ * instancia de cada suscripción: en las demás instancias de la misma app, y
+ * mientras el outbox no publique el evento, el TTL acota cuánto puede durar
+ * una respuesta desactualizada.
+ *
+ * Uso: encadenar la instancia en la instrumentación de GraphQL, y en el
+ * handler llamar {@link #consulta}, {@link #obtener} y, si no hubo acierto,
+ * {@link #guardar} tras ejecutar y serializar.
+ *
+ * Variables de entorno: GRAPHQL_CACHE_RESPUESTAS (entradas, por defecto 500;
+ * 0 la desactiva), GRAPHQL_CACHE_RESPUESTAS_MB (tamaño total de las
+ * respuestas, por defecto 16) y GRAPHQL_CACHE_RESPUESTAS_TTL_S (vida de una
+ * entrada, por defecto 60).
+ */
+public class CacheRespuestas extends SimplePerformantInstrumentation {
+
+    /** Versión que se incrementa cuando no se sabe qué tablas cambiaron. */
+    static final String TODAS = "*";
+
+    /** Versiones por tabla, compartidas por todos los endpoints del worker. */
+    private static final Map<String, AtomicLong> VERSIONES = new ConcurrentHashMap<>();
+
+    /** Tablas que modifica cada tipo de evento publicado por las funciones REST. */
+    private static final Map<String, Set<String>> TABLAS_POR_EVENTO = Map.of(
+            "UsuarioCreado", Set.of("usuarios", "usuario_roles"),
+            "UsuarioActualizado", Set.of("usuarios"),
+            "UsuarioEliminado", Set.of("usuarios", "usuario_roles"),
+            "RolAsignado", Set.of("usuario_roles"),
+            "RolCreado", Set.of("roles"),
+            "RolActualizado", Set.of("roles"),
+            "RolEliminado", Set.of("roles", "usuario_roles"));
+
+    /** Claves en el GraphQLContext de cada ejecución. */
+    private static final String TABLAS_LEIDAS = CacheRespuestas.class.getName() + ".tablas";
+    private static final String NO_CACHEABLE = CacheRespuestas.class.getName() + ".noCacheable";
+
+    private final int maximoEntradas;
+    private final long maximoBytes;
+    private final long ttlNanos;
+    private final Map<String, Set<String>> tablasPorCampo;
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder invalidadas = new LongAdder();
+
+    /**
+     * @param maximoEntradas Respuestas guardadas como máximo (0 desactiva la
+     *                       caché, pero se siguen calculando los ETag).
+     * @param maximoBytes    Suma máxima del tamaño de las respuestas.
+     * @param ttlSegundos    Vida de una entrada.
+     * @param tablasPorCampo Tablas que lee (en Query) o modifica (en Mutation)
+     *                       cada resolver, por "Tipo.campo".
+     */
+    public CacheRespuestas(int maximoEntradas, long maximoBytes, int ttlSegundos,
+            Map<String, Set<String>> tablasPorCampo) {
+        this.maximoEntradas = maximoEntradas;
+        this.maximoBytes = maximoBytes;
+        this.ttlNanos = ttlSegundos * 1_000_000_000L;
+        this.tablasPorCampo = Map.copyOf(tablasPorCampo);
+    }
+
+    /**
+     * Crea la caché con los límites de GRAPHQL_CACHE_RESPUESTAS,
+     * GRAPHQL_CACHE_RESPUESTAS_MB y GRAPHQL_CACHE_RESPUESTAS_TTL_S.
+     */
+    public static CacheRespuestas desdeEntorno(Map<String, Set<String>> tablasPorCampo) {
+        Map<String, String> env = System.getenv();
+        return new CacheRespuestas(
+                Entorno.entero(env, "GRAPHQL_CACHE_RESPUESTAS", 500),
+                Entorno.entero(env, "GRAPHQL_CACHE_RESPUESTAS_MB", 16) * 1024L * 1024L,
+                Entorno.entero(env, "GRAPHQL_CACHE_RESPUESTAS_TTL_S", 60),
+                tablasPorCampo);
+    }
+
+    /**
+     * Incrementa la versión de las tablas: las respuestas que las leyeron
+     * dejan de servirse en todos los endpoints del worker.
+     */
+    public static void invalidar(Collection<String> tablas) {
+        for (String tabla : tablas) {
+            VERSIONES.computeIfAbsent(tabla, k -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * Invalida las tablas que modifica un evento de Event Grid. Los tipos
+     * desconocidos que no son de consulta invalidan todo.
+     */
+    public static void invalidarPorEvento(String tipoEvento) {
+        Set<String> tablas = TABLAS_POR_EVENTO.get(tipoEvento);
+        if (tablas != null) {
+            invalidar(tablas);
+        } else if (tipoEvento == null || !tipoEvento.endsWith("Consultado")) {
+            invalidar(Set.of(TODAS));
+        }
+    }
+
+    /**
+     * Invalida según el JSON de un evento de Event Grid tal como lo entrega
+     * el trigger. Un evento que no se puede leer invalida todo: sin saber qué
+     * cambió, ninguna respuesta cacheada es confiable.
+     */
+    public static void invalidarDesdeEventGrid(String contenido, Logger logger) {
+        try {
+            JsonObject evento = JsonParser.parseString(contenido).getAsJsonObject();
+            invalidarPorEvento(evento.has("eventType") ? evento.get("eventType").getAsString() : null);
+        } catch (JsonParseException | IllegalStateException e) {
+            logger.warning("Evento no legible, se invalida toda la caché: " + e.getMessage());
+            invalidarPorEvento(null);
+        }
+    }
+
+    /**
+     * Busca un encabezado HTTP sin distinguir mayúsculas (el host de Functions
+     * no garantiza cómo llegan los nombres).
+     */
+    public static String encabezado(Map<String, String> encabezados, String nombre) {
+        for (Map.Entry<String, String> e : encabezados.entrySet()) {
+            if (e.getKey().equalsIgnoreCase(nombre)) {
+                return e.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Prepara la búsqueda de una petición: calcula la clave y toma la versión
+     * actual de las tablas, antes de ejecutar, para que una mutación que
+     * termine durante la ejecución invalide la respuesta que se guarde.
+     *
+     * @return La consulta, o null si la petición no se puede cachear (pide
+     *         extensions.tracing, que cambia en cada ejecución).
+     */
+    public Consulta consulta(CodecGraphQL.Peticion peticion) throws IOException {
+        if (Boolean.TRUE.equals(peticion.extensions().get("tracing"))) {
+            return null;
+        }
+        String documento = idDocumento(peticion);
+        if (documento == null) {
+            return null;
+        }
+        String clave = documento + '\n' + (peticion.operationName() == null ? "" : peticion.operationName())
+                + '\n' + new String(CodecGraphQL.escribirCanonico(peticion.variables()), StandardCharsets.UTF_8);
+        Map<String, Long> versiones = new HashMap<>();
+        VERSIONES.forEach((tabla, version) -> versiones.put(tabla, version.get()));
+        return new Consulta(clave, versiones);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String idDocumento(CodecGraphQL.Peticion peticion) {
+        Object apq = peticion.extensions().get("persistedQuery");
+        if (apq instanceof Map) {
+            Object hash = ((Map<String, Object>) apq).get("sha256Hash");
+            if (hash != null) {
+                return hash.toString();
+            }
+        }
+        String query = peticion.query();
+        return query == null || query.isBlank() ? null : DocumentosPreparados.sha256(query);
+    }
+
+    /**
+     * Retorna la respuesta guardada, o null si no existe, expiró o leyó tablas
+     * que cambiaron desde entonces.
+     */
+    public Respuesta obtener(Consulta consulta) {
+        if (consulta == null) {
+            return null;
+        }
+        synchronized (entradas) {
+            Entrada entrada = entradas.get(consulta.clave);
+            if (entrada != null && vigente(entrada)) {
+                aciertos.increment();
+                return entrada.respuesta;
+            }
+            if (entrada != null) {
+                quitar(consulta.clave);
+                invalidadas.increment();
+            }
+        }
+        fallos.increment();
+        return null;
+    }
+
+    private boolean vigente(Entrada entrada) {
+        if (System.nanoTime() - entrada.creada > ttlNanos) {
+            return false;
+        }
+        for (Map.Entry<String, Long> e : entrada.versiones.entrySet()) {
+            AtomicLong actual = VERSIONES.get(e.getKey());
+            if ((actual == null ? 0L : actual.get()) != e.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Guarda la respuesta serializada si la operación es cacheable.
+     *
+     * @return La respuesta con su ETag, o null si no es cacheable (mutación,
+     *         errores o resolvers sin tablas conocidas).
+     */
+    public Respuesta guardar(Consulta consulta, ExecutionInput entrada, ExecutionResult resultado, byte[] cuerpo) {
+        if (consulta == null || !resultado.getErrors().isEmpty() || resultado.getData() == null) {
+            return null;
+        }
+        GraphQLContext contexto = entrada.getGraphQLContext();
+        Set<String> tablas = contexto.get(TABLAS_LEIDAS);
+        if (tablas == null || contexto.getOrDefault(NO_CACHEABLE, false)) {
+            return null;
+        }
+
+        Respuesta respuesta = new Respuesta(cuerpo, etag(cuerpo));
+        if (maximoEntradas <= 0 || cuerpo.length > maximoBytes) {
+            return respuesta;
+        }
+        Map<String, Long> versiones = new HashMap<>();
+        versiones.put(TODAS, consulta.versiones.getOrDefault(TODAS, 0L));
+        for (String tabla : tablas) {
+            versiones.put(tabla, consulta.versiones.getOrDefault(tabla, 0L));
+        }
+        synchronized (entradas) {
+            quitar(consulta.clave);
+            entradas.put(consulta.clave, new Entrada(respuesta, versiones, System.nanoTime()));
+            bytes += cuerpo.length;
+            // Se descartan las menos usadas hasta cumplir ambos límites
+            Iterator<Map.Entry<String, Entrada>> iterador = entradas.entrySet().iterator();
+            while ((entradas.size() > maximoEntradas || bytes > maximoBytes) && iterador.hasNext()) {
+                bytes -= iterador.next().getValue().respuesta.cuerpo.length;
+                iterador.remove();
+            }
+        }
+        return respuesta;
+    }
+
+    private void quitar(String clave) {
+        Entrada anterior = entradas.remove(clave);
+        if (anterior != null) {
+            bytes -= anterior.respuesta.cuerpo.length;
+        }
+    }
+
+    /**
+     * ETag fuerte: SHA-256 del cuerpo, entre comillas.
+     */
+    static String etag(byte[] cuerpo) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(cuerpo);
+            return '"' + String.format("%064x", new BigInteger(1, digest)) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Registra en el contexto de la ejecución las tablas que leen los
+     * resolvers de una consulta, e invalida las que modifica cada mutación al
+     * completarse (haya fallado o no: una invalidación de más solo cuesta una
+     * nueva lectura).
+     */
+    @Override
+    public InstrumentationContext<Object> beginFieldFetch(InstrumentationFieldFetchParameters parameters,
+            InstrumentationState state) {
+        if (parameters.isTrivialDataFetcher()) {
+            return SimpleInstrumentationContext.noOp();
+        }
+        ExecutionStepInfo paso = parameters.getExecutionStepInfo();
+        String tipo = paso.getObjectType().getName();
+        String nombre = paso.getFieldDefinition().getName();
+        if (tipo.startsWith("__") || nombre.startsWith("__")) {
+            // Introspección: depende solo del esquema
+            return SimpleInstrumentationContext.noOp();
+        }
+        Set<String> tablas = tablasPorCampo.get(tipo + "." + nombre);
+        OperationDefinition.Operation operacion = parameters.getExecutionContext().getOperationDefinition()
+                .getOperation();
+        if (operacion == OperationDefinition.Operation.MUTATION) {
+            if (paso.getPath().getLevel() > 1) {
+                // Los campos anidados del resultado de una mutación no modifican nada
+                return SimpleInstrumentationContext.noOp();
+            }
+            Set<String> modificadas = tablas == null ? Set.of(TODAS) : tablas;
+            return SimpleInstrumentationContext.whenCompleted((valor, error) -> invalidar(modificadas));
+        }
+
+        GraphQLContext contexto = parameters.getExecutionContext().getGraphQLContext();
+        Set<String> leidas = contexto.computeIfAbsent(TABLAS_LEIDAS, k -> ConcurrentHashMap.newKeySet());
+        if (operacion != OperationDefinition.Operation.QUERY || tablas == null) {
+            contexto.put(NO_CACHEABLE, true);
+        } else {
+            leidas.addAll(tablas);
+        }
+        return SimpleInstrumentationContext.noOp();
+    }
+
+    /**
+     * Retorna los contadores de la caché.
+     */
+    public Metricas metricas() {
+        synchronized (entradas) {
+            return new Metricas(aciertos.sum(), fallos.sum(), invalidadas.sum(), entradas.size(), bytes);
+        }
+    }
+
+    /**
+     * Clave de una petición y versión de las tablas al recibirla.
+     */
+    public static final class Consulta {
+        private final String clave;
+        private final Map<String, Long> versiones;
+
+        private Consulta(String clave, Map<String, Long> versiones) {
+            this.clave = clave;
+            this.versiones = versiones;
+        }
+    }
+
+    /**
+     * Respuesta serializada y su ETag.
+     */
+    public record Respuesta(byte[] cuerpo, String etag) {
+
+        /**
+         * Indica si el valor de If-None-Match incluye este ETag (admite
+         * listas, "*" y ETags débiles).
+         */
+        public boolean coincide(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String valor : ifNoneMatch.split(",")) {
+                String candidato = valor.trim();
+                if (candidato.startsWith("W/")) {
+                    candidato = candidato.substring(2);
+                }
+                if (candidato.equals("*") || candidato.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private record Entrada(Respuesta respuesta, Map<String, Long> versiones, long creada) {
+    }
+
+    /**
+     * Contadores de la caché de respuestas. Las invalidadas son entradas
+     * descartadas al leerlas por TTL o por cambios en sus tablas.
+     */
+    public record Metricas(long aciertos, long fallos, long invalidadas, int respuestas, long bytes) {
+
+        @Override
+        public String toString() {
+            long total = aciertos + fallos;
+            return String.format(Locale.ROOT,
+                    "{\"aciertos\":%d,\"fallos\":%d,\"tasaAciertos\":%.4f,\"invalidadas\":%d,"
+                            + "\"respuestas\":%d,\"bytes\":%d}",
+                    aciertos, fallos, total == 0 ? 0.0 : (double) aciertos / total, invalidadas, respuestas, bytes);
+        }
+    }
+}
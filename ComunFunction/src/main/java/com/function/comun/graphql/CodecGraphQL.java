@@ -0,0 +1,206 @@
+package com.function.comun.graphql;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import graphql.ExecutionResult;
+import graphql.GraphQLError;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lectura y escritura JSON de las peticiones y respuestas GraphQL, con un
+ * ObjectMapper compartido (es thread-safe y costoso de crear).
+ *
+ * La petición se lee en streaming directamente a sus campos, sin armar antes
+ * un Map del cuerpo completo. La respuesta se escribe desde el
+ * ExecutionResult a bytes UTF-8, sin pasar por toSpecification() ni por un
+ * String intermedio.
+ */
+public final class CodecGraphQL {
+
+    private static final TypeReference<Map<String, Object>> TIPO_MAPA = new TypeReference<>() {
+    };
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new SimpleModule("graphql").addSerializer(ExecutionResult.class, new Serializador()));
+
+    private CodecGraphQL() {
+    }
+
+    /**
+     * Campos de una petición GraphQL. query es null si el cliente envió solo
+     * el hash de una consulta persistida; variables y extensions nunca son
+     * null.
+     */
+    public record Peticion(String query, String operationName, Map<String, Object> variables,
+            Map<String, Object> extensions) {
+    }
+
+    /**
+     * Lee el cuerpo JSON de una petición GraphQL.
+     *
+     * @throws IOException si el cuerpo no es un objeto JSON válido.
+     */
+    public static Peticion leer(String cuerpo) throws IOException {
+        try (JsonParser parser = MAPPER.createParser(cuerpo)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Se espera un objeto JSON con el campo 'query'.");
+            }
+            return leerObjeto(parser);
+        }
+    }
+
+    /**
+     * Indica si el cuerpo es un lote de operaciones (un arreglo JSON).
+     */
+    public static boolean esLote(String cuerpo) {
+        for (int i = 0; i < cuerpo.length(); i++) {
+            char c = cuerpo.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '[';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lee un lote de peticiones GraphQL: un arreglo JSON de objetos como los
+     * que acepta {@link #leer(String)}.
+     *
+     * @throws IOException si el cuerpo no es un arreglo de objetos JSON.
+     */
+    public static List<Peticion> leerLote(String cuerpo) throws IOException {
+        List<Peticion> peticiones = new ArrayList<>();
+        try (JsonParser parser = MAPPER.createParser(cuerpo)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Se espera un arreglo JSON de operaciones.");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                peticiones.add(leerObjeto(parser));
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new IOException("Cada operación del lote debe ser un objeto JSON.");
+            }
+        }
+        return peticiones;
+    }
+
+    /**
+     * Lee los campos de un objeto cuyo START_OBJECT ya se consumió.
+     */
+    private static Peticion leerObjeto(JsonParser parser) throws IOException {
+        String query = null;
+        String operationName = null;
+        Map<String, Object> variables = Map.of();
+        Map<String, Object> extensions = Map.of();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String campo = parser.currentName();
+            JsonToken valor = parser.nextToken();
+            if (valor == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (campo) {
+                case "query":
+                    query = texto(parser, valor, campo);
+                    break;
+                case "operationName":
+                    operationName = texto(parser, valor, campo);
+                    break;
+                case "variables":
+                    variables = parser.readValueAs(TIPO_MAPA);
+                    break;
+                case "extensions":
+                    extensions = parser.readValueAs(TIPO_MAPA);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return new Peticion(query, operationName, variables, extensions);
+    }
+
+    /**
+     * Retorna el valor de texto del campo. Un objeto o arreglo no se puede
+     * leer como texto (y dejaría el parser dentro de él), así que se rechaza.
+     */
+    private static String texto(JsonParser parser, JsonToken valor, String campo) throws IOException {
+        if (valor != JsonToken.VALUE_STRING) {
+            throw new IOException("El campo '" + campo + "' debe ser un texto.");
+        }
+        return parser.getText();
+    }
+
+    /**
+     * Serializa el resultado según la especificación GraphQL (data, errors y
+     * extensions) a JSON en UTF-8.
+     */
+    public static byte[] escribir(ExecutionResult resultado) throws IOException {
+        return MAPPER.writeValueAsBytes(resultado);
+    }
+
+    /**
+     * Serializa los resultados de un lote como un arreglo JSON, en el orden de
+     * las operaciones.
+     */
+    public static byte[] escribirLote(List<ExecutionResult> resultados) throws IOException {
+        return MAPPER.writeValueAsBytes(resultados);
+    }
+
+    /**
+     * Escribe un objeto con las claves de los Map ordenadas, para comparar
+     * variables que llegan con distinto orden (claves de caché).
+     */
+    static byte[] escribirCanonico(Object objeto) throws IOException {
+        return MAPPER.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS).writeValueAsBytes(objeto);
+    }
+
+    /**
+     * Escribe cualquier objeto (por ejemplo un Map de error) a JSON en UTF-8.
+     */
+    public static byte[] escribirObjeto(Object objeto) throws IOException {
+        return MAPPER.writeValueAsBytes(objeto);
+    }
+
+    /**
+     * Escribe el ExecutionResult directamente, en el mismo formato que
+     * toSpecification(): errors solo si hay, data solo si la ejecución
+     * comenzó, extensions solo si hay.
+     */
+    private static final class Serializador extends JsonSerializer<ExecutionResult> {
+
+        @Override
+        public void serialize(ExecutionResult resultado, JsonGenerator gen, SerializerProvider proveedor)
+                throws IOException {
+            gen.writeStartObject();
+            if (!resultado.getErrors().isEmpty()) {
+                gen.writeArrayFieldStart("errors");
+                for (GraphQLError error : resultado.getErrors()) {
+                    proveedor.defaultSerializeValue(error.toSpecification(), gen);
+                }
+                gen.writeEndArray();
+            }
+            if (resultado.isDataPresent()) {
+                gen.writeFieldName("data");
+                proveedor.defaultSerializeValue(resultado.getData(), gen);
+            }
+            if (resultado.getExtensions() != null) {
+                gen.writeFieldName("extensions");
+                proveedor.defaultSerializeValue(resultado.getExtensions(), gen);
+            }
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.function.comun.graphql;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.execution.AbortExecutionException;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.normalized.ExecutableNormalizedField;
+import graphql.normalized.ExecutableNormalizedOperation;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+import graphql.schema.GraphQLTypeUtil;
+
+import com.function.comun.Entorno;
+import com.function.comun.Paginacion;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Límite de costo y profundidad de los documentos GraphQL.
+ *
+ * El costo se calcula antes de ejecutar, sobre el documento normalizado
+ * (fragmentos expandidos, un nodo por alias):
+ *
+ * <pre>
+ * costo(campo) = peso(campo) + multiplicador(campo) * suma(costo(hijos))
+ * </pre>
+ *
+ * El peso por defecto es 1 para campos de tipo objeto (cada uno implica una
+ * consulta o un lote de consultas) y 0 para escalares; se puede ajustar por
+ * "Tipo.campo". El multiplicador es el argumento 'first' de los listados
+ * paginados, acotado al máximo de página que aplican los resolvers
+ * ({@link com.function.comun.Paginacion#TAMANO_MAXIMO}), o 1. La suma se
+ * lleva en long y se satura en Long.MAX_VALUE, así que ni un 'first' enorme
+ * ni miles de alias pueden desbordarla. Si el documento supera el costo o la
+ * profundidad máximos se rechaza sin ejecutar nada; en ambos casos el costo
+ * calculado se informa en extensions.costo de la respuesta (al rechazar por
+ * costo, el acumulado hasta superar el máximo).
+ *
+ * Variables de entorno: GRAPHQL_COSTO_MAXIMO (por defecto 5000) y
+ * GRAPHQL_PROFUNDIDAD_MAXIMA (por defecto 8).
+ */
+public class CostoConsulta extends SimplePerformantInstrumentation {
+
+    private final int costoMaximo;
+    private final int profundidadMaxima;
+    private final Map<String, Integer> pesos;
+
+    /**
+     * @param costoMaximo       Costo máximo aceptado por documento.
+     * @param profundidadMaxima Niveles máximos de anidamiento de campos.
+     * @param pesos             Peso de campos puntuales, con clave "Tipo.campo".
+     */
+    public CostoConsulta(int costoMaximo, int profundidadMaxima, Map<String, Integer> pesos) {
+        this.costoMaximo = costoMaximo;
+        this.profundidadMaxima = profundidadMaxima;
+        this.pesos = Map.copyOf(pesos);
+    }
+
+    /**
+     * Crea la instrumentación con los límites de las variables de entorno.
+     */
+    public static CostoConsulta desdeEntorno(Map<String, Integer> pesos) {
+        return new CostoConsulta(Entorno.entero(System.getenv(), "GRAPHQL_COSTO_MAXIMO", 5000),
+                Entorno.entero(System.getenv(), "GRAPHQL_PROFUNDIDAD_MAXIMA", 8), pesos);
+    }
+
+    @Override
+    public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+        return new Estado();
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(
+            InstrumentationExecuteOperationParameters parameters, InstrumentationState state) {
+        GraphQLSchema schema = parameters.getExecutionContext().getGraphQLSchema();
+        ExecutableNormalizedOperation operacion = parameters.getExecutionContext().getNormalizedQueryTree().get();
+
+        Estado estado = (Estado) state;
+        for (ExecutableNormalizedField campo : operacion.getTopLevelFields()) {
+            estado.costo = sumar(estado.costo, costo(schema, campo, estado));
+            if (estado.costo > costoMaximo) {
+                // Ya se rechaza: no hace falta recorrer el resto de los alias
+                break;
+            }
+        }
+
+        if (estado.costo > costoMaximo) {
+            throw new LimiteExcedido("El costo de la consulta (" + estado.costo + ") supera el máximo permitido ("
+                    + costoMaximo + ").", estado, costoMaximo);
+        }
+        if (estado.profundidad > profundidadMaxima) {
+            throw new LimiteExcedido("La profundidad de la consulta (" + estado.profundidad
+                    + ") supera el máximo permitido (" + profundidadMaxima + ").", estado, costoMaximo);
+        }
+        return super.beginExecuteOperation(parameters, state);
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> instrumentExecutionResult(ExecutionResult executionResult,
+            InstrumentationExecutionParameters parameters, InstrumentationState state) {
+        Estado estado = (Estado) state;
+        Map<Object, Object> extensions = new LinkedHashMap<>();
+        if (executionResult.getExtensions() != null) {
+            extensions.putAll(executionResult.getExtensions());
+        }
+        extensions.put("costo", estado.aMapa(costoMaximo));
+        return CompletableFuture.completedFuture(
+                ExecutionResultImpl.newExecutionResult().from(executionResult).extensions(extensions).build());
+    }
+
+    private long costo(GraphQLSchema schema, ExecutableNormalizedField campo, Estado estado) {
+        estado.profundidad = Math.max(estado.profundidad, campo.getLevel());
+
+        long hijos = 0;
+        for (ExecutableNormalizedField hijo : campo.getChildren()) {
+            hijos = sumar(hijos, costo(schema, hijo, estado));
+        }
+        return sumar(peso(schema, campo), multiplicar(multiplicador(campo), hijos));
+    }
+
+    private int peso(GraphQLSchema schema, ExecutableNormalizedField campo) {
+        for (String tipo : campo.getObjectTypeNames()) {
+            Integer peso = pesos.get(tipo + "." + campo.getFieldName());
+            if (peso != null) {
+                return peso;
+            }
+        }
+        List<GraphQLType> tipos = List.copyOf(campo.getTypes(schema));
+        return !tipos.isEmpty() && GraphQLTypeUtil.unwrapAll(tipos.get(0)) instanceof GraphQLObjectType ? 1 : 0;
+    }
+
+    private static int multiplicador(ExecutableNormalizedField campo) {
+        Object first = campo.getResolvedArguments().get("first");
+        if (!(first instanceof Number)) {
+            return 1;
+        }
+        return (int) Math.max(1, Math.min(((Number) first).longValue(), Paginacion.TAMANO_MAXIMO));
+    }
+
+    private static long sumar(long a, long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static long multiplicar(long a, long b) {
+        try {
+            return Math.multiplyExact(a, b);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Costo y profundidad calculados para una ejecución.
+     */
+    private static final class Estado implements InstrumentationState {
+        long costo;
+        int profundidad;
+
+        Map<String, Object> aMapa(int costoMaximo) {
+            Map<String, Object> mapa = new LinkedHashMap<>();
+            mapa.put("solicitado", costo);
+            mapa.put("maximo", costoMaximo);
+            mapa.put("profundidad", profundidad);
+            return mapa;
+        }
+    }
+
+    /**
+     * Error que aborta la ejecución; lleva el costo calculado en sus
+     * extensions.
+     */
+    private static final class LimiteExcedido extends AbortExecutionException {
+
+        private final Map<String, Object> extensions;
+
+        LimiteExcedido(String mensaje, Estado estado, int costoMaximo) {
+            super(mensaje);
+            this.extensions = Map.of("costo", estado.aMapa(costoMaximo));
+        }
+
+        @Override
+        public Map<String, Object> getExtensions() {
+            return extensions;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.function.comun.graphql;
+
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.persisted.ApolloPersistedQuerySupport;
+import graphql.execution.preparsed.persisted.PersistedQueryCache;
+import graphql.execution.preparsed.persisted.PersistedQueryCacheMiss;
+import graphql.execution.preparsed.persisted.PersistedQueryNotFound;
+
+import com.function.comun.Entorno;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché de documentos GraphQL ya parseados y validados, con soporte de
+ * Automatic Persisted Queries (APQ) de Apollo.
+ *
+ * Todas las consultas se identifican por el SHA-256 de su texto: el que envía
+ * el cliente en extensions.persistedQuery.sha256Hash o, si no lo envía, el que
+ * se calcula aquí. Así una consulta enviada completa y la misma consulta
+ * enviada solo como hash comparten la entrada. La caché es LRU y acotada; solo
+ * guarda documentos válidos.
+ *
+ * Uso: {@code GraphQL.newGraphQL(schema).preparsedDocumentProvider(documentos)}.
+ */
+public class DocumentosPreparados extends ApolloPersistedQuerySupport {
+
+    private final Cache cache;
+
+    public DocumentosPreparados(int capacidad) {
+        this(new Cache(capacidad));
+    }
+
+    private DocumentosPreparados(Cache cache) {
+        super(cache);
+        this.cache = cache;
+    }
+
+    /**
+     * Crea la caché con la capacidad de GRAPHQL_CACHE_DOCUMENTOS (por defecto
+     * 200 documentos).
+     */
+    public static DocumentosPreparados desdeEntorno() {
+        return new DocumentosPreparados(Entorno.entero(System.getenv(), "GRAPHQL_CACHE_DOCUMENTOS", 200));
+    }
+
+    @Override
+    protected Optional<Object> getPersistedQueryId(ExecutionInput executionInput) {
+        Optional<Object> hashCliente = super.getPersistedQueryId(executionInput);
+        if (hashCliente.isPresent()) {
+            return hashCliente;
+        }
+        String query = executionInput.getQuery();
+        if (query == null || query.isBlank() || PERSISTED_QUERY_MARKER.equals(query)) {
+            return Optional.empty();
+        }
+        return Optional.of(sha256(query));
+    }
+
+    /**
+     * Retorna los contadores de aciertos y fallos de la caché.
+     */
+    public Metricas metricas() {
+        return cache.metricas();
+    }
+
+    /**
+     * SHA-256 en hexadecimal, en el mismo formato que usan los clientes APQ.
+     */
+    static String sha256(String texto) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(texto.getBytes(StandardCharsets.UTF_8));
+            return String.format("%064x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * LRU acotada de documentos por hash.
+     */
+    private static final class Cache implements PersistedQueryCache {
+
+        private final Map<Object, PreparsedDocumentEntry> documentos;
+        private final LongAdder aciertos = new LongAdder();
+        private final LongAdder fallos = new LongAdder();
+
+        Cache(int capacidad) {
+            this.documentos = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, PreparsedDocumentEntry> eldest) {
+                    return size() > capacidad;
+                }
+            };
+        }
+
+        @Override
+        public CompletableFuture<PreparsedDocumentEntry> getPersistedQueryDocumentAsync(Object hash,
+                ExecutionInput executionInput, PersistedQueryCacheMiss alFallar) throws PersistedQueryNotFound {
+            PreparsedDocumentEntry entrada;
+            synchronized (documentos) {
+                entrada = documentos.get(hash);
+            }
+            if (entrada != null) {
+                aciertos.increment();
+                return CompletableFuture.completedFuture(entrada);
+            }
+
+            fallos.increment();
+            String query = executionInput.getQuery();
+            // Sin texto (solo hash), alFallar responde PersistedQueryNotFound y el cliente reenvía la consulta
+            entrada = alFallar.apply(PERSISTED_QUERY_MARKER.equals(query) ? null : query);
+            if (!entrada.hasErrors()) {
+                synchronized (documentos) {
+                    documentos.put(hash, entrada);
+                }
+            }
+            return CompletableFuture.completedFuture(entrada);
+        }
+
+        Metricas metricas() {
+            int tamano;
+            synchronized (documentos) {
+                tamano = documentos.size();
+            }
+            return new Metricas(aciertos.sum(), fallos.sum(), tamano);
+        }
+    }
+
+    /**
+     * Contadores de la caché de documentos.
+     */
+    public record Metricas(long aciertos, long fallos, int documentos) {
+
+        @Override
+        public String toString() {
+            long total = aciertos + fallos;
+            return String.format(Locale.ROOT, "{\"aciertos\":%d,\"fallos\":%d,\"tasaAciertos\":%.4f,\"documentos\":%d}",
+                    aciertos, fallos, total == 0 ? 0.0 : (double) aciertos / total, documentos);
+        }
+    }
+}
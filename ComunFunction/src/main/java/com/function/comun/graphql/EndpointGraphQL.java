@@ -0,0 +1,124 @@
+package com.function.comun.graphql;
+
+import com.function.comun.ConexionBD;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+/**
+ * Atiende las peticiones HTTP de un endpoint GraphQL; cada Azure Function
+ * GraphQL solo declara su ruta y delega aquí con su proveedor.
+ *
+ * El cuerpo es un objeto JSON con "query" y opcionalmente "operationName",
+ * "variables" y "extensions", o un arreglo de esos objetos (lote de
+ * operaciones, ver {@link LoteGraphQL}). Las respuestas de consultas sueltas
+ * pasan por la {@link CacheRespuestas} del proveedor y llevan ETag: si el
+ * cliente envía el mismo en If-None-Match se responde 304 sin cuerpo.
+ */
+public class EndpointGraphQL {
+
+    private final ProveedorGraphQL proveedor;
+    private final GraphQL graphQL;
+    /** Operaciones por petición cuando el cuerpo es un arreglo JSON. */
+    private final LoteGraphQL lote;
+
+    public EndpointGraphQL(ProveedorGraphQL proveedor, LoteGraphQL lote) {
+        this.proveedor = proveedor;
+        this.graphQL = proveedor.getGraphQL();
+        this.lote = lote;
+    }
+
+    /**
+     * Endpoint con el límite de lote de las variables de entorno.
+     */
+    public static EndpointGraphQL desdeEntorno(ProveedorGraphQL proveedor) {
+        return new EndpointGraphQL(proveedor, LoteGraphQL.desdeEntorno());
+    }
+
+    /**
+     * Ejecuta la petición y arma la respuesta: 200 con el JSON, 304 si el
+     * cliente ya tiene la respuesta cacheada, o 400 con {"error": ...} si el
+     * cuerpo no es válido.
+     */
+    public HttpResponseMessage atender(HttpRequestMessage<Optional<String>> request, Logger logger) {
+        try {
+            String cuerpo = request.getBody()
+                    .orElseThrow(() -> new IllegalArgumentException("El cuerpo de la solicitud es obligatorio."));
+
+            byte[] jsonResult;
+            CacheRespuestas.Respuesta respuesta = null;
+            if (CodecGraphQL.esLote(cuerpo)) {
+                // Varias operaciones en una petición: se ejecutan en paralelo con DataLoaders compartidos
+                List<ExecutionResult> resultados = lote.ejecutar(graphQL, CodecGraphQL.leerLote(cuerpo),
+                        proveedor.nuevoRegistro());
+
+                long inicioSerializacion = System.nanoTime();
+                jsonResult = CodecGraphQL.escribirLote(resultados);
+                proveedor.getTiempos().registrar("serializacion", System.nanoTime() - inicioSerializacion);
+            } else {
+                // Leer query, operationName, variables y extensions en una sola pasada
+                CodecGraphQL.Peticion peticion = CodecGraphQL.leer(cuerpo);
+
+                // Una consulta repetida se responde desde la caché mientras no cambien sus tablas
+                CacheRespuestas.Consulta consulta = proveedor.getCache().consulta(peticion);
+                respuesta = proveedor.getCache().obtener(consulta);
+                if (respuesta != null) {
+                    jsonResult = respuesta.cuerpo();
+                } else {
+                    ExecutionInput entrada = LoteGraphQL.entrada(peticion, proveedor.nuevoRegistro());
+                    ExecutionResult executionResult = graphQL.execute(entrada);
+
+                    // Escribir el resultado directamente a bytes JSON (UTF-8)
+                    long inicioSerializacion = System.nanoTime();
+                    jsonResult = CodecGraphQL.escribir(executionResult);
+                    proveedor.getTiempos().registrar("serializacion", System.nanoTime() - inicioSerializacion);
+                    respuesta = proveedor.getCache().guardar(consulta, entrada, executionResult, jsonResult);
+                }
+            }
+
+            // El cliente ya tiene esta misma respuesta: 304 sin cuerpo
+            if (respuesta != null && respuesta.coincide(CacheRespuestas.encabezado(request.getHeaders(),
+                    "If-None-Match"))) {
+                return request.createResponseBuilder(HttpStatus.NOT_MODIFIED)
+                        .header("ETag", respuesta.etag())
+                        .build();
+            }
+            HttpResponseMessage.Builder builder = request.createResponseBuilder(HttpStatus.OK)
+                    .header("Content-Type", "application/json");
+            if (respuesta != null) {
+                // El navegador puede guardarla, pero debe revalidarla con If-None-Match
+                builder.header("ETag", respuesta.etag()).header("Cache-Control", "no-cache");
+            }
+            return builder.body(jsonResult).build();
+        } catch (Exception e) {
+            logger.warning("Petición GraphQL rechazada: " + e.getMessage());
+            return request.createResponseBuilder(HttpStatus.BAD_REQUEST)
+                    .header("Content-Type", "application/json")
+                    .body(Map.of("error", String.valueOf(e.getMessage())))
+                    .build();
+        }
+    }
+
+    /**
+     * Métricas del worker: caché de documentos GraphQL, latencias por fase y
+     * por resolver, caché de respuestas y pool de conexiones.
+     */
+    public HttpResponseMessage metricas(HttpRequestMessage<Optional<String>> request) {
+        String cuerpo = "{\"documentos\":" + proveedor.getDocumentos().metricas()
+                + ",\"tiempos\":" + proveedor.getTiempos().metricas()
+                + ",\"respuestas\":" + proveedor.getCache().metricas()
+                + ",\"pool\":" + ConexionBD.metricas() + "}";
+        return request.createResponseBuilder(HttpStatus.OK)
+                .header("Content-Type", "application/json")
+                .body(cuerpo)
+                .build();
+    }
+}
@@ -0,0 +1,70 @@
+package com.function.comun.graphql;
+
+import graphql.GraphQLError;
+import graphql.language.AstPrinter;
+import graphql.language.ObjectTypeDefinition;
+import graphql.language.ObjectTypeExtensionDefinition;
+import graphql.language.SDLDefinition;
+import graphql.language.TypeDefinition;
+import graphql.schema.idl.SchemaParser;
+import graphql.schema.idl.TypeDefinitionRegistry;
+
+import java.io.Reader;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Combina varios archivos .graphqls escritos para endpoints separados en un
+ * solo registro de tipos.
+ *
+ * Los tipos raíz (Query, Mutation) de los archivos siguientes al primero se
+ * agregan como extensiones, así sus campos se suman. Los demás tipos que se
+ * repiten (por ejemplo Rol o PageInfo) deben tener la misma definición en
+ * todos los archivos; si difieren, se rechaza la combinación.
+ */
+public final class EsquemaCombinado {
+
+    private static final Set<String> RAICES = Set.of("Query", "Mutation", "Subscription");
+
+    private EsquemaCombinado() {
+    }
+
+    /**
+     * Parsea y combina los esquemas, en el orden recibido.
+     *
+     * @throws IllegalArgumentException si un tipo no raíz se define de formas
+     *                                  distintas.
+     */
+    public static TypeDefinitionRegistry combinar(List<Reader> esquemas) {
+        SchemaParser parser = new SchemaParser();
+        TypeDefinitionRegistry combinado = new TypeDefinitionRegistry();
+        for (Reader esquema : esquemas) {
+            TypeDefinitionRegistry registro = parser.parse(esquema);
+            for (TypeDefinition<?> tipo : registro.types().values()) {
+                Optional<TypeDefinition> existente = combinado.getType(tipo.getName());
+                if (existente.isEmpty()) {
+                    agregar(combinado, tipo);
+                } else if (RAICES.contains(tipo.getName()) && tipo instanceof ObjectTypeDefinition raiz) {
+                    agregar(combinado, ObjectTypeExtensionDefinition.newObjectTypeExtensionDefinition()
+                            .name(raiz.getName())
+                            .fieldDefinitions(raiz.getFieldDefinitions())
+                            .build());
+                } else if (!AstPrinter.printAstCompact(existente.get()).equals(AstPrinter.printAstCompact(tipo))) {
+                    throw new IllegalArgumentException("El tipo '" + tipo.getName()
+                            + "' tiene definiciones distintas en los esquemas combinados.");
+                }
+            }
+            registro.objectTypeExtensions().values().forEach(extensiones -> extensiones.forEach(
+                    extension -> agregar(combinado, extension)));
+        }
+        return combinado;
+    }
+
+    private static void agregar(TypeDefinitionRegistry registro, SDLDefinition<?> definicion) {
+        Optional<GraphQLError> error = registro.add(definicion);
+        if (error.isPresent()) {
+            throw new IllegalArgumentException(error.get().getMessage());
+        }
+    }
+}
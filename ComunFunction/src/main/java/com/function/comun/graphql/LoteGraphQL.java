@@ -0,0 +1,102 @@
+package com.function.comun.graphql;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.GraphqlErrorBuilder;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
+
+import com.function.comun.Entorno;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.dataloader.DataLoaderRegistry;
+
+/**
+ * Ejecución de varias operaciones GraphQL recibidas en una sola petición HTTP
+ * (un arreglo JSON), para que el cliente pague una sola vez el costo del
+ * trigger y del host.
+ *
+ * Las operaciones se ejecutan en paralelo y comparten el registro de
+ * DataLoaders: un mismo id pedido por dos operaciones se consulta una vez. Los
+ * resultados se retornan en el orden de las operaciones; una operación
+ * inválida produce su propio resultado con error sin afectar al resto.
+ *
+ * Variable de entorno: GRAPHQL_LOTE_MAXIMO (operaciones por petición, por
+ * defecto 10).
+ */
+public class LoteGraphQL {
+
+    private final int maximo;
+
+    public LoteGraphQL(int maximo) {
+        this.maximo = maximo;
+    }
+
+    /**
+     * Crea el ejecutor de lotes con el máximo de GRAPHQL_LOTE_MAXIMO.
+     */
+    public static LoteGraphQL desdeEntorno() {
+        return new LoteGraphQL(Entorno.entero(System.getenv(), "GRAPHQL_LOTE_MAXIMO", 10));
+    }
+
+    /**
+     * Construye la entrada de ejecución de una petición. Con APQ el cliente
+     * puede enviar solo el hash de una consulta ya registrada.
+     *
+     * @throws IllegalArgumentException si no hay query ni hash de consulta
+     *                                  persistida.
+     */
+    public static ExecutionInput entrada(CodecGraphQL.Peticion peticion, DataLoaderRegistry registro) {
+        String query = peticion.query();
+        if (query == null || query.trim().isEmpty()) {
+            if (!peticion.extensions().containsKey("persistedQuery")) {
+                throw new IllegalArgumentException("El campo 'query' es obligatorio.");
+            }
+            query = PersistedQuerySupport.PERSISTED_QUERY_MARKER;
+        }
+        return ExecutionInput.newExecutionInput()
+                .query(query)
+                .operationName(peticion.operationName())
+                .variables(peticion.variables())
+                .extensions(peticion.extensions())
+                .dataLoaderRegistry(registro)
+                .build();
+    }
+
+    /**
+     * Ejecuta las operaciones del lote en paralelo y espera todos los
+     * resultados.
+     *
+     * @throws IllegalArgumentException si el lote está vacío o supera el
+     *                                  máximo.
+     */
+    public List<ExecutionResult> ejecutar(GraphQL graphQL, List<CodecGraphQL.Peticion> peticiones,
+            DataLoaderRegistry registro) {
+        if (peticiones.isEmpty()) {
+            throw new IllegalArgumentException("El lote no contiene operaciones.");
+        }
+        if (peticiones.size() > maximo) {
+            throw new IllegalArgumentException("El lote admite como máximo " + maximo + " operaciones.");
+        }
+
+        List<CompletableFuture<ExecutionResult>> futuros = new ArrayList<>(peticiones.size());
+        for (CodecGraphQL.Peticion peticion : peticiones) {
+            try {
+                futuros.add(graphQL.executeAsync(entrada(peticion, registro)));
+            } catch (IllegalArgumentException e) {
+                futuros.add(CompletableFuture.completedFuture(ExecutionResult.newExecutionResult()
+                        .addError(GraphqlErrorBuilder.newError().message(e.getMessage()).build())
+                        .build()));
+            }
+        }
+
+        List<ExecutionResult> resultados = new ArrayList<>(futuros.size());
+        for (CompletableFuture<ExecutionResult> futuro : futuros) {
+            resultados.add(futuro.join());
+        }
+        return resultados;
+    }
+}
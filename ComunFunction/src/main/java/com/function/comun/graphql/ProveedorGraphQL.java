@@ -0,0 +1,30 @@
+package com.function.comun.graphql;
+
+import graphql.GraphQL;
+import org.dataloader.DataLoaderRegistry;
+
+/**
+ * Lo que un esquema GraphQL aporta a {@link EndpointGraphQL}: la instancia
+ * configurada, los DataLoaders de cada petición y las cachés y latencias que
+ * se exponen en las métricas.
+ */
+public interface ProveedorGraphQL {
+
+    /** Instancia de GraphQL con el esquema y la instrumentación del endpoint. */
+    GraphQL getGraphQL();
+
+    /**
+     * Crea el registro de DataLoaders de una petición. Cada ejecución usa el
+     * suyo: los ids se agrupan y se cachean solo dentro de la petición.
+     */
+    DataLoaderRegistry nuevoRegistro();
+
+    /** Caché de documentos parseados y validados. */
+    DocumentosPreparados getDocumentos();
+
+    /** Latencias por fase y por resolver del endpoint. */
+    TiemposGraphQL getTiempos();
+
+    /** Caché de respuestas del endpoint. */
+    CacheRespuestas getCache();
+}
@@ -0,0 +1,119 @@
+package com.function.comun.graphql;
+
+import com.function.comun.EjecutorBD;
+
+import graphql.schema.idl.RuntimeWiring;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.dataloader.BatchLoader;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderFactory;
+import org.dataloader.DataLoaderRegistry;
+
+/**
+ * Esquema y resolvers de la entidad Rol, compartidos por RolesGraphQLFunction
+ * y por el esquema combinado del panel (usuarios y roles en un solo
+ * endpoint).
+ */
+public class ResolversRoles {
+
+    /** Ruta del esquema de roles en el classpath. */
+    public static final String ESQUEMA = "/graphql/roles.graphqls";
+    /** Nombre del DataLoader que agrupa las consultas rol(id) de una petición. */
+    public static final String ROL_LOADER = "rol";
+    /** Pesos de las mutaciones de roles para {@link CostoConsulta}. */
+    public static final Map<String, Integer> PESOS = Map.of(
+            "Mutation.crearRol", 10,
+            "Mutation.actualizarRol", 10,
+            "Mutation.eliminarRol", 10,
+            "Mutation.crearRoles", 10,
+            "Mutation.eliminarRoles", 10);
+    /** Tablas que leen o modifican los resolvers de roles, para {@link CacheRespuestas}. */
+    public static final Map<String, Set<String>> TABLAS = Map.of(
+            "Query.rol", Set.of("roles"),
+            "Query.roles", Set.of("roles"),
+            "Mutation.crearRol", Set.of("roles"),
+            "Mutation.actualizarRol", Set.of("roles"),
+            "Mutation.eliminarRol", Set.of("roles", "usuario_roles"),
+            "Mutation.crearRoles", Set.of("roles"),
+            "Mutation.eliminarRoles", Set.of("roles", "usuario_roles"));
+
+    private final RolDataFetcher rolDF = new RolDataFetcher();
+    private final EjecutorBD bd;
+
+    /**
+     * @param bd Ejecutor de las consultas JDBC de los resolvers.
+     */
+    public ResolversRoles(EjecutorBD bd) {
+        this.bd = bd;
+    }
+
+    /**
+     * Abre el esquema de roles.
+     */
+    public static Reader esquema() {
+        InputStream schemaStream = ResolversRoles.class.getResourceAsStream(ESQUEMA);
+        if (schemaStream == null) {
+            throw new IllegalStateException("No se encontró '" + ESQUEMA + "' en el classpath.");
+        }
+        return new InputStreamReader(schemaStream, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Agrega los resolvers de Query y Mutation de roles al wiring. Si el
+     * wiring ya tiene resolvers para esos tipos (esquema combinado), se
+     * suman a los existentes.
+     */
+    public RuntimeWiring.Builder cablear(RuntimeWiring.Builder wiring) {
+        return wiring
+                .type("Query", builder -> builder
+                        .dataFetcher("rol", environment -> {
+                            int id = Integer.parseInt(environment.getArgument("id"));
+                            DataLoader<Integer, Map<String, Object>> loader = environment.getDataLoader(ROL_LOADER);
+                            return loader.load(id);
+                        })
+                        .dataFetcher("roles", environment -> {
+                            Integer first = environment.getArgument("first");
+                            String after = environment.getArgument("after");
+                            return bd.ejecutar(() -> rolDF.listarRoles(first, after));
+                        }))
+                .type("Mutation", builder -> builder
+                        .dataFetcher("crearRol", environment -> {
+                            String rolNombre = environment.getArgument("rol");
+                            return bd.ejecutar(() -> rolDF.crearRol(rolNombre));
+                        })
+                        .dataFetcher("actualizarRol", environment -> {
+                            int id = Integer.parseInt(environment.getArgument("id"));
+                            String rolNombre = environment.getArgument("rol");
+                            return bd.ejecutar(() -> rolDF.actualizarRol(id, rolNombre));
+                        })
+                        .dataFetcher("eliminarRol", environment -> {
+                            int id = Integer.parseInt(environment.getArgument("id"));
+                            return bd.ejecutar(() -> rolDF.eliminarRol(id));
+                        })
+                        .dataFetcher("crearRoles", environment -> {
+                            List<String> roles = environment.getArgument("roles");
+                            return bd.ejecutar(() -> rolDF.crearRoles(roles));
+                        })
+                        .dataFetcher("eliminarRoles", environment -> {
+                            List<Integer> ids = environment.<List<String>>getArgument("ids").stream()
+                                    .map(Integer::parseInt).toList();
+                            return bd.ejecutar(() -> rolDF.eliminarRoles(ids));
+                        }));
+    }
+
+    /**
+     * Registra los DataLoaders de roles en el registro de una petición.
+     */
+    public void registrarLoaders(DataLoaderRegistry registro) {
+        BatchLoader<Integer, Map<String, Object>> cargador = ids -> bd.ejecutar(() -> rolDF.obtenerRolesPorIds(ids));
+        registro.register(ROL_LOADER, DataLoaderFactory.newDataLoader(cargador));
+    }
+}
@@ -0,0 +1,267 @@
+package com.function.comun.graphql;
+
+import com.function.comun.ConexionBD;
+import com.function.comun.ConsultaPorIds;
+import com.function.comun.EventoGrid;
+import com.function.comun.MutacionMasiva;
+import com.function.comun.Outbox;
+import com.function.comun.OutboxRelay;
+import com.function.comun.Paginacion;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Clase encargada de realizar el CRUD contra la tabla "ROLES" en Oracle.
+ * Está en el módulo común porque la usan RolesGraphQLFunction y el esquema
+ * combinado del panel en UsuariosGraphQLFunction.
+ *
+ * Las mutaciones registran en el outbox los mismos eventos que las funciones
+ * REST (RolCreado, RolActualizado, RolEliminado), en su misma transacción,
+ * para que las demás Function Apps y vetefaas invaliden sus cachés.
+ */
+public class RolDataFetcher {
+
+    /** Tamaño de página cuando la consulta no indica 'first'. */
+    private static final int TAMANO_PAGINA = 50;
+
+    /**
+     * Obtiene varios roles con una sola consulta (WHERE id_rol IN). Usado por
+     * el DataLoader: el resultado sigue el orden de 'ids' y tiene null para
+     * los ids que no existen.
+     */
+    public List<Map<String, Object>> obtenerRolesPorIds(List<Integer> ids) throws SQLException {
+        Map<Integer, Map<String, Object>> porId = new HashMap<>();
+        try (Connection conn = getConnection()) {
+            String sql = "SELECT id_rol, rol FROM ROLES WHERE id_rol IN (%s)";
+            ConsultaPorIds.consultar(conn, sql, ids, rs -> {
+                int id = rs.getInt("id_rol");
+                porId.put(id, Map.of("id", id, "rol", rs.getString("rol")));
+            });
+        }
+        List<Map<String, Object>> roles = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            roles.add(porId.get(id));
+        }
+        return roles;
+    }
+
+    /**
+     * Lista una página de roles ordenados por id, a partir del cursor 'after'
+     * (paginación keyset sobre la PK).
+     */
+    public Map<String, Object> listarRoles(Integer first, String after) throws SQLException {
+        int tamano = Paginacion.tamano(first, TAMANO_PAGINA, Paginacion.TAMANO_MAXIMO);
+        int despuesDe = Paginacion.despuesDe(after, "rol");
+        try (Connection conn = getConnection()) {
+            String sql = "SELECT id_rol, rol FROM ROLES WHERE id_rol > ? ORDER BY id_rol FETCH FIRST ? ROWS ONLY";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, despuesDe);
+                ps.setInt(2, tamano + 1);
+                ps.setFetchSize(tamano + 1);
+                try (ResultSet rs = ps.executeQuery()) {
+                    List<Map<String, Object>> roles = new ArrayList<>(tamano + 1);
+                    while (rs.next()) {
+                        int id = rs.getInt("id_rol");
+                        String rolName = rs.getString("rol");
+                        roles.add(Map.of("id", id, "rol", rolName));
+                    }
+                    return Paginacion.conexion(roles, tamano, "rol");
+                }
+            }
+        }
+    }
+
+    /**
+     * Crea un nuevo rol con el nombre 'rol' en la BD.
+     */
+    public Map<String, Object> crearRol(String rolName) throws SQLException {
+        Map<String, Object> creado = null;
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                String sql = "INSERT INTO ROLES (rol) VALUES (?)";
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, rolName);
+                    int rows = ps.executeUpdate();
+                    if (rows > 0) {
+                        try (Statement st = conn.createStatement();
+                                ResultSet rs = st.executeQuery("SELECT \"ADMIN\".\"ISEQ$$_112310\".currval FROM dual")) {
+                            if (rs.next()) {
+                                int idGenerado = rs.getInt(1);
+                                creado = Map.of("id", idGenerado, "rol", rolName);
+                            }
+                        }
+                    }
+                }
+                if (creado == null) {
+                    throw new SQLException("No se pudo crear el rol en la BD con secuencia.");
+                }
+                // Registrar el evento en el outbox, en la misma transacción
+                Outbox.registrar(conn, EventoGrid.nuevo("RolCreado", "rol/creado", Map.of("rol", rolName)));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        OutboxRelay.getInstancia().programarDrenado();
+        return creado;
+    }
+
+    /**
+     * Actualiza el nombre de un rol existente.
+     */
+    public Map<String, Object> actualizarRol(int id, String newRol) throws SQLException {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                String sql = "UPDATE ROLES SET rol = ? WHERE id_rol = ?";
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, newRol);
+                    ps.setInt(2, id);
+                    if (ps.executeUpdate() == 0) {
+                        throw new SQLException("No se pudo actualizar el rol con id " + id);
+                    }
+                }
+                // Registrar el evento en el outbox, en la misma transacción
+                Outbox.registrar(conn, EventoGrid.nuevo("RolActualizado", "rol/actualizado",
+                        Map.of("id", id, "nuevoRol", newRol)));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        OutboxRelay.getInstancia().programarDrenado();
+        return Map.of("id", id, "rol", newRol);
+    }
+
+    /**
+     * Elimina un rol por su ID.
+     * Retorna true si se elimina correctamente.
+     */
+    public boolean eliminarRol(int id) throws SQLException {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                String sql = "DELETE FROM ROLES WHERE id_rol = ?";
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, id);
+                    if (ps.executeUpdate() == 0) {
+                        conn.rollback();
+                        return false;
+                    }
+                }
+                // Registrar el evento en el outbox, en la misma transacción
+                Outbox.registrar(conn, EventoGrid.nuevo("RolEliminado", "rol/eliminado", Map.of("id", id)));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        OutboxRelay.getInstancia().programarDrenado();
+        return true;
+    }
+
+    /**
+     * Crea varios roles en una sola transacción con executeBatch. Los ids se
+     * reservan antes de la secuencia de identidad de ROLES. Retorna un
+     * resultado por elemento, en el orden de la entrada, con el rol creado o
+     * el error.
+     */
+    public List<Map<String, Object>> crearRoles(List<String> roles) throws SQLException {
+        if (roles.isEmpty()) {
+            return List.of();
+        }
+        try (Connection conn = getConnection()) {
+            List<Integer> ids = MutacionMasiva.reservarIds(conn, "ROLES", "ID_ROL", roles.size());
+            String sql = "INSERT INTO ROLES (id_rol, rol) VALUES (?, ?)";
+            MutacionMasiva.Resultado resultado = MutacionMasiva.ejecutar(conn, List.of(sql), roles.size(),
+                    (ps, i) -> {
+                        ps.setInt(1, ids.get(i));
+                        ps.setString(2, roles.get(i));
+                    },
+                    r -> {
+                        List<EventoGrid> eventos = new ArrayList<>();
+                        for (int i = 0; i < roles.size(); i++) {
+                            if (r.exitoso(i)) {
+                                eventos.add(EventoGrid.nuevo("RolCreado", "rol/creado", Map.of("rol", roles.get(i))));
+                            }
+                        }
+                        return eventos;
+                    });
+            OutboxRelay.getInstancia().programarDrenado();
+            List<Map<String, Object>> resultados = new ArrayList<>(roles.size());
+            for (int i = 0; i < roles.size(); i++) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("indice", i);
+                if (resultado.exitoso(i)) {
+                    item.put("id", ids.get(i));
+                    item.put("rol", Map.of("id", ids.get(i), "rol", roles.get(i)));
+                } else {
+                    item.put("error", resultado.errores()[i]);
+                }
+                resultados.add(item);
+            }
+            return resultados;
+        }
+    }
+
+    /**
+     * Elimina varios roles en una sola transacción con executeBatch. Retorna
+     * un resultado por id, en el mismo orden.
+     */
+    public List<Map<String, Object>> eliminarRoles(List<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<Map<String, Object>> resultados;
+        try (Connection conn = getConnection()) {
+            resultados = eliminarRoles(conn, ids);
+        }
+        OutboxRelay.getInstancia().programarDrenado();
+        return resultados;
+    }
+
+    /**
+     * Elimina los roles con la conexión indicada. Como EliminarRol, borra
+     * antes sus asignaciones (usuario_roles) y registra RolEliminado por cada
+     * rol borrado, en la misma transacción.
+     */
+    List<Map<String, Object>> eliminarRoles(Connection conn, List<Integer> ids) throws SQLException {
+        List<String> sentencias = List.of("DELETE FROM usuario_roles WHERE rol_id = ?",
+                "DELETE FROM ROLES WHERE id_rol = ?");
+        MutacionMasiva.Resultado resultado = MutacionMasiva.ejecutar(conn, sentencias, ids.size(),
+                (ps, i) -> ps.setInt(1, ids.get(i)),
+                r -> {
+                    List<EventoGrid> eventos = new ArrayList<>();
+                    for (int i = 0; i < ids.size(); i++) {
+                        if (r.exitoso(i) && r.filas()[i] != 0) {
+                            eventos.add(EventoGrid.nuevo("RolEliminado", "rol/eliminado", Map.of("id", ids.get(i))));
+                        }
+                    }
+                    return eventos;
+                });
+        List<Map<String, Object>> resultados = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("indice", i);
+            item.put("id", ids.get(i));
+            // SUCCESS_NO_INFO (-2) también cuenta como eliminado
+            item.put("eliminado", resultado.exitoso(i) && resultado.filas()[i] != 0);
+            item.put("error", resultado.errores()[i]);
+            resultados.add(item);
+        }
+        return resultados;
+    }
+
+    /**
+     * Helper para obtener una conexión del pool compartido (ver ConexionBD),
+     * configurado con las variables de entorno DB_URL, DB_USER, DB_PASSWORD.
+     */
+    private Connection getConnection() throws SQLException {
+        return ConexionBD.getConnection();
+    }
+}
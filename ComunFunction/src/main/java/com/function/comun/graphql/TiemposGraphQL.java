@@ -0,0 +1,329 @@
+package com.function.comun.graphql;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.execution.ExecutionStepInfo;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationValidationParameters;
+import graphql.language.Document;
+import graphql.validation.ValidationError;
+
+import com.function.comun.Entorno;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Latencias de las ejecuciones GraphQL, por fase (parseo, validación,
+ * ejecución, serialización y total) y por resolver ("Tipo.campo").
+ *
+ * Cada latencia se acumula en un histograma de buckets en potencias de 2 de
+ * microsegundos, con contadores atómicos sin bloqueo, para dejarlo activo en
+ * producción. Los campos con el fetcher por defecto (propiedades del Map) no se
+ * miden: no hacen E/S.
+ *
+ * Si la petición envía {@code "extensions": {"tracing": true}}, la respuesta
+ * incluye extensions.tracing con las fases y cada resolver de esa ejecución.
+ * El parseo solo aparece cuando el documento no estaba en caché, y la
+ * serialización solo en las métricas agregadas (ocurre después de armar la
+ * respuesta).
+ *
+ * Variable de entorno: GRAPHQL_TIEMPOS_INTERVALO_S (segundos entre cada log
+ * de las métricas agregadas, por defecto 60; 0 lo desactiva).
+ */
+public class TiemposGraphQL extends SimplePerformantInstrumentation {
+
+    private static final Logger LOGGER = Logger.getLogger(TiemposGraphQL.class.getName());
+
+    private final Map<String, Histograma> fases = new ConcurrentHashMap<>();
+    private final Map<String, Histograma> resolvers = new ConcurrentHashMap<>();
+    private final LongAdder ejecuciones = new LongAdder();
+
+    /**
+     * Crea la instrumentación y programa el log periódico según
+     * GRAPHQL_TIEMPOS_INTERVALO_S.
+     *
+     * @param nombre Nombre del endpoint, para distinguir sus líneas de log.
+     */
+    public static TiemposGraphQL desdeEntorno(String nombre) {
+        int intervalo = Entorno.entero(System.getenv(), "GRAPHQL_TIEMPOS_INTERVALO_S", 60);
+        TiemposGraphQL tiempos = new TiemposGraphQL();
+        if (intervalo > 0) {
+            tiempos.registrarPeriodicamente(nombre, intervalo);
+        }
+        return tiempos;
+    }
+
+    private void registrarPeriodicamente(String nombre, int intervaloSegundos) {
+        ScheduledExecutorService programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "graphql-tiempos");
+            t.setDaemon(true);
+            return t;
+        });
+        long[] ultimas = { 0 };
+        programador.scheduleAtFixedRate(() -> {
+            // Sin ejecuciones nuevas no hay nada que informar
+            long total = ejecuciones.sum();
+            if (total != ultimas[0]) {
+                ultimas[0] = total;
+                LOGGER.info("Tiempos GraphQL " + nombre + ": " + metricas());
+            }
+        }, intervaloSegundos, intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Registra la latencia de una fase medida fuera de graphql-java (por
+     * ejemplo, la serialización de la respuesta).
+     */
+    public void registrar(String fase, long nanos) {
+        fases.computeIfAbsent(fase, k -> new Histograma()).registrar(nanos);
+    }
+
+    @Override
+    public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+        Map<String, Object> extensions = parameters.getExecutionInput().getExtensions();
+        return new Estado(extensions != null && Boolean.TRUE.equals(extensions.get("tracing")));
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecution(InstrumentationExecutionParameters parameters,
+            InstrumentationState state) {
+        ejecuciones.increment();
+        return medir("total", (Estado) state);
+    }
+
+    @Override
+    public InstrumentationContext<Document> beginParse(InstrumentationExecutionParameters parameters,
+            InstrumentationState state) {
+        return medir("parseo", (Estado) state);
+    }
+
+    @Override
+    public InstrumentationContext<List<ValidationError>> beginValidation(
+            InstrumentationValidationParameters parameters, InstrumentationState state) {
+        return medir("validacion", (Estado) state);
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(
+            InstrumentationExecuteOperationParameters parameters, InstrumentationState state) {
+        return medir("ejecucion", (Estado) state);
+    }
+
+    @Override
+    public InstrumentationContext<Object> beginFieldFetch(InstrumentationFieldFetchParameters parameters,
+            InstrumentationState state) {
+        if (parameters.isTrivialDataFetcher()) {
+            return SimpleInstrumentationContext.noOp();
+        }
+        Estado estado = (Estado) state;
+        ExecutionStepInfo paso = parameters.getExecutionStepInfo();
+        String campo = paso.getObjectType().getName() + "." + paso.getFieldDefinition().getName();
+        long inicio = System.nanoTime();
+        // Con DataLoader el valor se completa al despachar el lote: se mide hasta ahí
+        return SimpleInstrumentationContext.whenCompleted((valor, error) -> {
+            long fin = System.nanoTime();
+            resolvers.computeIfAbsent(campo, k -> new Histograma()).registrar(fin - inicio);
+            if (estado.traza) {
+                estado.resolvers.add(new Resolver(paso.getPath().toString(), campo, inicio - estado.inicio,
+                        fin - inicio));
+            }
+        });
+    }
+
+    private <T> InstrumentationContext<T> medir(String fase, Estado estado) {
+        long inicio = System.nanoTime();
+        return SimpleInstrumentationContext.whenCompleted((valor, error) -> {
+            long duracion = System.nanoTime() - inicio;
+            registrar(fase, duracion);
+            if (estado.traza) {
+                estado.fases.put(fase, duracion);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> instrumentExecutionResult(ExecutionResult executionResult,
+            InstrumentationExecutionParameters parameters, InstrumentationState state) {
+        Estado estado = (Estado) state;
+        if (!estado.traza) {
+            return CompletableFuture.completedFuture(executionResult);
+        }
+        Map<Object, Object> extensions = new LinkedHashMap<>();
+        if (executionResult.getExtensions() != null) {
+            extensions.putAll(executionResult.getExtensions());
+        }
+        extensions.put("tracing", estado.aMapa());
+        return CompletableFuture.completedFuture(
+                ExecutionResultImpl.newExecutionResult().from(executionResult).extensions(extensions).build());
+    }
+
+    /**
+     * Retorna los histogramas acumulados desde el inicio del worker.
+     */
+    public Metricas metricas() {
+        return new Metricas(ejecuciones.sum(), resumen(fases), resumen(resolvers));
+    }
+
+    private static Map<String, Histograma.Resumen> resumen(Map<String, Histograma> histogramas) {
+        Map<String, Histograma.Resumen> resumen = new TreeMap<>();
+        histogramas.forEach((nombre, h) -> resumen.put(nombre, h.resumen()));
+        return resumen;
+    }
+
+    /**
+     * Ejecuciones y percentiles por fase y por resolver. toString() genera el
+     * JSON que se expone en el endpoint de métricas y en el log.
+     */
+    public record Metricas(long ejecuciones, Map<String, Histograma.Resumen> fases,
+            Map<String, Histograma.Resumen> resolvers) {
+
+        @Override
+        public String toString() {
+            return "{\"ejecuciones\":" + ejecuciones + ",\"fases\":" + json(fases) + ",\"resolvers\":"
+                    + json(resolvers) + "}";
+        }
+
+        private static String json(Map<String, Histograma.Resumen> resumen) {
+            StringBuilder sb = new StringBuilder("{");
+            resumen.forEach((nombre, r) -> {
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                sb.append('"').append(nombre).append("\":").append(r);
+            });
+            return sb.append('}').toString();
+        }
+    }
+
+    /**
+     * Histograma de latencias con buckets [2^(i-1), 2^i) microsegundos. Los
+     * percentiles se informan como el límite superior del bucket (acotado al
+     * máximo observado), es decir, con un error de hasta el doble del valor
+     * real.
+     */
+    public static final class Histograma {
+
+        private static final int BUCKETS = 32;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder cantidad = new LongAdder();
+        private final LongAdder sumaNanos = new LongAdder();
+        private final LongAccumulator maximoNanos = new LongAccumulator(Math::max, 0);
+
+        Histograma() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void registrar(long nanos) {
+            long micros = Math.max(0, nanos) / 1000;
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets[bucket].increment();
+            cantidad.increment();
+            sumaNanos.add(nanos);
+            maximoNanos.accumulate(nanos);
+        }
+
+        Resumen resumen() {
+            long[] conteos = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                conteos[i] = buckets[i].sum();
+                total += conteos[i];
+            }
+            long maximoUs = maximoNanos.get() / 1000;
+            return new Resumen(total, total == 0 ? 0 : sumaNanos.sum() / total / 1000,
+                    Math.min(maximoUs, percentil(conteos, total, 0.50)),
+                    Math.min(maximoUs, percentil(conteos, total, 0.95)),
+                    Math.min(maximoUs, percentil(conteos, total, 0.99)), maximoUs);
+        }
+
+        private static long percentil(long[] conteos, long total, double p) {
+            long objetivo = (long) Math.ceil(total * p);
+            long acumulado = 0;
+            for (int i = 0; i < conteos.length; i++) {
+                acumulado += conteos[i];
+                if (acumulado >= objetivo && acumulado > 0) {
+                    return 1L << i;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Cantidad de muestras y latencias en microsegundos.
+         */
+        public record Resumen(long cantidad, long promedioUs, long p50Us, long p95Us, long p99Us, long maximoUs) {
+
+            @Override
+            public String toString() {
+                return String.format(Locale.ROOT,
+                        "{\"cantidad\":%d,\"promedioUs\":%d,\"p50Us\":%d,\"p95Us\":%d,\"p99Us\":%d,\"maximoUs\":%d}",
+                        cantidad, promedioUs, p50Us, p95Us, p99Us, maximoUs);
+            }
+        }
+    }
+
+    /**
+     * Tiempos de una ejecución; el detalle solo se guarda si se pidió tracing.
+     */
+    private static final class Estado implements InstrumentationState {
+        final boolean traza;
+        final long inicio = System.nanoTime();
+        final Map<String, Long> fases = new ConcurrentHashMap<>();
+        final ConcurrentLinkedQueue<Resolver> resolvers = new ConcurrentLinkedQueue<>();
+
+        Estado(boolean traza) {
+            this.traza = traza;
+        }
+
+        Map<String, Object> aMapa() {
+            Map<String, Object> mapa = new LinkedHashMap<>();
+            mapa.put("duracionUs", fases.getOrDefault("total", System.nanoTime() - inicio) / 1000);
+            Map<String, Object> porFase = new LinkedHashMap<>();
+            for (String fase : List.of("parseo", "validacion", "ejecucion")) {
+                Long nanos = fases.get(fase);
+                if (nanos != null) {
+                    porFase.put(fase + "Us", nanos / 1000);
+                }
+            }
+            mapa.put("fases", porFase);
+            List<Map<String, Object>> lista = new ArrayList<>();
+            for (Resolver r : resolvers) {
+                Map<String, Object> resolver = new LinkedHashMap<>();
+                resolver.put("ruta", r.ruta());
+                resolver.put("campo", r.campo());
+                resolver.put("inicioUs", r.inicioNanos() / 1000);
+                resolver.put("duracionUs", r.duracionNanos() / 1000);
+                lista.add(resolver);
+            }
+            mapa.put("resolvers", lista);
+            return mapa;
+        }
+    }
+
+    private record Resolver(String ruta, String campo, long inicioNanos, long duracionNanos) {
+    }
+}
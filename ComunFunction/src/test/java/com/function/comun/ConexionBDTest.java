@@ -0,0 +1,51 @@
+package com.function.comun;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.sql.Connection;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del pool compartido usando una base H2 en memoria.
+ */
+public class ConexionBDTest {
+
+    @Test
+    public void testConfiguracionDesdeVariablesDeEntorno() {
+        HikariConfig config = ConexionBD.configuracion(Map.of(
+                "DB_URL", "jdbc:h2:mem:config",
+                "DB_POOL_MAX", "8",
+                "DB_POOL_MIN_IDLE", "20",
+                "DB_POOL_TIMEOUT_MS", "no-numerico"));
+
+        assertEquals(8, config.getMaximumPoolSize());
+        // El mínimo inactivo nunca supera el máximo
+        assertEquals(8, config.getMinimumIdle());
+        assertEquals(10_000, config.getConnectionTimeout());
+    }
+
+    @Test
+    public void testMetricasDePrestamo() throws Exception {
+        HikariConfig config = ConexionBD.configuracion(Map.of(
+                "DB_URL", "jdbc:h2:mem:metricas",
+                "DB_POOL_MAX", "2"));
+        config.setRegisterMbeans(false);
+
+        try (HikariDataSource ds = new HikariDataSource(config)) {
+            try (Connection c1 = ds.getConnection(); Connection c2 = ds.getConnection()) {
+                assertTrue(c1.isValid(1));
+                assertTrue(c2.isValid(1));
+                assertEquals(2, ds.getHikariPoolMXBean().getActiveConnections());
+            }
+
+            MetricasPool.Instantanea metricas = ConexionBD.metricas();
+            assertTrue(metricas.prestamos() >= 2);
+            assertTrue(metricas.esperaMaximaMs() >= 0);
+            assertEquals(0, metricas.timeouts());
+        }
+    }
+}
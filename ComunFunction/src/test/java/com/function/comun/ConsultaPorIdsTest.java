@@ -0,0 +1,82 @@
+package com.function.comun;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la consulta por lista de ids con H2.
+ */
+public class ConsultaPorIdsTest {
+
+    @Test
+    public void testConsultaEnTramosSinRepetirIds() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:consulta_ids;MODE=Oracle;DB_CLOSE_DELAY=-1");
+        try (Connection conn = dataSource.getConnection()) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("DROP TABLE IF EXISTS usuarios");
+                st.execute("CREATE TABLE usuarios (id_usuario NUMBER PRIMARY KEY, nombre VARCHAR2(100))");
+                st.execute("INSERT INTO usuarios SELECT X, 'usuario ' || X FROM SYSTEM_RANGE(1, 3000)");
+            }
+
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 1; i <= 2500; i++) {
+                ids.add(i);
+            }
+            ids.add(7);
+            ids.add(9999);
+
+            Map<Integer, String> nombres = new HashMap<>();
+            List<Integer> leidos = new ArrayList<>();
+            ConsultaPorIds.consultar(conn, "SELECT id_usuario, nombre FROM usuarios WHERE id_usuario IN (%s)", ids,
+                    rs -> {
+                        leidos.add(rs.getInt("id_usuario"));
+                        nombres.put(rs.getInt("id_usuario"), rs.getString("nombre"));
+                    });
+
+            assertEquals(2500, leidos.size());
+            assertEquals("usuario 7", nombres.get(7));
+            assertFalse(nombres.containsKey(9999));
+        }
+    }
+
+    @Test
+    public void testRellenaHastaTamanosFijos() {
+        assertEquals(8, ConsultaPorIds.tamanoRelleno(1));
+        assertEquals(8, ConsultaPorIds.tamanoRelleno(8));
+        assertEquals(16, ConsultaPorIds.tamanoRelleno(9));
+        assertEquals(512, ConsultaPorIds.tamanoRelleno(300));
+        assertEquals(1000, ConsultaPorIds.tamanoRelleno(513));
+        assertEquals(1000, ConsultaPorIds.tamanoRelleno(1000));
+        assertThrows(IllegalArgumentException.class, () -> ConsultaPorIds.tamanoRelleno(1001));
+    }
+
+    @Test
+    public void testElRellenoNoRepiteFilas() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:consulta_ids_relleno;MODE=Oracle;DB_CLOSE_DELAY=-1");
+        try (Connection conn = dataSource.getConnection()) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("DROP TABLE IF EXISTS usuarios");
+                st.execute("CREATE TABLE usuarios (id_usuario NUMBER PRIMARY KEY)");
+                st.execute("INSERT INTO usuarios SELECT X FROM SYSTEM_RANGE(1, 20)");
+            }
+
+            List<Integer> leidos = new ArrayList<>();
+            ConsultaPorIds.consultar(conn, "SELECT id_usuario FROM usuarios WHERE id_usuario IN (%s)",
+                    List.of(3, 5, 11), rs -> leidos.add(rs.getInt("id_usuario")));
+
+            leidos.sort(null);
+            assertEquals(List.of(3, 5, 11), leidos);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.function.comun;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del ejecutor de consultas.
+ */
+public class EjecutorBDTest {
+
+    @Test
+    public void testEjecutaEnParaleloHastaElLimite() {
+        EjecutorBD ejecutor = new EjecutorBD(3);
+        AtomicInteger activas = new AtomicInteger();
+        AtomicInteger maximo = new AtomicInteger();
+        // Solo se abre con tres tareas esperando a la vez: si el ejecutor no
+        // las corriera en paralelo, vence la espera y la tarea falla
+        CyclicBarrier barrera = new CyclicBarrier(3);
+
+        List<CompletableFuture<Integer>> futuros = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            int n = i;
+            futuros.add(ejecutor.ejecutar(() -> {
+                maximo.accumulateAndGet(activas.incrementAndGet(), Math::max);
+                try {
+                    barrera.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+                    throw new IllegalStateException("Las tareas no se ejecutaron en paralelo", e);
+                } finally {
+                    activas.decrementAndGet();
+                }
+                return n;
+            }));
+        }
+        CompletableFuture.allOf(futuros.toArray(new CompletableFuture[0])).join();
+
+        // Dos tandas de tres, nunca más de tres a la vez
+        assertEquals(3, maximo.get());
+        assertEquals(5, futuros.get(5).join());
+    }
+
+    @Test
+    public void testPropagaLaSQLExceptionSinEnvolver() {
+        EjecutorBD ejecutor = new EjecutorBD(1);
+
+        CompletableFuture<Object> futuro = ejecutor.ejecutar(() -> {
+            throw new SQLException("ORA-00942: table or view does not exist");
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, futuro::get);
+        assertTrue(e.getCause() instanceof SQLException);
+        assertEquals("ORA-00942: table or view does not exist", e.getCause().getMessage());
+    }
+}
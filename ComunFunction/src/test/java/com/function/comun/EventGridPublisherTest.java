@@ -0,0 +1,110 @@
+package com.function.comun;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del publicador contra un servidor HTTP local que simula Event Grid.
+ */
+public class EventGridPublisherTest {
+
+    private HttpServer servidor;
+    private final AtomicInteger solicitudes = new AtomicInteger();
+    private final List<String> cuerpos = new CopyOnWriteArrayList<>();
+    private final List<String> claves = new CopyOnWriteArrayList<>();
+    private volatile int statusRespuesta = 200;
+
+    @BeforeEach
+    public void iniciarServidor() throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        servidor.createContext("/api/events", exchange -> {
+            solicitudes.incrementAndGet();
+            claves.add(exchange.getRequestHeaders().getFirst("aeg-sas-key"));
+            cuerpos.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(statusRespuesta, -1);
+            exchange.close();
+        });
+        servidor.start();
+    }
+
+    @AfterEach
+    public void detenerServidor() {
+        servidor.stop(0);
+    }
+
+    private EventGridPublisher publicador() {
+        URI endpoint = URI.create("http://127.0.0.1:" + servidor.getAddress().getPort() + "/api/events");
+        return new EventGridPublisher(endpoint, "clave-prueba", Duration.ofSeconds(2), Duration.ofSeconds(2), 1);
+    }
+
+    @Test
+    public void testEnviaArregloDeEventosConClave() {
+        EventGridPublisher publisher = publicador();
+
+        int status = publisher.enviar(List.of(
+                EventoGrid.nuevo("UsuarioCreado", "usuario/creado", Map.of("idUsuario", 7)),
+                EventoGrid.nuevo("RolCreado", "rol/creado", Map.of("rol", "Cliente \"VIP\"")))).join();
+
+        assertEquals(200, status);
+        assertEquals(1, solicitudes.get());
+        assertEquals("clave-prueba", claves.get(0));
+
+        JsonArray eventos = JsonParser.parseString(cuerpos.get(0)).getAsJsonArray();
+        assertEquals(2, eventos.size());
+        assertEquals("UsuarioCreado", eventos.get(0).getAsJsonObject().get("eventType").getAsString());
+        assertEquals(7, eventos.get(0).getAsJsonObject().getAsJsonObject("data").get("idUsuario").getAsInt());
+        assertEquals("Cliente \"VIP\"",
+                eventos.get(1).getAsJsonObject().getAsJsonObject("data").get("rol").getAsString());
+    }
+
+    @Test
+    public void testSinClaveNoPublica() {
+        URI endpoint = URI.create("http://127.0.0.1:" + servidor.getAddress().getPort() + "/api/events");
+        EventGridPublisher publisher = EventGridPublisher.desdeEntorno(Map.of(
+                "EVENT_GRID_TOPIC_ENDPOINT", endpoint.toString()));
+
+        assertFalse(publisher.isHabilitado());
+        CompletionException e = assertThrows(CompletionException.class, () -> publisher.enviar(List.of(
+                EventoGrid.nuevo("UsuarioCreado", "usuario/creado", Map.of("idUsuario", 7)))).join());
+        assertTrue(e.getCause().getMessage().contains("EVENT_GRID_TOPIC_KEY"));
+        assertEquals(0, solicitudes.get());
+    }
+
+    @Test
+    public void testReutilizaElClienteEntreEnvios() {
+        EventGridPublisher publisher = publicador();
+
+        for (int i = 0; i < 5; i++) {
+            publisher.enviar(List.of(EventoGrid.nuevo("RolConsultado", "rol/consultado", Map.of("id", i)))).join();
+        }
+
+        assertEquals(5, solicitudes.get());
+    }
+
+    @Test
+    public void testRespuestaDeErrorFallaElEnvio() {
+        statusRespuesta = 401;
+        EventGridPublisher publisher = publicador();
+
+        CompletionException error = assertThrows(CompletionException.class, () -> publisher
+                .enviar(List.of(EventoGrid.nuevo("RolEliminado", "rol/eliminado", Map.of("id", 1)))).join());
+        assertTrue(error.getCause().getMessage().contains("401"));
+    }
+}
@@ -0,0 +1,147 @@
+package com.function.comun;
+
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del envío por lotes contra un servidor local que cuenta las
+ * solicitudes recibidas.
+ */
+public class LoteEventGridTest {
+
+    private HttpServer servidor;
+    private final AtomicInteger solicitudes = new AtomicInteger();
+    private final AtomicInteger eventosRecibidos = new AtomicInteger();
+    private volatile CountDownLatch bloqueo = new CountDownLatch(0);
+
+    @BeforeEach
+    public void iniciarServidor() throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        servidor.setExecutor(Executors.newCachedThreadPool());
+        servidor.createContext("/api/events", exchange -> {
+            String cuerpo = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            try {
+                bloqueo.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            solicitudes.incrementAndGet();
+            eventosRecibidos.addAndGet(JsonParser.parseString(cuerpo).getAsJsonArray().size());
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        servidor.start();
+    }
+
+    @AfterEach
+    public void detenerServidor() {
+        bloqueo.countDown();
+        servidor.stop(0);
+    }
+
+    private EventGridPublisher publicador() {
+        URI endpoint = URI.create("http://127.0.0.1:" + servidor.getAddress().getPort() + "/api/events");
+        return new EventGridPublisher(endpoint, "clave", Duration.ofSeconds(2), Duration.ofSeconds(5), 2);
+    }
+
+    private static EventoGrid evento(int i) {
+        return EventoGrid.nuevo("UsuarioCreado", "usuario/creado", Map.of("idUsuario", i));
+    }
+
+    @Test
+    public void testAgrupaPorCantidadDeEventos() {
+        LoteEventGrid lote = new LoteEventGrid(publicador(), 100, 1_000_000, Duration.ofSeconds(2),
+                1_000, LoteEventGrid.Politica.BLOQUEAR, Duration.ofSeconds(1), 4);
+
+        List<CompletableFuture<Void>> resultados = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            resultados.add(lote.encolar(evento(i)));
+        }
+        CompletableFuture.allOf(resultados.toArray(new CompletableFuture[0])).join();
+
+        assertEquals(1_000, eventosRecibidos.get());
+        assertEquals(10, solicitudes.get());
+        assertEquals(10, lote.metricas().lotesEnviados());
+    }
+
+    @Test
+    public void testAgrupaPorTamanoEnBytes() {
+        int bytesEvento = new com.google.gson.Gson().toJson(evento(1)).length();
+        LoteEventGrid lote = new LoteEventGrid(publicador(), 1_000, bytesEvento * 5, Duration.ofSeconds(2),
+                100, LoteEventGrid.Politica.BLOQUEAR, Duration.ofSeconds(1), 4);
+
+        List<CompletableFuture<Void>> resultados = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            resultados.add(lote.encolar(evento(i)));
+        }
+        CompletableFuture.allOf(resultados.toArray(new CompletableFuture[0])).join();
+
+        assertEquals(20, eventosRecibidos.get());
+        assertTrue(solicitudes.get() >= 5, "Se esperaban lotes de a lo más 4 eventos");
+    }
+
+    @Test
+    public void testEnviaLoteIncompletoAlVencerElTiempo() {
+        LoteEventGrid lote = new LoteEventGrid(publicador(), 100, 1_000_000, Duration.ofMillis(50),
+                100, LoteEventGrid.Politica.BLOQUEAR, Duration.ofSeconds(1), 4);
+
+        lote.encolar(evento(1));
+        lote.encolar(evento(2)).join();
+
+        assertEquals(1, solicitudes.get());
+        assertEquals(2, eventosRecibidos.get());
+    }
+
+    @Test
+    public void testDescartaNuevosConColaLlena() {
+        bloqueo = new CountDownLatch(1);
+        LoteEventGrid lote = new LoteEventGrid(publicador(), 1, 1_000_000, Duration.ZERO,
+                2, LoteEventGrid.Politica.DESCARTAR_NUEVO, Duration.ZERO, 1);
+
+        List<CompletableFuture<Void>> resultados = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            resultados.add(lote.encolar(evento(i)));
+        }
+        long descartados = resultados.stream().filter(CompletableFuture::isCompletedExceptionally).count();
+
+        bloqueo.countDown();
+        assertTrue(descartados > 0);
+        assertEquals(descartados, lote.metricas().descartados());
+    }
+
+    @Test
+    public void testRechazaEventoMayorQueElLote() {
+        int bytesEvento = new com.google.gson.Gson().toJson(evento(1)).length();
+        LoteEventGrid lote = new LoteEventGrid(publicador(), 100, bytesEvento, Duration.ofMillis(50),
+                100, LoteEventGrid.Politica.BLOQUEAR, Duration.ofSeconds(1), 4);
+
+        CompletableFuture<Void> resultado = lote.encolar(evento(1));
+
+        CompletionException e = assertThrows(CompletionException.class, resultado::join);
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+        assertTrue(e.getCause().getMessage().contains(bytesEvento + " bytes"), e.getCause().getMessage());
+        assertEquals(1, lote.metricas().descartados());
+        assertEquals(0, lote.metricas().encolados());
+        assertEquals(0, solicitudes.get());
+    }
+}
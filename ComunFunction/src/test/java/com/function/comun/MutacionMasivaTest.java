@@ -0,0 +1,157 @@
+package com.function.comun;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de las mutaciones masivas con H2 (modo Oracle).
+ */
+public class MutacionMasivaTest {
+
+    private JdbcDataSource dataSource;
+
+    @BeforeEach
+    public void preparar() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:mutacion_masiva;MODE=Oracle;DB_CLOSE_DELAY=-1");
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS usuarios");
+            st.execute("DROP TABLE IF EXISTS outbox_eventos");
+            st.execute("CREATE TABLE usuarios (id_usuario NUMBER PRIMARY KEY, nombre VARCHAR2(100) NOT NULL,"
+                    + " email VARCHAR2(100) UNIQUE NOT NULL)");
+            st.execute("CREATE TABLE outbox_eventos (id_evento VARCHAR2(36) PRIMARY KEY,"
+                    + " tipo_evento VARCHAR2(100) NOT NULL, asunto VARCHAR2(200) NOT NULL,"
+                    + " fecha_evento VARCHAR2(40) NOT NULL, data CLOB, version_data VARCHAR2(10) NOT NULL)");
+        }
+    }
+
+    private MutacionMasiva.Resultado insertar(Connection conn, List<String> emails) throws SQLException {
+        return MutacionMasiva.ejecutar(conn, "INSERT INTO usuarios (id_usuario, nombre, email) VALUES (?, ?, ?)",
+                emails.size(), (ps, i) -> {
+                    ps.setInt(1, i + 1);
+                    ps.setString(2, "usuario " + (i + 1));
+                    ps.setString(3, emails.get(i));
+                });
+    }
+
+    private int contar(Connection conn) throws SQLException {
+        return contar(conn, "SELECT COUNT(*) FROM usuarios");
+    }
+
+    private int contar(Connection conn, String sql) throws SQLException {
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void testInsertaEnTramosYConfirma() throws SQLException {
+        List<String> emails = new ArrayList<>();
+        for (int i = 1; i <= 1200; i++) {
+            emails.add("u" + i + "@x.cl");
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            MutacionMasiva.Resultado resultado = insertar(conn, emails);
+
+            for (int i = 0; i < emails.size(); i++) {
+                assertTrue(resultado.exitoso(i));
+                assertEquals(1, resultado.filas()[i]);
+            }
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            assertEquals(1200, contar(conn));
+        }
+    }
+
+    @Test
+    public void testErrorPorElementoConfirmaElResto() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            MutacionMasiva.Resultado resultado = insertar(conn, List.of("a@x.cl", "b@x.cl", "a@x.cl", "c@x.cl"));
+
+            assertTrue(resultado.exitoso(0));
+            assertTrue(resultado.exitoso(1));
+            assertFalse(resultado.exitoso(2));
+            assertNotNull(resultado.errores()[2]);
+            assertEquals(0, resultado.filas()[2]);
+            assertTrue(resultado.exitoso(3));
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            assertEquals(3, contar(conn));
+        }
+    }
+
+    @Test
+    public void testEliminacionInformaFilasAfectadas() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            insertar(conn, List.of("a@x.cl", "b@x.cl"));
+            List<Integer> ids = List.of(2, 99, 1);
+            MutacionMasiva.Resultado resultado = MutacionMasiva.ejecutar(conn,
+                    "DELETE FROM usuarios WHERE id_usuario = ?", ids.size(), (ps, i) -> ps.setInt(1, ids.get(i)));
+
+            assertArrayEquals(new int[] { 1, 0, 1 }, resultado.filas());
+            assertEquals(0, contar(conn));
+        }
+    }
+
+    @Test
+    public void testRechazaMasElementosQueElMaximo() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            assertThrows(IllegalArgumentException.class, () -> MutacionMasiva.ejecutar(conn,
+                    "DELETE FROM usuarios WHERE id_usuario = ?", MutacionMasiva.MAXIMO_ELEMENTOS + 1,
+                    (ps, i) -> ps.setInt(1, i)));
+        }
+    }
+
+    @Test
+    public void testRegistraEventosDeLosElementosExitososEnLaMismaTransaccion() throws SQLException {
+        List<String> emails = List.of("a@x.cl", "a@x.cl", "c@x.cl");
+        try (Connection conn = dataSource.getConnection()) {
+            MutacionMasiva.ejecutar(conn, List.of("INSERT INTO usuarios (id_usuario, nombre, email) VALUES (?, ?, ?)"),
+                    emails.size(), (ps, i) -> {
+                        ps.setInt(1, i + 1);
+                        ps.setString(2, "usuario " + (i + 1));
+                        ps.setString(3, emails.get(i));
+                    }, r -> {
+                        List<EventoGrid> eventos = new ArrayList<>();
+                        for (int i = 0; i < emails.size(); i++) {
+                            if (r.exitoso(i)) {
+                                eventos.add(EventoGrid.nuevo("UsuarioCreado", "usuario/creado",
+                                        Map.of("idUsuario", i + 1)));
+                            }
+                        }
+                        return eventos;
+                    });
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            assertEquals(2, contar(conn));
+            assertEquals(2, contar(conn, "SELECT COUNT(*) FROM outbox_eventos WHERE tipo_evento = 'UsuarioCreado'"));
+            assertEquals(0, contar(conn, "SELECT COUNT(*) FROM outbox_eventos WHERE data LIKE '%\"idUsuario\":2%'"));
+        }
+    }
+
+    @Test
+    public void testSiFallaElOutboxNoConfirmaLasFilas() throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE outbox_eventos");
+            assertThrows(SQLException.class, () -> MutacionMasiva.ejecutar(conn,
+                    List.of("INSERT INTO usuarios (id_usuario, nombre, email) VALUES (?, ?, ?)"), 1, (ps, i) -> {
+                        ps.setInt(1, 1);
+                        ps.setString(2, "usuario");
+                        ps.setString(3, "a@x.cl");
+                    }, r -> List.of(EventoGrid.nuevo("UsuarioCreado", "usuario/creado",
+                            Map.of("idUsuario", 1)))));
+            assertEquals(0, contar(conn));
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.function.comun;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del outbox con H2 (modo Oracle) y un servidor local que simula Event
+ * Grid.
+ */
+public class OutboxRelayTest {
+
+    private HttpServer servidor;
+    private final List<String> cuerpos = new CopyOnWriteArrayList<>();
+    private volatile int statusRespuesta = 200;
+    // Event Grid responde 400 a los POST que contienen este texto
+    private volatile String rechazar;
+    // Se ejecuta en el servidor al recibir cada POST, antes de responder
+    private volatile EnServidor alRecibir;
+    private volatile Throwable errorEnServidor;
+    private JdbcDataSource dataSource;
+
+    @FunctionalInterface
+    private interface EnServidor {
+        void ejecutar() throws Exception;
+    }
+
+    @BeforeEach
+    public void preparar() throws IOException, SQLException {
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        servidor.createContext("/api/events", exchange -> {
+            String cuerpo = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            cuerpos.add(cuerpo);
+            EnServidor accion = alRecibir;
+            if (accion != null) {
+                alRecibir = null;
+                try {
+                    accion.ejecutar();
+                } catch (Exception | AssertionError e) {
+                    errorEnServidor = e;
+                }
+            }
+            exchange.sendResponseHeaders(rechazar != null && cuerpo.contains(rechazar) ? 400 : statusRespuesta, -1);
+            exchange.close();
+        });
+        servidor.start();
+
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:outbox;MODE=Oracle;DB_CLOSE_DELAY=-1");
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS outbox_eventos");
+            st.execute("CREATE TABLE outbox_eventos ("
+                    + "id_outbox NUMBER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                    + "id_evento VARCHAR2(36) NOT NULL UNIQUE,"
+                    + "tipo_evento VARCHAR2(100) NOT NULL,"
+                    + "asunto VARCHAR2(200) NOT NULL,"
+                    + "fecha_evento VARCHAR2(40) NOT NULL,"
+                    + "data CLOB,"
+                    + "version_data VARCHAR2(10) NOT NULL,"
+                    + "enviado NUMBER(1) DEFAULT 0 NOT NULL,"
+                    + "intentos NUMBER DEFAULT 0 NOT NULL,"
+                    + "creado_en TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+                    + "enviado_en TIMESTAMP,"
+                    + "reservado_hasta TIMESTAMP)");
+        }
+    }
+
+    @AfterEach
+    public void detenerServidor() {
+        servidor.stop(0);
+    }
+
+    private OutboxRelay relay(int tamanoLote) {
+        return relay(tamanoLote, 10);
+    }
+
+    private OutboxRelay relay(int tamanoLote, int maxIntentos) {
+        URI endpoint = URI.create("http://127.0.0.1:" + servidor.getAddress().getPort() + "/api/events");
+        EventGridPublisher publisher = new EventGridPublisher(endpoint, "clave", Duration.ofSeconds(2),
+                Duration.ofSeconds(2), 1);
+        return new OutboxRelay(dataSource, publisher, tamanoLote, 20, maxIntentos, Duration.ofSeconds(60),
+                Duration.ofSeconds(30));
+    }
+
+    private void registrar(int cantidad) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            for (int i = 1; i <= cantidad; i++) {
+                Outbox.registrar(conn, EventoGrid.nuevo("UsuarioCreado", "usuario/creado", Map.of("idUsuario", i)));
+            }
+            conn.commit();
+        }
+    }
+
+    private int contar(String condicion) throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM outbox_eventos WHERE " + condicion)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void testDrenaEnLotesYMarcaEnviados() throws SQLException {
+        registrar(250);
+
+        int enviados = relay(100).drenar();
+
+        assertEquals(250, enviados);
+        assertEquals(3, cuerpos.size());
+        assertEquals(0, contar("enviado = 0"));
+
+        JsonArray primerLote = JsonParser.parseString(cuerpos.get(0)).getAsJsonArray();
+        assertEquals(100, primerLote.size());
+        assertEquals("1", primerLote.get(0).getAsJsonObject().getAsJsonObject("data").get("idUsuario").toString());
+    }
+
+    @Test
+    public void testSinCommitNoHayEvento() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            Outbox.registrar(conn, EventoGrid.nuevo("RolCreado", "rol/creado", Map.of("rol", "Cliente")));
+            conn.rollback();
+        }
+
+        assertEquals(0, relay(100).drenar());
+        assertTrue(cuerpos.isEmpty());
+    }
+
+    @Test
+    public void testEnvioFallidoDejaPendientes() throws SQLException {
+        registrar(5);
+        statusRespuesta = 500;
+
+        assertEquals(0, relay(100).drenar());
+        // Una caída de Event Grid no cuenta intentos y libera la reserva
+        assertEquals(5, contar("enviado = 0 AND intentos = 0 AND reservado_hasta IS NULL"));
+        assertEquals(1, cuerpos.size());
+
+        statusRespuesta = 200;
+        assertEquals(5, relay(100).drenar());
+        assertEquals(0, contar("enviado = 0"));
+    }
+
+    @Test
+    public void testEventoRechazadoNoFrenaAlLote() throws SQLException {
+        registrar(10);
+        rechazar = "\"idUsuario\":7}";
+
+        assertEquals(9, relay(100).drenar());
+        assertEquals(9, contar("enviado = 1"));
+        assertEquals(1, contar("enviado = 0 AND intentos = 1"));
+    }
+
+    @Test
+    public void testCaidaProlongadaNoDescartaEventos() throws SQLException {
+        registrar(5);
+        statusRespuesta = 503;
+
+        OutboxRelay relay = relay(100, 2);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, relay.drenar());
+        }
+        assertEquals(5, contar("enviado = 0 AND intentos = 0"));
+
+        statusRespuesta = 200;
+        assertEquals(5, relay.drenar());
+    }
+
+    @Test
+    public void testNoRetieneBloqueosDuranteElEnvio() throws Throwable {
+        registrar(3);
+        OutboxRelay relay = relay(100);
+        alRecibir = () -> {
+            // Las filas están reservadas: otro drenado no las vuelve a enviar
+            assertEquals(0, relay.drenar());
+            assertEquals(3, contar("reservado_hasta IS NOT NULL"));
+            // Y no están bloqueadas: otra transacción puede actualizarlas sin esperar
+            try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+                st.execute("SET LOCK_TIMEOUT 100");
+                assertEquals(3, st.executeUpdate("UPDATE outbox_eventos SET asunto = asunto"));
+            }
+        };
+
+        assertEquals(3, relay.drenar());
+        if (errorEnServidor != null) {
+            throw errorEnServidor;
+        }
+        assertEquals(1, cuerpos.size());
+        assertEquals(3, contar("enviado = 1 AND reservado_hasta IS NULL"));
+    }
+
+    @Test
+    public void testDescartaTrasMaxIntentos() throws SQLException {
+        registrar(5);
+        statusRespuesta = 400;
+
+        OutboxRelay relay = relay(100, 2);
+        assertEquals(0, relay.drenar());
+        assertEquals(0, relay.drenar());
+        assertEquals(5, contar("enviado = 2 AND intentos = 2"));
+
+        statusRespuesta = 200;
+        cuerpos.clear();
+        assertEquals(0, relay.drenar());
+        assertTrue(cuerpos.isEmpty());
+    }
+}
@@ -0,0 +1,55 @@
+package com.function.comun;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de los cursores y de la conexión GraphQL.
+ */
+public class PaginacionTest {
+
+    private static List<Map<String, Object>> filas(int desde, int cantidad) {
+        List<Map<String, Object>> filas = new ArrayList<>();
+        for (int i = desde; i < desde + cantidad; i++) {
+            filas.add(Map.of("id", i));
+        }
+        return filas;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testConexionConPaginaSiguiente() {
+        Map<String, Object> conexion = Paginacion.conexion(filas(11, 11), 10, "usuario");
+
+        List<Map<String, Object>> nodos = (List<Map<String, Object>>) conexion.get("nodes");
+        Map<String, Object> pageInfo = (Map<String, Object>) conexion.get("pageInfo");
+        assertEquals(10, nodos.size());
+        assertEquals(10, ((List<?>) conexion.get("edges")).size());
+        assertEquals(true, pageInfo.get("hasNextPage"));
+        assertEquals(20, Paginacion.despuesDe((String) pageInfo.get("endCursor"), "usuario"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUltimaPagina() {
+        Map<String, Object> conexion = Paginacion.conexion(filas(1, 3), 10, "rol");
+
+        Map<String, Object> pageInfo = (Map<String, Object>) conexion.get("pageInfo");
+        assertEquals(false, pageInfo.get("hasNextPage"));
+        assertEquals(3, Paginacion.despuesDe((String) pageInfo.get("endCursor"), "rol"));
+    }
+
+    @Test
+    public void testCursorInvalido() {
+        assertEquals(0, Paginacion.despuesDe(null, "usuario"));
+        assertThrows(IllegalArgumentException.class, () -> Paginacion.despuesDe("no-es-base64!", "usuario"));
+        assertThrows(IllegalArgumentException.class,
+                () -> Paginacion.despuesDe(Paginacion.cursor("rol", 5), "usuario"));
+        assertThrows(IllegalArgumentException.class, () -> Paginacion.tamano(-1, 50, 500));
+        assertEquals(500, Paginacion.tamano(10_000, 50, 500));
+    }
+}
@@ -0,0 +1,190 @@
+package com.function.comun.graphql;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dataloader.DataLoaderRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la caché de respuestas: aciertos, invalidación por mutación y
+ * por evento, límites y ETag.
+ */
+public class CacheRespuestasTest {
+
+    private static final Map<String, Set<String>> TABLAS = Map.of(
+            "Query.usuarios", Set.of("usuarios"),
+            "Query.roles", Set.of("roles"),
+            "Mutation.crearUsuario", Set.of("usuarios"),
+            "Mutation.crearRol", Set.of("roles"));
+
+    private final AtomicInteger lecturas = new AtomicInteger();
+    private final String[] nombres = { "ana" };
+
+    private GraphQL graphQL(CacheRespuestas cache) {
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+                .type("Query", b -> b
+                        .dataFetcher("usuarios", env -> {
+                            lecturas.incrementAndGet();
+                            return List.of(nombres[0] + env.getArgumentOrDefault("sufijo", ""));
+                        })
+                        .dataFetcher("roles", env -> {
+                            lecturas.incrementAndGet();
+                            return List.of("Admin");
+                        })
+                        .dataFetcher("reloj", env -> String.valueOf(System.nanoTime())))
+                .type("Mutation", b -> b
+                        .dataFetcher("crearUsuario", env -> {
+                            nombres[0] = env.getArgument("nombre");
+                            return nombres[0];
+                        })
+                        .dataFetcher("crearRol", env -> "rol"))
+                .build();
+        return GraphQL.newGraphQL(new SchemaGenerator().makeExecutableSchema(
+                new SchemaParser().parse("type Query { usuarios(sufijo: String, n: Int): [String], roles: [String],"
+                        + " reloj: String }"
+                        + " type Mutation { crearUsuario(nombre: String): String, crearRol: String }"),
+                wiring)).instrumentation(cache).build();
+    }
+
+    /** Mismo flujo que los handlers: buscar, o ejecutar, serializar y guardar. */
+    private CacheRespuestas.Respuesta ejecutar(CacheRespuestas cache, GraphQL graphQL, String cuerpo)
+            throws IOException {
+        CodecGraphQL.Peticion peticion = CodecGraphQL.leer(cuerpo);
+        CacheRespuestas.Consulta consulta = cache.consulta(peticion);
+        CacheRespuestas.Respuesta respuesta = cache.obtener(consulta);
+        if (respuesta != null) {
+            return respuesta;
+        }
+        ExecutionInput entrada = LoteGraphQL.entrada(peticion, new DataLoaderRegistry());
+        ExecutionResult resultado = graphQL.execute(entrada);
+        return cache.guardar(consulta, entrada, resultado, CodecGraphQL.escribir(resultado));
+    }
+
+    @BeforeEach
+    public void reiniciar() {
+        lecturas.set(0);
+        nombres[0] = "ana";
+    }
+
+    @Test
+    public void testAciertoConVariablesEnDistintoOrden() throws IOException {
+        CacheRespuestas cache = new CacheRespuestas(10, 1_000_000, 60, TABLAS);
+        GraphQL graphQL = graphQL(cache);
+        String query = "\"query q($s: String, $n: Int) { usuarios(sufijo: $s, n: $n) }\"";
+
+        CacheRespuestas.Respuesta primera = ejecutar(cache, graphQL,
+                "{\"query\":" + query + ",\"variables\":{\"s\":\"1\",\"n\":2}}");
+        CacheRespuestas.Respuesta segunda = ejecutar(cache, graphQL,
+                "{\"query\":" + query + ",\"variables\":{\"n\":2,\"s\":\"1\"}}");
+        ejecutar(cache, graphQL, "{\"query\":" + query + ",\"variables\":{\"n\":2,\"s\":\"2\"}}");
+
+        assertEquals(2, lecturas.get());
+        assertSame(primera, segunda);
+        assertEquals("{\"data\":{\"usuarios\":[\"ana1\"]}}", new String(primera.cuerpo()));
+        assertEquals(1, cache.metricas().aciertos());
+        assertEquals(2, cache.metricas().respuestas());
+    }
+
+    @Test
+    public void testMutacionInvalidaSoloSusTablas() throws IOException {
+        CacheRespuestas cache = new CacheRespuestas(10, 1_000_000, 60, TABLAS);
+        GraphQL graphQL = graphQL(cache);
+        ejecutar(cache, graphQL, "{\"query\":\"{ usuarios }\"}");
+        ejecutar(cache, graphQL, "{\"query\":\"{ roles }\"}");
+
+        // Las mutaciones no se cachean: ambas se ejecutan
+        assertNull(ejecutar(cache, graphQL, "{\"query\":\"mutation { crearUsuario(nombre: \\\"eva\\\") }\"}"));
+        assertNull(ejecutar(cache, graphQL, "{\"query\":\"mutation { crearUsuario(nombre: \\\"eva\\\") }\"}"));
+
+        CacheRespuestas.Respuesta usuarios = ejecutar(cache, graphQL, "{\"query\":\"{ usuarios }\"}");
+        ejecutar(cache, graphQL, "{\"query\":\"{ roles }\"}");
+
+        assertEquals("{\"data\":{\"usuarios\":[\"eva\"]}}", new String(usuarios.cuerpo()));
+        assertEquals(3, lecturas.get());
+        assertEquals(1, cache.metricas().invalidadas());
+    }
+
+    @Test
+    public void testEventoInvalidaTablasDelEvento() throws IOException {
+        CacheRespuestas cache = new CacheRespuestas(10, 1_000_000, 60, TABLAS);
+        GraphQL graphQL = graphQL(cache);
+        ejecutar(cache, graphQL, "{\"query\":\"{ usuarios }\"}");
+        ejecutar(cache, graphQL, "{\"query\":\"{ roles }\"}");
+
+        CacheRespuestas.invalidarPorEvento("RolCreado");
+        CacheRespuestas.invalidarPorEvento("UsuarioConsultado");
+        ejecutar(cache, graphQL, "{\"query\":\"{ usuarios }\"}");
+        ejecutar(cache, graphQL, "{\"query\":\"{ roles }\"}");
+        assertEquals(3, lecturas.get());
+
+        // Un tipo desconocido invalida todo
+        CacheRespuestas.invalidarPorEvento("OtroEvento");
+        ejecutar(cache, graphQL, "{\"query\":\"{ usuarios }\"}");
+        ejecutar(cache, graphQL, "{\"query\":\"{ roles }\"}");
+        assertEquals(5, lecturas.get());
+    }
+
+    @Test
+    public void testNoCacheaResolversSinTablasNiTracing() throws IOException {
+        CacheRespuestas cache = new CacheRespuestas(10, 1_000_000, 60, TABLAS);
+        GraphQL graphQL = graphQL(cache);
+
+        assertNull(ejecutar(cache, graphQL, "{\"query\":\"{ usuarios reloj }\"}"));
+        assertNull(ejecutar(cache, graphQL,
+                "{\"query\":\"{ usuarios }\",\"extensions\":{\"tracing\":true}}"));
+        assertNull(ejecutar(cache, graphQL, "{\"query\":\"{ noExiste }\"}"));
+        assertEquals(0, cache.metricas().respuestas());
+    }
+
+    @Test
+    public void testRespetaLimitesDeEntradasYBytes() throws IOException {
+        CacheRespuestas porEntradas = new CacheRespuestas(2, 1_000_000, 60, TABLAS);
+        GraphQL graphQL = graphQL(porEntradas);
+        for (int i = 0; i < 5; i++) {
+            ejecutar(porEntradas, graphQL, "{\"query\":\"{ usuarios(sufijo: \\\"" + i + "\\\") }\"}");
+        }
+        assertEquals(2, porEntradas.metricas().respuestas());
+
+        // Cada respuesta ocupa 30 bytes: caben dos
+        CacheRespuestas porBytes = new CacheRespuestas(100, 70, 60, TABLAS);
+        graphQL = graphQL(porBytes);
+        for (int i = 0; i < 5; i++) {
+            ejecutar(porBytes, graphQL, "{\"query\":\"{ usuarios(sufijo: \\\"" + i + "\\\") }\"}");
+        }
+        assertEquals(2, porBytes.metricas().respuestas());
+        assertEquals(60, porBytes.metricas().bytes());
+    }
+
+    @Test
+    public void testEtagYIfNoneMatch() throws IOException {
+        CacheRespuestas cache = new CacheRespuestas(0, 1_000_000, 60, TABLAS);
+        GraphQL graphQL = graphQL(cache);
+
+        CacheRespuestas.Respuesta primera = ejecutar(cache, graphQL, "{\"query\":\"{ roles }\"}");
+        CacheRespuestas.Respuesta segunda = ejecutar(cache, graphQL, "{\"query\":\"{ roles }\"}");
+
+        // Con la caché desactivada se ejecuta de nuevo, pero el ETag es el mismo
+        assertEquals(2, lecturas.get());
+        assertEquals(primera.etag(), segunda.etag());
+        assertTrue(primera.etag().matches("\"[0-9a-f]{64}\""));
+        assertTrue(primera.coincide(primera.etag()));
+        assertTrue(primera.coincide("\"otro\", W/" + primera.etag()));
+        assertTrue(primera.coincide("*"));
+        assertFalse(primera.coincide("\"otro\""));
+        assertFalse(primera.coincide(null));
+        assertEquals("x", CacheRespuestas.encabezado(Map.of("If-None-Match", "x"), "if-none-match"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.function.comun.graphql;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import graphql.ExecutionResultImpl;
+import graphql.ExecutionResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compara el manejo JSON anterior de las funciones GraphQL (ObjectMapper
+ * nuevo por petición, cuerpo a Map y toSpecification() a String) con
+ * {@link CodecGraphQL}, sobre una petición típica de vetefaas y una página de
+ * 50 usuarios con roles.
+ *
+ * Ejecutar con: mvn -f ComunFunction -Pbenchmark test-compile exec:exec
+ * (agregar -prof gc en los argumentos para ver bytes asignados por operación).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecGraphQLBenchmark {
+
+    private String cuerpo;
+    private ExecutionResult resultado;
+
+    @Setup
+    public void preparar() {
+        cuerpo = "{\"query\":\"query($after: String) { usuarios(first: 50, after: $after) { nodes { id nombre "
+                + "email roles { id rol } } pageInfo { hasNextPage endCursor } } }\","
+                + "\"variables\":{\"after\":\"dXN1YXJpbzoxMDA\"},"
+                + "\"extensions\":{\"persistedQuery\":{\"version\":1,\"sha256Hash\":"
+                + "\"4f1c3ad6f1e8b0f2a3c4d5e6f708192a3b4c5d6e7f8091a2b3c4d5e6f708192a\"}}}";
+
+        List<Map<String, Object>> nodos = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            Map<String, Object> usuario = new LinkedHashMap<>();
+            usuario.put("id", String.valueOf(100 + i));
+            usuario.put("nombre", "Usuario " + i);
+            usuario.put("email", "usuario" + i + "@vetefaas.cl");
+            usuario.put("roles", List.of(Map.of("id", "3", "rol", "Cliente")));
+            nodos.add(usuario);
+        }
+        Map<String, Object> pageInfo = new LinkedHashMap<>();
+        pageInfo.put("hasNextPage", true);
+        pageInfo.put("endCursor", "dXN1YXJpbzoxNTA");
+        Map<String, Object> conexion = new LinkedHashMap<>();
+        conexion.put("nodes", nodos);
+        conexion.put("pageInfo", pageInfo);
+        resultado = ExecutionResultImpl.newExecutionResult().data(Map.of("usuarios", conexion)).build();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public byte[] anterior() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, Object> payload = mapper.readValue(cuerpo, Map.class);
+        String query = (String) payload.get("query");
+        Map<String, Object> variables = (Map<String, Object>) payload.getOrDefault("variables", Map.of());
+        if (query == null || variables == null) {
+            throw new IllegalStateException();
+        }
+        // El worker de Functions convierte el String a bytes al enviar la respuesta
+        return mapper.writeValueAsString(resultado.toSpecification()).getBytes(java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] codec() throws IOException {
+        CodecGraphQL.Peticion peticion = CodecGraphQL.leer(cuerpo);
+        if (peticion.query() == null) {
+            throw new IllegalStateException();
+        }
+        return CodecGraphQL.escribir(resultado);
+    }
+}
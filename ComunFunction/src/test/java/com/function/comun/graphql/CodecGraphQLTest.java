@@ -0,0 +1,89 @@
+package com.function.comun.graphql;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del codec JSON de las funciones GraphQL.
+ */
+public class CodecGraphQLTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testLeePeticionCompleta() throws IOException {
+        CodecGraphQL.Peticion peticion = CodecGraphQL.leer("{\"otro\":{\"a\":[1,2]},\"query\":\"query($id: ID!) "
+                + "{ usuario(id: $id) { nombre } }\",\"variables\":{\"id\":\"7\"},\"operationName\":null,"
+                + "\"extensions\":{\"persistedQuery\":{\"version\":1}}}");
+
+        assertEquals("query($id: ID!) { usuario(id: $id) { nombre } }", peticion.query());
+        assertNull(peticion.operationName());
+        assertEquals(Map.of("id", "7"), peticion.variables());
+        assertTrue(peticion.extensions().containsKey("persistedQuery"));
+    }
+
+    @Test
+    public void testLeePeticionMinima() throws IOException {
+        CodecGraphQL.Peticion peticion = CodecGraphQL.leer("{\"query\":\"{ roles { nodes { id } } }\"}");
+
+        assertEquals(Map.of(), peticion.variables());
+        assertEquals(Map.of(), peticion.extensions());
+        assertThrows(IOException.class, () -> CodecGraphQL.leer("[]"));
+    }
+
+    @Test
+    public void testRechazaQueryYOperationNameQueNoSonTexto() {
+        IOException e = assertThrows(IOException.class,
+                () -> CodecGraphQL.leer("{\"query\":{\"query\":\"{ a }\"}}"));
+        assertEquals("El campo 'query' debe ser un texto.", e.getMessage());
+        assertThrows(IOException.class, () -> CodecGraphQL.leer("{\"query\":[\"{ a }\"]}"));
+        assertThrows(IOException.class, () -> CodecGraphQL.leer("{\"query\":\"{ a }\",\"operationName\":{}}"));
+        assertThrows(IOException.class, () -> CodecGraphQL.leerLote("[{\"query\":\"{ a }\",\"operationName\":[1]}]"));
+    }
+
+    @Test
+    public void testDetectaYLeeLotes() throws IOException {
+        assertTrue(CodecGraphQL.esLote("  \n[{\"query\":\"{ a }\"}]"));
+        assertFalse(CodecGraphQL.esLote("{\"query\":\"{ a }\"}"));
+
+        List<CodecGraphQL.Peticion> lote = CodecGraphQL.leerLote("[{\"query\":\"{ a }\"},"
+                + "{\"query\":\"query B { b }\",\"operationName\":\"B\",\"variables\":{\"x\":1}}]");
+
+        assertEquals(2, lote.size());
+        assertEquals("{ a }", lote.get(0).query());
+        assertEquals("B", lote.get(1).operationName());
+        assertEquals(Map.of("x", 1), lote.get(1).variables());
+    }
+
+    @Test
+    public void testEscribeIgualQueToSpecification() throws IOException {
+        GraphQL graphQL = GraphQL.newGraphQL(new SchemaGenerator().makeExecutableSchema(
+                new SchemaParser().parse("type Query { saludo(nombre: String): String, falla: String }"),
+                RuntimeWiring.newRuntimeWiring()
+                        .type("Query", b -> b
+                                .dataFetcher("saludo", env -> "hola " + env.getArgument("nombre"))
+                                .dataFetcher("falla", env -> {
+                                    throw new IllegalStateException("sin datos");
+                                }))
+                        .build()))
+                .build();
+
+        for (String query : new String[] { "{ saludo(nombre: \"ñandú\") }", "{ saludo falla }", "{ noExiste }" }) {
+            ExecutionResult resultado = graphQL.execute(query);
+            assertEquals(MAPPER.readTree(MAPPER.writeValueAsString(resultado.toSpecification())),
+                    MAPPER.readTree(CodecGraphQL.escribir(resultado)), query);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.function.comun.graphql;
+
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del cálculo de costo y de los límites.
+ */
+public class CostoConsultaTest {
+
+    private static final String SCHEMA = "type Usuario { id: ID!, nombre: String, roles: [Rol!]! }"
+            + " type Rol { id: ID!, rol: String }"
+            + " type Conexion { nodes: [Usuario!]! }"
+            + " type Query { usuario(id: ID!): Usuario, usuarios(first: Int = 50): Conexion! }";
+
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+    private GraphQL graphQL;
+
+    @BeforeEach
+    public void preparar() {
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+                .type("Query", b -> b
+                        .dataFetcher("usuario", env -> {
+                            ejecuciones.incrementAndGet();
+                            return Map.of("id", 1, "nombre", "Ana", "roles", List.of());
+                        })
+                        .dataFetcher("usuarios", env -> {
+                            ejecuciones.incrementAndGet();
+                            return Map.of("nodes", List.of());
+                        }))
+                .build();
+        graphQL = GraphQL.newGraphQL(new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), wiring))
+                .instrumentation(new CostoConsulta(120, 4, Map.of("Query.usuarios", 2)))
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> costo(ExecutionResult resultado) {
+        return (Map<String, Object>) resultado.getExtensions().get("costo");
+    }
+
+    @Test
+    public void testInformaElCostoEnExtensions() {
+        // usuario: 1 + roles 1 = 2; usuarios(first: 10): 2 + 10 * (nodes 1 + roles 1) = 22
+        ExecutionResult resultado = graphQL.execute(
+                "{ usuario(id: 1) { nombre roles { rol } } usuarios(first: 10) { nodes { id roles { id } } } }");
+
+        assertTrue(resultado.getErrors().isEmpty());
+        assertEquals(24L, costo(resultado).get("solicitado"));
+        assertEquals(4, costo(resultado).get("profundidad"));
+    }
+
+    @Test
+    public void testRechazaAliasAmplificados() {
+        StringBuilder query = new StringBuilder("{");
+        for (int i = 0; i < 121; i++) {
+            query.append(" a").append(i).append(": usuario(id: ").append(i).append(") { id }");
+        }
+        ExecutionResult resultado = graphQL.execute(query.append(" }").toString());
+
+        assertEquals(1, resultado.getErrors().size());
+        assertTrue(resultado.getErrors().get(0).getMessage().contains("121"));
+        assertEquals(Map.of("costo", Map.of("solicitado", 121L, "maximo", 120, "profundidad", 2)),
+                resultado.getErrors().get(0).getExtensions());
+        assertEquals(0, ejecuciones.get());
+    }
+
+    @Test
+    public void testUsaElFirstPorDefectoDelEsquema() {
+        // 2 + 50 * (1 + 1) = 102 con first por defecto; 2 + 100 * 2 = 202 supera el máximo
+        assertTrue(graphQL.execute("{ usuarios { nodes { roles { id } } } }").getErrors().isEmpty());
+        assertFalse(graphQL.execute("{ usuarios(first: 100) { nodes { roles { id } } } }").getErrors().isEmpty());
+    }
+
+    @Test
+    public void testAcotaElFirstAlMaximoDePagina() {
+        // first se acota a 500: 2 + 500 * 1 = 502, no 2 + 2147483647
+        ExecutionResult resultado = graphQL.execute("{ usuarios(first: 2147483647) { nodes { id } } }");
+
+        assertEquals(1, resultado.getErrors().size());
+        assertEquals(502L, costo(resultado).get("solicitado"));
+        assertEquals(0, ejecuciones.get());
+    }
+
+    @Test
+    public void testRechazaAliasConFirstEnormeSinDesbordar() {
+        // Con aritmética int estos 200 alias sumaban 0 y la consulta pasaba
+        StringBuilder query = new StringBuilder("{");
+        for (int i = 0; i < 200; i++) {
+            query.append(" a").append(i).append(": usuarios(first: 2147483647) { nodes { id } }");
+        }
+        ExecutionResult resultado = graphQL.execute(query.append(" }").toString());
+
+        assertEquals(1, resultado.getErrors().size());
+        assertTrue((Long) costo(resultado).get("solicitado") > 120);
+        assertEquals(0, ejecuciones.get());
+    }
+}
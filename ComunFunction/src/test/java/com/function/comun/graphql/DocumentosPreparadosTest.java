@@ -0,0 +1,90 @@
+package com.function.comun.graphql;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la caché de documentos y del protocolo APQ.
+ */
+public class DocumentosPreparadosTest {
+
+    private static final String QUERY = "query { saludo }";
+
+    private DocumentosPreparados documentos;
+    private GraphQL graphQL;
+
+    @BeforeEach
+    public void preparar() {
+        GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(
+                new SchemaParser().parse("type Query { saludo: String }"),
+                RuntimeWiring.newRuntimeWiring()
+                        .type("Query", b -> b.dataFetcher("saludo", env -> "hola"))
+                        .build());
+        documentos = new DocumentosPreparados(2);
+        graphQL = GraphQL.newGraphQL(schema).preparsedDocumentProvider(documentos).build();
+    }
+
+    private ExecutionResult ejecutar(String query, String hash) {
+        ExecutionInput.Builder input = ExecutionInput.newExecutionInput().query(query);
+        if (hash != null) {
+            input.extensions(Map.of("persistedQuery", Map.of("version", 1, "sha256Hash", hash)));
+        }
+        return graphQL.execute(input.build());
+    }
+
+    @Test
+    public void testReutilizaElDocumentoParseado() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Map.of("saludo", "hola"), ejecutar(QUERY, null).getData());
+        }
+
+        assertEquals(4, documentos.metricas().aciertos());
+        assertEquals(1, documentos.metricas().fallos());
+    }
+
+    @Test
+    public void testProtocoloApq() {
+        String hash = DocumentosPreparados.sha256(QUERY);
+
+        // 1. Solo hash, desconocido: el cliente debe reenviar la consulta
+        ExecutionResult desconocido = ejecutar(PersistedQuerySupport.PERSISTED_QUERY_MARKER, hash);
+        assertEquals("PersistedQueryNotFound", desconocido.getErrors().get(0).getMessage());
+
+        // 2. Hash y consulta: se registra
+        assertTrue(ejecutar(QUERY, hash).getErrors().isEmpty());
+
+        // 3. Solo hash: se resuelve desde la caché
+        ExecutionResult conocido = ejecutar(PersistedQuerySupport.PERSISTED_QUERY_MARKER, hash);
+        assertEquals(Map.of("saludo", "hola"), conocido.getData());
+    }
+
+    @Test
+    public void testRechazaHashQueNoCorresponde() {
+        ExecutionResult resultado = ejecutar(QUERY, DocumentosPreparados.sha256("query { otra }"));
+
+        assertEquals("PersistedQueryIdInvalid", resultado.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    public void testNoGuardaDocumentosInvalidosYEsAcotada() {
+        ejecutar("query { noExiste }", null);
+        assertEquals(0, documentos.metricas().documentos());
+
+        ejecutar("query { a: saludo }", null);
+        ejecutar("query { b: saludo }", null);
+        ejecutar("query { c: saludo }", null);
+        assertEquals(2, documentos.metricas().documentos());
+    }
+}
@@ -0,0 +1,218 @@
+package com.function.comun.graphql;
+
+import com.microsoft.azure.functions.HttpMethod;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import com.microsoft.azure.functions.HttpStatusType;
+import graphql.GraphQL;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.dataloader.DataLoaderRegistry;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del pipeline HTTP compartido por las funciones GraphQL: consulta
+ * suelta con ETag y 304, lote de operaciones y cuerpos inválidos.
+ */
+public class EndpointGraphQLTest {
+
+    private static final Logger LOGGER = Logger.getLogger(EndpointGraphQLTest.class.getName());
+
+    private final AtomicInteger lecturas = new AtomicInteger();
+
+    /** Proveedor mínimo con un campo "usuarios" asociado a su tabla. */
+    private ProveedorGraphQL proveedor() {
+        DocumentosPreparados documentos = new DocumentosPreparados(10);
+        TiemposGraphQL tiempos = TiemposGraphQL.desdeEntorno("prueba");
+        CacheRespuestas cache = new CacheRespuestas(10, 1 << 20, 60,
+                Map.of("Query.usuarios", Set.of("usuarios")));
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+                .type("Query", b -> b.dataFetcher("usuarios", env -> {
+                    lecturas.incrementAndGet();
+                    return List.of("ana");
+                }))
+                .build();
+        GraphQL graphQL = GraphQL.newGraphQL(new SchemaGenerator().makeExecutableSchema(
+                new SchemaParser().parse("type Query { usuarios: [String] }"), wiring))
+                .preparsedDocumentProvider(documentos)
+                .instrumentation(cache)
+                .build();
+        return new ProveedorGraphQL() {
+            @Override
+            public GraphQL getGraphQL() {
+                return graphQL;
+            }
+
+            @Override
+            public DataLoaderRegistry nuevoRegistro() {
+                return new DataLoaderRegistry();
+            }
+
+            @Override
+            public DocumentosPreparados getDocumentos() {
+                return documentos;
+            }
+
+            @Override
+            public TiemposGraphQL getTiempos() {
+                return tiempos;
+            }
+
+            @Override
+            public CacheRespuestas getCache() {
+                return cache;
+            }
+        };
+    }
+
+    @Test
+    public void testConsultaRepetidaConEtagResponde304() {
+        EndpointGraphQL endpoint = new EndpointGraphQL(proveedor(), new LoteGraphQL(5));
+
+        HttpResponseMessage primera = endpoint.atender(peticion("{\"query\":\"{ usuarios }\"}", Map.of()), LOGGER);
+        assertEquals(HttpStatus.OK, primera.getStatus());
+        assertEquals("{\"data\":{\"usuarios\":[\"ana\"]}}", texto(primera.getBody()));
+        String etag = primera.getHeader("ETag");
+        assertNotNull(etag);
+        assertEquals("no-cache", primera.getHeader("Cache-Control"));
+
+        HttpResponseMessage segunda = endpoint.atender(peticion("{\"query\":\"{ usuarios }\"}",
+                Map.of("if-none-match", etag)), LOGGER);
+        assertEquals(HttpStatus.NOT_MODIFIED, segunda.getStatus());
+        assertNull(segunda.getBody());
+        assertEquals(1, lecturas.get(), "la segunda sale de la caché");
+    }
+
+    @Test
+    public void testLoteDevuelveUnArregloSinEtag() {
+        EndpointGraphQL endpoint = new EndpointGraphQL(proveedor(), new LoteGraphQL(5));
+
+        HttpResponseMessage respuesta = endpoint.atender(
+                peticion("[{\"query\":\"{ usuarios }\"},{\"query\":\"{ usuarios }\"}]", Map.of()), LOGGER);
+
+        assertEquals(HttpStatus.OK, respuesta.getStatus());
+        assertEquals("[{\"data\":{\"usuarios\":[\"ana\"]}},{\"data\":{\"usuarios\":[\"ana\"]}}]",
+                texto(respuesta.getBody()));
+        assertNull(respuesta.getHeader("ETag"));
+    }
+
+    @Test
+    public void testCuerpoInvalidoResponde400() {
+        EndpointGraphQL endpoint = new EndpointGraphQL(proveedor(), new LoteGraphQL(5));
+
+        HttpResponseMessage sinCuerpo = endpoint.atender(peticion(null, Map.of()), LOGGER);
+        HttpResponseMessage sinQuery = endpoint.atender(peticion("{\"variables\":{}}", Map.of()), LOGGER);
+
+        assertEquals(HttpStatus.BAD_REQUEST, sinCuerpo.getStatus());
+        assertEquals(Map.of("error", "El cuerpo de la solicitud es obligatorio."), sinCuerpo.getBody());
+        assertEquals(HttpStatus.BAD_REQUEST, sinQuery.getStatus());
+        assertEquals(0, lecturas.get());
+    }
+
+    @Test
+    public void testMetricasIncluyenCachesYPool() {
+        EndpointGraphQL endpoint = new EndpointGraphQL(proveedor(), new LoteGraphQL(5));
+
+        String cuerpo = (String) endpoint.metricas(peticion(null, Map.of())).getBody();
+
+        assertTrue(cuerpo.startsWith("{\"documentos\":"), cuerpo);
+        assertTrue(cuerpo.contains("\"respuestas\":"), cuerpo);
+        assertTrue(cuerpo.contains("\"pool\":"), cuerpo);
+    }
+
+    private static String texto(Object cuerpo) {
+        return new String((byte[]) cuerpo, StandardCharsets.UTF_8);
+    }
+
+    private static HttpRequestMessage<Optional<String>> peticion(String cuerpo, Map<String, String> encabezados) {
+        return new HttpRequestMessage<>() {
+            @Override
+            public URI getUri() {
+                return URI.create("http://localhost/api/graphql");
+            }
+
+            @Override
+            public HttpMethod getHttpMethod() {
+                return HttpMethod.POST;
+            }
+
+            @Override
+            public Map<String, String> getHeaders() {
+                return encabezados;
+            }
+
+            @Override
+            public Map<String, String> getQueryParameters() {
+                return Map.of();
+            }
+
+            @Override
+            public Optional<String> getBody() {
+                return Optional.ofNullable(cuerpo);
+            }
+
+            @Override
+            public HttpResponseMessage.Builder createResponseBuilder(HttpStatus status) {
+                return new Respuesta.Builder().status(status);
+            }
+
+            @Override
+            public HttpResponseMessage.Builder createResponseBuilder(HttpStatusType status) {
+                return new Respuesta.Builder().status(status);
+            }
+        };
+    }
+
+    /** Respuesta en memoria, como la que arma el host de Functions. */
+    private record Respuesta(HttpStatusType getStatus, Map<String, String> encabezados, Object getBody)
+            implements HttpResponseMessage {
+
+        @Override
+        public String getHeader(String clave) {
+            return encabezados.get(clave);
+        }
+
+        static final class Builder implements HttpResponseMessage.Builder {
+            private HttpStatusType status;
+            private final Map<String, String> encabezados = new HashMap<>();
+            private Object cuerpo;
+
+            @Override
+            public HttpResponseMessage.Builder status(HttpStatusType status) {
+                this.status = status;
+                return this;
+            }
+
+            @Override
+            public HttpResponseMessage.Builder header(String clave, String valor) {
+                encabezados.put(clave, valor);
+                return this;
+            }
+
+            @Override
+            public HttpResponseMessage.Builder body(Object cuerpo) {
+                this.cuerpo = cuerpo;
+                return this;
+            }
+
+            @Override
+            public HttpResponseMessage build() {
+                return new Respuesta(status, encabezados, cuerpo);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.function.comun.graphql;
+
+import graphql.GraphQL;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.TypeDefinitionRegistry;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la combinación de esquemas de usuarios y roles.
+ */
+public class EsquemaCombinadoTest {
+
+    private static final String USUARIOS = "type Usuario { id: ID!, roles: [Rol!]! }"
+            + " type Rol { id: ID!\n rol: String! } # mismo tipo que en roles.graphqls\n"
+            + " type PageInfo { hasNextPage: Boolean!, endCursor: String }"
+            + " type Query { usuario(id: ID!): Usuario }"
+            + " type Mutation { eliminarUsuario(id: ID!): Boolean }";
+
+    @Test
+    public void testCombinaConElEsquemaDeRoles() {
+        TypeDefinitionRegistry registro = EsquemaCombinado.combinar(
+                List.of(new StringReader(USUARIOS), ResolversRoles.esquema()));
+
+        // Se cablean usuarios y roles por separado sobre el mismo tipo Query
+        RuntimeWiring.Builder wiring = RuntimeWiring.newRuntimeWiring()
+                .type("Query", b -> b.dataFetcher("usuario", env -> Map.of("id", 1, "roles", List.of())));
+        wiring.type("Query", b -> b.dataFetcher("rol", env -> Map.of("id", 3, "rol", "Cliente")));
+        GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(registro, wiring.build());
+
+        assertNotNull(schema.getQueryType().getFieldDefinition("roles"));
+        assertNotNull(schema.getMutationType().getFieldDefinition("crearRol"));
+        assertNotNull(schema.getMutationType().getFieldDefinition("eliminarUsuario"));
+
+        Object data = GraphQL.newGraphQL(schema).build()
+                .execute("{ usuario(id: 1) { id } rol(id: 3) { rol } }").getData();
+        assertEquals(Map.of("usuario", Map.of("id", "1"), "rol", Map.of("rol", "Cliente")), data);
+    }
+
+    @Test
+    public void testRechazaTiposDistintosConElMismoNombre() {
+        String otroRol = "type Rol { id: ID!, nombre: String } type Query { otro: Rol }";
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> EsquemaCombinado.combinar(
+                List.of(new StringReader(USUARIOS), new StringReader(otroRol))));
+        assertTrue(e.getMessage().contains("'Rol'"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.function.comun.graphql;
+
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderFactory;
+import org.dataloader.DataLoaderRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la ejecución de lotes de operaciones.
+ */
+public class LoteGraphQLTest {
+
+    private final List<Integer> idsConsultados = new CopyOnWriteArrayList<>();
+    private GraphQL graphQL;
+
+    @BeforeEach
+    public void preparar() {
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+                .type("Query", b -> b.dataFetcher("usuario", env -> {
+                    DataLoader<Integer, Map<String, Object>> loader = env.getDataLoader("usuario");
+                    return loader.load(Integer.parseInt(env.getArgument("id")));
+                }))
+                .build();
+        graphQL = GraphQL.newGraphQL(new SchemaGenerator().makeExecutableSchema(
+                new SchemaParser().parse("type Usuario { id: ID!, nombre: String }"
+                        + " type Query { usuario(id: ID!): Usuario }"),
+                wiring)).build();
+    }
+
+    private DataLoaderRegistry registro() {
+        DataLoaderRegistry registro = new DataLoaderRegistry();
+        registro.register("usuario", DataLoaderFactory.newDataLoader((List<Integer> ids) -> {
+            idsConsultados.addAll(ids);
+            List<Map<String, Object>> usuarios = new ArrayList<>();
+            for (Integer id : ids) {
+                usuarios.add(Map.of("id", id, "nombre", "u" + id));
+            }
+            return CompletableFuture.completedFuture(usuarios);
+        }));
+        return registro;
+    }
+
+    @Test
+    public void testResultadosEnOrdenConDataLoadersCompartidos() throws IOException {
+        List<CodecGraphQL.Peticion> peticiones = CodecGraphQL.leerLote("["
+                + "{\"query\":\"{ usuario(id: 1) { nombre } }\"},"
+                + "{\"variables\":{}},"
+                + "{\"query\":\"query($id: ID!) { usuario(id: $id) { id } }\",\"variables\":{\"id\":\"1\"}},"
+                + "{\"query\":\"{ usuario(id: 2) { nombre } }\"}]");
+
+        List<ExecutionResult> resultados = new LoteGraphQL(10).ejecutar(graphQL, peticiones, registro());
+
+        assertEquals(4, resultados.size());
+        assertEquals(Map.of("usuario", Map.of("nombre", "u1")), resultados.get(0).getData());
+        assertEquals("El campo 'query' es obligatorio.", resultados.get(1).getErrors().get(0).getMessage());
+        assertEquals(Map.of("usuario", Map.of("id", "1")), resultados.get(2).getData());
+        assertEquals(Map.of("usuario", Map.of("nombre", "u2")), resultados.get(3).getData());
+        // El id 1 se consulta una sola vez para las dos operaciones
+        assertEquals(List.of(1, 2), idsConsultados);
+        assertTrue(new String(CodecGraphQL.escribirLote(resultados)).startsWith("[{\"data\":{\"usuario\":"));
+    }
+
+    @Test
+    public void testRechazaLotesVaciosOExcesivos() throws IOException {
+        LoteGraphQL lote = new LoteGraphQL(2);
+        List<CodecGraphQL.Peticion> tres = CodecGraphQL.leerLote("[{\"query\":\"{ usuario(id: 1) { id } }\"},"
+                + "{\"query\":\"{ usuario(id: 2) { id } }\"},{\"query\":\"{ usuario(id: 3) { id } }\"}]");
+
+        assertThrows(IllegalArgumentException.class, () -> lote.ejecutar(graphQL, tres, registro()));
+        assertThrows(IllegalArgumentException.class, () -> lote.ejecutar(graphQL, List.of(), registro()));
+        assertThrows(IOException.class, () -> CodecGraphQL.leerLote("[{\"query\":\"{ a }\"}, 1]"));
+        assertTrue(idsConsultados.isEmpty());
+    }
+}
@@ -0,0 +1,90 @@
+package com.function.comun.graphql;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la eliminación masiva de roles con H2 (modo Oracle), incluidos
+ * los eventos RolEliminado que registra en el outbox.
+ */
+public class RolDataFetcherTest {
+
+    private JdbcDataSource dataSource;
+
+    @BeforeEach
+    public void preparar() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:rol_data_fetcher;MODE=Oracle;DB_CLOSE_DELAY=-1");
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS permisos");
+            st.execute("DROP TABLE IF EXISTS usuario_roles");
+            st.execute("DROP TABLE IF EXISTS roles");
+            st.execute("DROP TABLE IF EXISTS outbox_eventos");
+            st.execute("CREATE TABLE roles (id_rol NUMBER PRIMARY KEY, rol VARCHAR2(100) NOT NULL)");
+            st.execute("CREATE TABLE usuario_roles (usuario_id NUMBER NOT NULL,"
+                    + " rol_id NUMBER NOT NULL REFERENCES roles (id_rol), PRIMARY KEY (usuario_id, rol_id))");
+            // Otra referencia a roles, para provocar un error al borrar el rol
+            st.execute("CREATE TABLE permisos (rol_id NUMBER NOT NULL REFERENCES roles (id_rol))");
+            st.execute("CREATE TABLE outbox_eventos (id_evento VARCHAR2(36) PRIMARY KEY,"
+                    + " tipo_evento VARCHAR2(100) NOT NULL, asunto VARCHAR2(200) NOT NULL,"
+                    + " fecha_evento VARCHAR2(40) NOT NULL, data CLOB, version_data VARCHAR2(10) NOT NULL)");
+            st.execute("INSERT INTO roles VALUES (1, 'Administrador'), (2, 'Cliente'), (3, 'Veterinario')");
+            st.execute("INSERT INTO usuario_roles VALUES (10, 1), (11, 1), (10, 2), (12, 3)");
+            st.execute("INSERT INTO permisos VALUES (2)");
+        }
+    }
+
+    private int contar(String sql) throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void testEliminaRolAsignadoYSusAsignaciones() throws SQLException {
+        List<Map<String, Object>> resultados;
+        try (Connection conn = dataSource.getConnection()) {
+            resultados = new RolDataFetcher().eliminarRoles(conn, List.of(1, 99));
+        }
+
+        assertEquals(true, resultados.get(0).get("eliminado"));
+        assertNull(resultados.get(0).get("error"));
+        assertEquals(false, resultados.get(1).get("eliminado"));
+        assertEquals(0, contar("SELECT COUNT(*) FROM roles WHERE id_rol = 1"));
+        assertEquals(0, contar("SELECT COUNT(*) FROM usuario_roles WHERE rol_id = 1"));
+        assertEquals(2, contar("SELECT COUNT(*) FROM usuario_roles"));
+        // Solo el rol que existía genera evento
+        assertEquals(1, contar("SELECT COUNT(*) FROM outbox_eventos"));
+        assertEquals(1, contar("SELECT COUNT(*) FROM outbox_eventos WHERE tipo_evento = 'RolEliminado'"
+                + " AND data = '{\"id\":1}'"));
+    }
+
+    @Test
+    public void testErrorDeUnRolConservaSusAsignaciones() throws SQLException {
+        List<Map<String, Object>> resultados;
+        try (Connection conn = dataSource.getConnection()) {
+            resultados = new RolDataFetcher().eliminarRoles(conn, List.of(2, 3));
+        }
+
+        assertEquals(false, resultados.get(0).get("eliminado"));
+        assertNotNull(resultados.get(0).get("error"));
+        assertEquals(true, resultados.get(1).get("eliminado"));
+        // El borrado de las asignaciones del rol 2 se deshizo junto con su error
+        assertEquals(1, contar("SELECT COUNT(*) FROM usuario_roles WHERE rol_id = 2"));
+        assertEquals(0, contar("SELECT COUNT(*) FROM usuario_roles WHERE rol_id = 3"));
+        assertEquals(2, contar("SELECT COUNT(*) FROM roles"));
+        assertEquals(1, contar("SELECT COUNT(*) FROM outbox_eventos WHERE data = '{\"id\":3}'"));
+        assertEquals(1, contar("SELECT COUNT(*) FROM outbox_eventos"));
+    }
+}
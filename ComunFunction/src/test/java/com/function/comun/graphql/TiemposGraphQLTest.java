@@ -0,0 +1,80 @@
+package com.function.comun.graphql;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la medición de fases y resolvers.
+ */
+public class TiemposGraphQLTest {
+
+    private static final String SCHEMA = "type Usuario { id: ID!, nombre: String }"
+            + " type Query { usuario(id: ID!): Usuario }";
+
+    private TiemposGraphQL tiempos;
+    private GraphQL graphQL;
+
+    @BeforeEach
+    public void preparar() {
+        // El resolver tarda 20 ms en completar su CompletableFuture, como un lote de DataLoader
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+                .type("Query", b -> b.dataFetcher("usuario", env -> CompletableFuture.supplyAsync(
+                        () -> Map.of("id", 1, "nombre", "Ana"),
+                        CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS))))
+                .build();
+        tiempos = new TiemposGraphQL();
+        graphQL = GraphQL.newGraphQL(new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), wiring))
+                .instrumentation(tiempos)
+                .build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTracingOptativoEnExtensions() {
+        ExecutionResult sinTraza = graphQL.execute("{ usuario(id: 1) { nombre } }");
+        assertNull(sinTraza.getExtensions());
+
+        ExecutionResult resultado = graphQL.execute(ExecutionInput.newExecutionInput()
+                .query("{ usuario(id: 1) { nombre } }")
+                .extensions(Map.of("tracing", true))
+                .build());
+
+        Map<String, Object> traza = (Map<String, Object>) resultado.getExtensions().get("tracing");
+        assertTrue(((Map<String, Object>) traza.get("fases")).containsKey("validacionUs"));
+        List<Map<String, Object>> resolvers = (List<Map<String, Object>>) traza.get("resolvers");
+        // El campo nombre usa el fetcher por defecto y no se mide
+        assertEquals(1, resolvers.size());
+        assertEquals("/usuario", resolvers.get(0).get("ruta"));
+        assertEquals("Query.usuario", resolvers.get(0).get("campo"));
+        assertTrue((Long) resolvers.get(0).get("duracionUs") >= 20_000);
+    }
+
+    @Test
+    public void testAcumulaHistogramas() {
+        for (int i = 0; i < 3; i++) {
+            graphQL.execute("{ usuario(id: 1) { id } }");
+        }
+        tiempos.registrar("serializacion", 5_000);
+
+        TiemposGraphQL.Metricas metricas = tiempos.metricas();
+        assertEquals(3, metricas.ejecuciones());
+        assertEquals(3, metricas.fases().get("total").cantidad());
+        assertEquals(3, metricas.resolvers().get("Query.usuario").cantidad());
+        assertTrue(metricas.resolvers().get("Query.usuario").p50Us() >= 16_384);
+        assertEquals(5, metricas.fases().get("serializacion").p99Us());
+        assertTrue(metricas.toString().startsWith("{\"ejecuciones\":3,\"fases\":{"));
+    }
+}
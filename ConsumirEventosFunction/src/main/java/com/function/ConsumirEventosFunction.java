@@ -4,12 +4,12 @@ import com.microsoft.azure.functions.annotation.*;
 import com.microsoft.azure.functions.*;
 
 import java.util.logging.Logger;
-import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.function.comun.ConexionBD;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
 /**
@@ -17,6 +17,10 @@ import java.sql.SQLException;
  */
 public class ConsumirEventosFunction {
 
+    static {
+        ConexionBD.precalentar();
+    }
+
     @FunctionName("ConsumirEventos")
     public void run(
             @EventGridTrigger(name = "eventGridEvent") String content,
@@ -25,8 +29,7 @@ public class ConsumirEventosFunction {
         logger.info("🔔 Función con Event Grid Trigger ejecutada.");
 
         // Deserializar el contenido del evento
-        Gson gson = new Gson();
-        JsonObject eventGridEvent = gson.fromJson(content, JsonObject.class);
+        JsonObject eventGridEvent = JsonParser.parseString(content).getAsJsonObject();
 
         // Log completo
         logger.info("Evento recibido (JSON completo): " + eventGridEvent.toString());
@@ -39,20 +42,16 @@ public class ConsumirEventosFunction {
         logger.info("📝 Tipo de evento: " + eventType);
         logger.info("📦 Data del evento: " + data);
 
-        // Insertar evento en tabla eventos_consumidor
-        try (Connection conn = DriverManager.getConnection(
-                System.getenv("DB_URL"),
-                System.getenv("DB_USER"),
-                System.getenv("DB_PASSWORD"))) {
-
-            String insertSQL = "INSERT INTO eventos_consumidor (tipo_evento, data) VALUES (?, ?)";
-            try (PreparedStatement ps = conn.prepareStatement(insertSQL)) {
-                ps.setString(1, eventType);
-                ps.setString(2, data);
-                ps.executeUpdate();
+        // Insertar evento en tabla eventos_consumidor (se omite si es una reentrega)
+        try (Connection conn = ConexionBD.getConnection()) {
+            JsonArray eventos = new JsonArray();
+            eventos.add(eventGridEvent);
+            EventosConsumidor.Resultado resultado = EventosConsumidor.getInstancia().guardar(conn, eventos);
+            if (resultado.guardados > 0) {
                 logger.info("✅ Evento guardado en tabla eventos_consumidor.");
+            } else if (resultado.duplicados > 0) {
+                logger.info("♻️ Evento duplicado, ya estaba guardado.");
             }
-
         } catch (SQLException e) {
             logger.severe("❌ Error al guardar evento en BD: " + e.getMessage());
         }
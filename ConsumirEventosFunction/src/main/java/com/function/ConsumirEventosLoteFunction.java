@@ -0,0 +1,102 @@
+package com.function;
+
+import com.microsoft.azure.functions.annotation.*;
+import com.microsoft.azure.functions.*;
+
+import java.util.Optional;
+import java.util.logging.Logger;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.function.comun.ConexionBD;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Función serverless en Azure que consume eventos de Event Grid por lotes.
+ *
+ * Se registra como suscripción webhook con entrega por lotes
+ * (maxEventsPerBatch): cada invocación recibe un arreglo de eventos, lo
+ * procesa en una sola pasada y lo guarda con una conexión y un commit. El
+ * EventGridTrigger de Java entrega un evento por invocación, por eso esta
+ * variante usa un HttpTrigger.
+ */
+public class ConsumirEventosLoteFunction {
+
+    private static final String VALIDACION = "Microsoft.EventGrid.SubscriptionValidationEvent";
+
+    static {
+        ConexionBD.precalentar();
+    }
+
+    @FunctionName("ConsumirEventosLote")
+    public HttpResponseMessage run(
+            @HttpTrigger(name = "req", methods = {
+                    HttpMethod.POST }, authLevel = AuthorizationLevel.FUNCTION) HttpRequestMessage<Optional<String>> request,
+            final ExecutionContext context) {
+        Logger logger = context.getLogger();
+
+        JsonArray eventos;
+        try {
+            JsonElement cuerpo = JsonParser.parseString(request.getBody().orElse("[]"));
+            if (cuerpo.isJsonArray()) {
+                eventos = cuerpo.getAsJsonArray();
+            } else {
+                eventos = new JsonArray();
+                eventos.add(cuerpo);
+            }
+        } catch (JsonParseException | IllegalStateException e) {
+            return request.createResponseBuilder(HttpStatus.BAD_REQUEST)
+                    .body("{\"error\":\"Se espera un arreglo JSON de eventos.\"}")
+                    .header("Content-Type", "application/json")
+                    .build();
+        }
+
+        // Handshake de validación de la suscripción webhook
+        if (eventos.size() > 0 && eventos.get(0).isJsonObject()) {
+            JsonObject primero = eventos.get(0).getAsJsonObject();
+            JsonElement tipo = primero.get("eventType");
+            if (tipo != null && tipo.isJsonPrimitive() && VALIDACION.equals(tipo.getAsString())) {
+                JsonElement data = primero.get("data");
+                if (data == null || !data.isJsonObject() || !data.getAsJsonObject().has("validationCode")) {
+                    return request.createResponseBuilder(HttpStatus.BAD_REQUEST)
+                            .body("{\"error\":\"El evento de validación no trae data.validationCode.\"}")
+                            .header("Content-Type", "application/json")
+                            .build();
+                }
+                JsonObject respuesta = new JsonObject();
+                respuesta.add("validationResponse", data.getAsJsonObject().get("validationCode"));
+                return request.createResponseBuilder(HttpStatus.OK)
+                        .body(respuesta.toString())
+                        .header("Content-Type", "application/json")
+                        .build();
+            }
+        }
+
+        EventosConsumidor.Resultado resultado;
+        try (Connection conn = ConexionBD.getConnection()) {
+            resultado = EventosConsumidor.getInstancia().guardar(conn, eventos);
+        } catch (SQLException e) {
+            // Un 500 hace que Event Grid reintente el lote completo
+            logger.severe("❌ Error al guardar lote de " + eventos.size() + " eventos en BD: " + e.getMessage());
+            return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("{\"error\":\"Error al guardar los eventos.\"}")
+                    .header("Content-Type", "application/json")
+                    .build();
+        }
+
+        logger.info("✅ Lote procesado: " + resultado.guardados + " de " + resultado.recibidos
+                + " eventos guardados en eventos_consumidor (" + resultado.duplicados + " duplicados).");
+        if (resultado.fallidos.size() > 0) {
+            logger.warning("Eventos no guardados: " + resultado.fallidos);
+        }
+
+        return request.createResponseBuilder(HttpStatus.OK)
+                .body(resultado.toJson().toString())
+                .header("Content-Type", "application/json")
+                .build();
+    }
+}
@@ -0,0 +1,232 @@
+package com.function;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.function.comun.Entorno;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Inserción idempotente de eventos de Event Grid en la tabla
+ * eventos_consumidor.
+ *
+ * Cada evento se guarda con su id de Event Grid. Las reentregas se descartan
+ * primero en memoria ({@link IdsEventosVistos}) y, si no están ahí, en la BD:
+ * el MERGE no inserta ids existentes y la restricción única resuelve las
+ * carreras entre workers.
+ *
+ * Variable de entorno: CONSUMIDOR_DEDUP_CAPACIDAD (ids recordados por
+ * worker, por defecto 10000).
+ */
+final class EventosConsumidor {
+
+    static final String INSERT_SQL = "MERGE INTO eventos_consumidor d "
+            + "USING (SELECT CAST(? AS VARCHAR2(64)) AS id_evento_grid FROM dual) s "
+            + "ON (d.id_evento_grid = s.id_evento_grid) "
+            + "WHEN NOT MATCHED THEN INSERT (id_evento_grid, tipo_evento, data) VALUES (s.id_evento_grid, ?, ?)";
+
+    private static volatile EventosConsumidor instancia;
+
+    private final IdsEventosVistos vistos;
+    private final LongAdder recibidos = new LongAdder();
+    private final LongAdder guardados = new LongAdder();
+    private final LongAdder duplicadosCache = new LongAdder();
+    private final LongAdder duplicadosBD = new LongAdder();
+
+    EventosConsumidor(int capacidadCache) {
+        this.vistos = new IdsEventosVistos(capacidadCache);
+    }
+
+    /**
+     * Retorna el consumidor del worker, compartido por ambas funciones.
+     */
+    static EventosConsumidor getInstancia() {
+        EventosConsumidor c = instancia;
+        if (c == null) {
+            synchronized (EventosConsumidor.class) {
+                c = instancia;
+                if (c == null) {
+                    c = new EventosConsumidor(Entorno.entero(System.getenv(), "CONSUMIDOR_DEDUP_CAPACIDAD", 10_000));
+                    instancia = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Guarda un arreglo de eventos con un único PreparedStatement por lotes y
+     * un solo commit. Los eventos sin eventType se reportan como fallidos sin
+     * enviarse a la BD. Si el lote falla, se reintenta fila por fila en la
+     * misma transacción para aislar los eventos con error y guardar el resto.
+     *
+     * @throws SQLException si falla la conexión o el commit; en ese caso no se
+     *                      guarda ningún evento.
+     */
+    Resultado guardar(Connection conn, JsonArray eventos) throws SQLException {
+        Resultado resultado = new Resultado(eventos.size());
+        recibidos.add(eventos.size());
+        List<Integer> indices = new ArrayList<>(eventos.size());
+        List<String> ids = new ArrayList<>(eventos.size());
+        // Ids ya vistos en este lote, para descartar repetidos sin recorrer la lista
+        Set<String> idsLote = new HashSet<>();
+        List<String> tipos = new ArrayList<>(eventos.size());
+        List<String> datos = new ArrayList<>(eventos.size());
+
+        for (int i = 0; i < eventos.size(); i++) {
+            JsonElement elemento = eventos.get(i);
+            JsonObject evento = elemento.isJsonObject() ? elemento.getAsJsonObject() : null;
+            if (evento == null || !evento.has("eventType") || evento.get("eventType").isJsonNull()) {
+                resultado.fallo(i, evento, "Evento sin eventType");
+                continue;
+            }
+            String id = evento.has("id") && !evento.get("id").isJsonNull() ? evento.get("id").getAsString() : null;
+            if (id != null && (vistos.contiene(id) || !idsLote.add(id))) {
+                resultado.duplicados++;
+                duplicadosCache.increment();
+                continue;
+            }
+            indices.add(i);
+            ids.add(id);
+            tipos.add(evento.get("eventType").getAsString());
+            datos.add(evento.has("data") ? evento.get("data").toString() : null);
+        }
+
+        if (indices.isEmpty()) {
+            return resultado;
+        }
+
+        boolean[] confirmados = new boolean[indices.size()];
+        conn.setAutoCommit(false);
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            try {
+                for (int i = 0; i < indices.size(); i++) {
+                    ps.setString(1, ids.get(i));
+                    ps.setString(2, tipos.get(i));
+                    ps.setString(3, datos.get(i));
+                    ps.addBatch();
+                }
+                int[] filas = ps.executeBatch();
+                for (int i = 0; i < filas.length; i++) {
+                    registrar(resultado, filas[i] != 0);
+                    confirmados[i] = true;
+                }
+            } catch (BatchUpdateException e) {
+                // No todos los drivers indican qué fila falló: se repite una a una
+                conn.rollback();
+                ps.clearBatch();
+                for (int i = 0; i < indices.size(); i++) {
+                    ps.setString(1, ids.get(i));
+                    ps.setString(2, tipos.get(i));
+                    ps.setString(3, datos.get(i));
+                    try {
+                        registrar(resultado, ps.executeUpdate() != 0);
+                        confirmados[i] = true;
+                    } catch (SQLIntegrityConstraintViolationException duplicado) {
+                        // Otro worker guardó el mismo id entre el MERGE y el INSERT
+                        registrar(resultado, false);
+                        confirmados[i] = true;
+                    } catch (SQLException fila) {
+                        int indice = indices.get(i);
+                        resultado.fallo(indice, eventos.get(indice).getAsJsonObject(), fila.getMessage());
+                    }
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+
+        // Solo tras el commit: un evento deshecho debe poder guardarse al reentregarse
+        guardados.add(resultado.guardados);
+        duplicadosBD.add(resultado.duplicadosBD);
+        for (int i = 0; i < indices.size(); i++) {
+            if (confirmados[i] && ids.get(i) != null) {
+                vistos.agregar(ids.get(i));
+            }
+        }
+        return resultado;
+    }
+
+    private static void registrar(Resultado resultado, boolean insertado) {
+        if (insertado) {
+            resultado.guardados++;
+        } else {
+            resultado.duplicados++;
+            resultado.duplicadosBD++;
+        }
+    }
+
+    /**
+     * Retorna los contadores acumulados de deduplicación del worker.
+     */
+    Metricas metricas() {
+        return new Metricas(recibidos.sum(), guardados.sum(), duplicadosCache.sum(), duplicadosBD.sum(),
+                vistos.tamano());
+    }
+
+    /**
+     * Resumen de un lote: eventos recibidos, guardados, duplicados y fallidos.
+     */
+    static final class Resultado {
+        final int recibidos;
+        int guardados;
+        int duplicados;
+        int duplicadosBD;
+        final JsonArray fallidos = new JsonArray();
+
+        Resultado(int recibidos) {
+            this.recibidos = recibidos;
+        }
+
+        void fallo(int indice, JsonObject evento, String error) {
+            JsonObject fallo = new JsonObject();
+            fallo.addProperty("indice", indice);
+            if (evento != null && evento.has("id") && !evento.get("id").isJsonNull()) {
+                fallo.addProperty("id", evento.get("id").getAsString());
+            }
+            fallo.addProperty("error", error);
+            fallidos.add(fallo);
+        }
+
+        JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("recibidos", recibidos);
+            json.addProperty("guardados", guardados);
+            json.addProperty("duplicados", duplicados);
+            json.add("fallidos", fallidos);
+            return json;
+        }
+    }
+
+    /**
+     * Contadores de deduplicación. La tasa de aciertos es la fracción de
+     * eventos recibidos que resultaron ser reentregas.
+     */
+    record Metricas(long recibidos, long guardados, long duplicadosCache, long duplicadosBD, int idsEnCache) {
+
+        double tasaDuplicados() {
+            return recibidos == 0 ? 0 : (double) (duplicadosCache + duplicadosBD) / recibidos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "{\"recibidos\":%d,\"guardados\":%d,\"duplicadosCache\":%d,\"duplicadosBD\":%d,"
+                            + "\"tasaDuplicados\":%.4f,\"idsEnCache\":%d}",
+                    recibidos, guardados, duplicadosCache, duplicadosBD, tasaDuplicados(), idsEnCache);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.function;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Conjunto LRU acotado con los ids de Event Grid ya guardados por este
+ * worker. Permite descartar reentregas sin consultar la BD; la restricción
+ * única de eventos_consumidor sigue siendo la autoridad.
+ */
+final class IdsEventosVistos {
+
+    private final Map<String, Boolean> ids;
+
+    IdsEventosVistos(int capacidad) {
+        this.ids = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacidad;
+            }
+        };
+    }
+
+    synchronized boolean contiene(String id) {
+        return ids.get(id) != null;
+    }
+
+    synchronized void agregar(String id) {
+        ids.put(id, Boolean.TRUE);
+    }
+
+    synchronized int tamano() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,27 @@
+package com.function;
+
+import com.microsoft.azure.functions.annotation.*;
+import com.microsoft.azure.functions.*;
+
+import java.util.Optional;
+import com.function.comun.ConexionBD;
+
+/**
+ * Función serverless en Azure que expone las métricas del consumidor de
+ * eventos de este worker: deduplicación y pool de conexiones.
+ */
+public class MetricasConsumidorFunction {
+
+    @FunctionName("MetricasConsumidor")
+    public HttpResponseMessage run(
+            @HttpTrigger(name = "req", methods = {
+                    HttpMethod.GET }, authLevel = AuthorizationLevel.FUNCTION) HttpRequestMessage<Optional<String>> request,
+            final ExecutionContext context) {
+        String cuerpo = "{\"dedup\":" + EventosConsumidor.getInstancia().metricas()
+                + ",\"pool\":" + ConexionBD.metricas() + "}";
+        return request.createResponseBuilder(HttpStatus.OK)
+                .body(cuerpo)
+                .header("Content-Type", "application/json")
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.function;
+
+import com.microsoft.azure.functions.*;
+
+import java.util.Optional;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas del handshake de validación de la suscripción webhook.
+ */
+public class ConsumirEventosLoteFunctionTest {
+
+    private static HttpResponseMessage invocar(String cuerpo) {
+        @SuppressWarnings("unchecked")
+        final HttpRequestMessage<Optional<String>> req = mock(HttpRequestMessage.class);
+        doReturn(Optional.of(cuerpo)).when(req).getBody();
+        doAnswer(invocation -> new HttpResponseMessageMock.HttpResponseMessageBuilderMock()
+                .status((HttpStatus) invocation.getArguments()[0]))
+                .when(req).createResponseBuilder(any(HttpStatus.class));
+
+        final ExecutionContext context = mock(ExecutionContext.class);
+        doReturn(Logger.getGlobal()).when(context).getLogger();
+
+        return new ConsumirEventosLoteFunction().run(req, context);
+    }
+
+    @Test
+    public void testRespondeElCodigoDeValidacion() {
+        HttpResponseMessage ret = invocar("[{\"eventType\":\"Microsoft.EventGrid.SubscriptionValidationEvent\","
+                + "\"data\":{\"validationCode\":\"abc\"}}]");
+
+        assertEquals(HttpStatus.OK, ret.getStatus());
+        assertEquals("{\"validationResponse\":\"abc\"}", ret.getBody());
+    }
+
+    @Test
+    public void testValidacionSinDataEsBadRequest() {
+        assertEquals(HttpStatus.BAD_REQUEST,
+                invocar("[{\"eventType\":\"Microsoft.EventGrid.SubscriptionValidationEvent\"}]").getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST,
+                invocar("{\"eventType\":\"Microsoft.EventGrid.SubscriptionValidationEvent\",\"data\":\"x\"}")
+                        .getStatus());
+    }
+}
@@ -0,0 +1,133 @@
+package com.function;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del guardado por lotes y la deduplicación con H2 (modo Oracle).
+ */
+public class EventosConsumidorTest {
+
+    private JdbcDataSource dataSource;
+
+    @BeforeEach
+    public void preparar() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:consumidor;MODE=Oracle;DB_CLOSE_DELAY=-1");
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS eventos_consumidor");
+            st.execute("CREATE TABLE eventos_consumidor ("
+                    + "id_evento NUMBER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                    + "id_evento_grid VARCHAR2(64) UNIQUE,"
+                    + "tipo_evento VARCHAR2(20) NOT NULL,"
+                    + "data CLOB,"
+                    + "fecha_evento TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        }
+    }
+
+    private int contar() throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM eventos_consumidor")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static JsonArray eventos(int cantidad) {
+        JsonArray eventos = new JsonArray();
+        for (int i = 0; i < cantidad; i++) {
+            eventos.add(JsonParser.parseString(
+                    "{\"id\":\"e" + i + "\",\"eventType\":\"UsuarioCreado\",\"data\":{\"idUsuario\":" + i + "}}"));
+        }
+        return eventos;
+    }
+
+    @Test
+    public void testGuardaElLoteCompleto() throws SQLException {
+        EventosConsumidor.Resultado resultado;
+        try (Connection conn = dataSource.getConnection()) {
+            resultado = new EventosConsumidor(100).guardar(conn, eventos(500));
+        }
+
+        assertEquals(500, resultado.guardados);
+        assertEquals(0, resultado.fallidos.size());
+        assertEquals(500, contar());
+    }
+
+    @Test
+    public void testReportaFallidosSinDescartarElResto() throws SQLException {
+        JsonArray eventos = eventos(10);
+        // Sin eventType: se descarta antes de la BD
+        eventos.get(3).getAsJsonObject().remove("eventType");
+        // Excede VARCHAR2(20): falla el lote y se aísla fila por fila
+        eventos.get(7).getAsJsonObject().addProperty("eventType", "UnTipoDeEventoDemasiadoLargo");
+
+        EventosConsumidor.Resultado resultado;
+        try (Connection conn = dataSource.getConnection()) {
+            resultado = new EventosConsumidor(100).guardar(conn, eventos);
+        }
+
+        assertEquals(8, resultado.guardados);
+        assertEquals(8, contar());
+        assertEquals(2, resultado.fallidos.size());
+        assertEquals("e3", resultado.fallidos.get(0).getAsJsonObject().get("id").getAsString());
+        assertEquals("e7", resultado.fallidos.get(1).getAsJsonObject().get("id").getAsString());
+    }
+
+    @Test
+    public void testOmiteReentregasConocidasSinIrALaBD() throws SQLException {
+        EventosConsumidor consumidor = new EventosConsumidor(100);
+        try (Connection conn = dataSource.getConnection()) {
+            consumidor.guardar(conn, eventos(10));
+            EventosConsumidor.Resultado reentrega = consumidor.guardar(conn, eventos(10));
+
+            assertEquals(0, reentrega.guardados);
+            assertEquals(10, reentrega.duplicados);
+            assertEquals(0, reentrega.duplicadosBD);
+        }
+
+        assertEquals(10, contar());
+        assertEquals(10, consumidor.metricas().duplicadosCache());
+        assertEquals(0.5, consumidor.metricas().tasaDuplicados(), 0.0001);
+    }
+
+    @Test
+    public void testLaBDDescartaDuplicadosFueraDeLaCache() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            new EventosConsumidor(100).guardar(conn, eventos(10));
+
+            // Otro worker (cache vacía) recibe la misma entrega y un evento nuevo
+            EventosConsumidor otro = new EventosConsumidor(100);
+            EventosConsumidor.Resultado resultado = otro.guardar(conn, eventos(11));
+
+            assertEquals(1, resultado.guardados);
+            assertEquals(10, resultado.duplicadosBD);
+            assertEquals(10, otro.metricas().duplicadosBD());
+        }
+
+        assertEquals(11, contar());
+    }
+
+    @Test
+    public void testCacheAcotada() {
+        IdsEventosVistos vistos = new IdsEventosVistos(2);
+        vistos.agregar("a");
+        vistos.agregar("b");
+        vistos.contiene("a");
+        vistos.agregar("c");
+
+        assertTrue(vistos.contiene("a"));
+        assertFalse(vistos.contiene("b"));
+        assertEquals(2, vistos.tamano());
+    }
+}
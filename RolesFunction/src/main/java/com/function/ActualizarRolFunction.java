@@ -2,28 +2,26 @@ package com.function;
 
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.*;
+import com.function.comun.ConexionBD;
+import com.function.comun.EventoGrid;
+import com.function.comun.Outbox;
+import com.function.comun.OutboxRelay;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Map;
 import java.util.Optional;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.OffsetDateTime;
-import java.util.UUID;
-
 /**
  * Función serverless en Azure para la operación UPDATE (actualización) de un
  * roly y enviar un evento a Event Grid.
  */
 public class ActualizarRolFunction {
 
-    private static final String EVENT_GRID_TOPIC_ENDPOINT = "https://topic-cloudnative2.eastus-1.eventgrid.azure.net/api/events";
-    private static final String EVENT_GRID_TOPIC_KEY = "C9MVwYnSdg8YinP6KPbsmkMjy2GsXAZCWGuu4G0gZxzomjtIX8BnJQQJ99BEACYeBjFXJ3w3AAABAZEGfSgJ";
+    static {
+        ConexionBD.precalentar();
+    }
 
     @FunctionName("ActualizarRol")
     public HttpResponseMessage run(
@@ -63,35 +61,38 @@ public class ActualizarRolFunction {
         }
         String nuevoNombreRol = requestBody;
 
-        // Leer variables de entorno para la conexión a la base de datos
-        String dbUrl = System.getenv("DB_URL");
-        String dbUser = System.getenv("DB_USER");
-        String dbPassword = System.getenv("DB_PASSWORD");
-
         String responseMessage;
 
         // Conectar a la base de datos y ejecutar la actualización
-        try (Connection connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
-            // Actualizar el rol en la tabla "ROLES". Se usan comillas para preservar el
-            // case sensitive.
-            String sql = "UPDATE \"ROLES\" SET rol = ? WHERE id_rol = ?";
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setString(1, nuevoNombreRol);
-                ps.setInt(2, rolId);
-                int rowsAffected = ps.executeUpdate();
-                if (rowsAffected > 0) {
-                    responseMessage = "{\"mensaje\":\"Rol actualizado exitosamente\", \"id\":" + rolId
-                            + ", \"nuevoRol\":\"" + nuevoNombreRol + "\"}";
-
-                    // Enviar evento a Event Grid
-                    sendEventToEventGrid("RolActualizado", rolId, nuevoNombreRol, context);
-                } else {
-                    responseMessage = "{\"error\":\"Rol con id " + rolId + " no encontrado.\"}";
-                    return request.createResponseBuilder(HttpStatus.NOT_FOUND)
-                            .body(responseMessage)
-                            .header("Content-Type", "application/json")
-                            .build();
+        try (Connection connection = ConexionBD.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                // Actualizar el rol en la tabla "ROLES". Se usan comillas para preservar el
+                // case sensitive.
+                String sql = "UPDATE \"ROLES\" SET rol = ? WHERE id_rol = ?";
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setString(1, nuevoNombreRol);
+                    ps.setInt(2, rolId);
+                    int rowsAffected = ps.executeUpdate();
+                    if (rowsAffected > 0) {
+                        responseMessage = "{\"mensaje\":\"Rol actualizado exitosamente\", \"id\":" + rolId
+                                + ", \"nuevoRol\":\"" + nuevoNombreRol + "\"}";
+
+                        // Registrar el evento en el outbox, en la misma transacción
+                        Outbox.registrar(connection, EventoGrid.nuevo("RolActualizado", "rol/actualizado",
+                                Map.of("id", rolId, "nuevoRol", nuevoNombreRol)));
+                        connection.commit();
+                    } else {
+                        responseMessage = "{\"error\":\"Rol con id " + rolId + " no encontrado.\"}";
+                        return request.createResponseBuilder(HttpStatus.NOT_FOUND)
+                                .body(responseMessage)
+                                .header("Content-Type", "application/json")
+                                .build();
+                    }
                 }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             context.getLogger().severe("Error SQL: " + e.getMessage());
@@ -102,49 +103,13 @@ public class ActualizarRolFunction {
                     .build();
         }
 
+        // Publicar en segundo plano los eventos confirmados en el outbox
+        OutboxRelay.getInstancia().programarDrenado();
+
         // Retornar respuesta exitosa en formato JSON con HTTP 200
         return request.createResponseBuilder(HttpStatus.OK)
                 .body(responseMessage)
                 .header("Content-Type", "application/json")
                 .build();
     }
-
-    private void sendEventToEventGrid(String eventType, int rolId, String nuevoRol, ExecutionContext context) {
-        try {
-            String eventId = UUID.randomUUID().toString();
-            String eventTime = OffsetDateTime.now().toString();
-
-            String jsonEvent = """
-                    [{
-                        "id": "%s",
-                        "eventType": "%s",
-                        "subject": "rol/actualizado",
-                        "eventTime": "%s",
-                        "data": {
-                            "id": %d,
-                            "nuevoRol": "%s"
-                        },
-                        "dataVersion": "1.0"
-                    }]
-                    """.formatted(eventId, eventType, eventTime, rolId, nuevoRol);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(EVENT_GRID_TOPIC_ENDPOINT))
-                    .header("aeg-sas-key", EVENT_GRID_TOPIC_KEY)
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonEvent))
-                    .build();
-
-            HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                    .thenAccept(response -> context.getLogger()
-                            .info("Evento enviado a Event Grid: " + response.statusCode()))
-                    .exceptionally(e -> {
-                        context.getLogger().severe("Error al enviar evento a Event Grid: " + e.getMessage());
-                        return null;
-                    });
-
-        } catch (Exception e) {
-            context.getLogger().severe("Excepción al construir evento: " + e.getMessage());
-        }
-    }
 }
@@ -8,20 +8,17 @@ import com.microsoft.azure.functions.HttpStatus;
 import com.microsoft.azure.functions.annotation.AuthorizationLevel;
 import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
+import com.function.comun.ConexionBD;
+import com.function.comun.EventoGrid;
+import com.function.comun.Outbox;
+import com.function.comun.OutboxRelay;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Map;
 import java.util.Optional;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.OffsetDateTime;
-import java.util.UUID;
-
 /**
  * Función serverless en Azure encargada de asignar un rol existente a un
  * usuario y enviar un evento a Event Grid cuando se crea correctamente.
@@ -29,8 +26,9 @@ import java.util.UUID;
  */
 public class AsignarRolFunction {
 
-    private static final String EVENT_GRID_TOPIC_ENDPOINT = "https://topic-cloudnative2.eastus-1.eventgrid.azure.net/api/events";
-    private static final String EVENT_GRID_TOPIC_KEY = "C9MVwYnSdg8YinP6KPbsmkMjy2GsXAZCWGuu4G0gZxzomjtIX8BnJQQJ99BEACYeBjFXJ3w3AAABAZEGfSgJ";
+    static {
+        ConexionBD.precalentar();
+    }
 
     /**
      * Nombre de la función en Azure: "AsignarRol".
@@ -73,35 +71,38 @@ public class AsignarRolFunction {
                     .build();
         }
 
-        // Obtener variables de entorno para la conexión a la base de datos
-        String dbUrl = System.getenv("DB_URL");
-        String dbUser = System.getenv("DB_USER");
-        String dbPassword = System.getenv("DB_PASSWORD");
-
         String responseMessage;
 
-        try (Connection connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
-            // Insertar en la tabla 'usuario_roles'
-            String sql = "INSERT INTO usuario_roles (usuario_id, rol_id) VALUES (?, ?)";
-
-            int userIdInt = Integer.parseInt(userId);
-            int rolIdInt = Integer.parseInt(rolId);
-
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setInt(1, Integer.parseInt(userId));
-                ps.setInt(2, Integer.parseInt(rolId));
-
-                int rowsAffected = ps.executeUpdate();
-                if (rowsAffected > 0) {
-                    // Construye mensaje de éxito en formato JSON
-                    responseMessage = "{\"mensaje\":\"Rol asignado exitosamente\", \"userId\":\"" + userId
-                            + "\", \"rolId\":\"" + rolId + "\"}";
-
-                    // Enviar evento a Event Grid
-                    sendEventToEventGrid("RolAsignado", userIdInt, rolIdInt, context);
-                } else {
-                    responseMessage = "{\"error\":\"No se pudo asignar el rol.\"}";
+        try (Connection connection = ConexionBD.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                // Insertar en la tabla 'usuario_roles'
+                String sql = "INSERT INTO usuario_roles (usuario_id, rol_id) VALUES (?, ?)";
+
+                int userIdInt = Integer.parseInt(userId);
+                int rolIdInt = Integer.parseInt(rolId);
+
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setInt(1, Integer.parseInt(userId));
+                    ps.setInt(2, Integer.parseInt(rolId));
+
+                    int rowsAffected = ps.executeUpdate();
+                    if (rowsAffected > 0) {
+                        // Construye mensaje de éxito en formato JSON
+                        responseMessage = "{\"mensaje\":\"Rol asignado exitosamente\", \"userId\":\"" + userId
+                                + "\", \"rolId\":\"" + rolId + "\"}";
+
+                        // Registrar el evento en el outbox, en la misma transacción
+                        Outbox.registrar(connection, EventoGrid.nuevo("RolAsignado", "rol/asignado",
+                                Map.of("usuarioId", userIdInt, "rolId", rolIdInt)));
+                        connection.commit();
+                    } else {
+                        responseMessage = "{\"error\":\"No se pudo asignar el rol.\"}";
+                    }
                 }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             context.getLogger().severe("Error SQL: " + e.getMessage());
@@ -119,49 +120,13 @@ public class AsignarRolFunction {
                     .build();
         }
 
+        // Publicar en segundo plano los eventos confirmados en el outbox
+        OutboxRelay.getInstancia().programarDrenado();
+
         // Retorna una respuesta exitosa en formato JSON
         return request.createResponseBuilder(HttpStatus.OK)
                 .body(responseMessage)
                 .header("Content-Type", "application/json")
                 .build();
     }
-
-    private void sendEventToEventGrid(String eventType, int userId, int rolId, ExecutionContext context) {
-        try {
-            String eventId = UUID.randomUUID().toString();
-            String eventTime = OffsetDateTime.now().toString();
-
-            String jsonEvent = """
-                    [{
-                        "id": "%s",
-                        "eventType": "%s",
-                        "subject": "rol/asignado",
-                        "eventTime": "%s",
-                        "data": {
-                            "usuarioId": %d,
-                            "rolId": %d
-                        },
-                        "dataVersion": "1.0"
-                    }]
-                    """.formatted(eventId, eventType, eventTime, userId, rolId);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(EVENT_GRID_TOPIC_ENDPOINT))
-                    .header("aeg-sas-key", EVENT_GRID_TOPIC_KEY)
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonEvent))
-                    .build();
-
-            HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                    .thenAccept(response -> context.getLogger()
-                            .info("Evento enviado a Event Grid: " + response.statusCode()))
-                    .exceptionally(e -> {
-                        context.getLogger().severe("Error al enviar evento a Event Grid: " + e.getMessage());
-                        return null;
-                    });
-
-        } catch (Exception e) {
-            context.getLogger().severe("Excepción al construir evento: " + e.getMessage());
-        }
-    }
 }
@@ -2,28 +2,26 @@ package com.function;
 
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.*;
+import com.function.comun.ConexionBD;
+import com.function.comun.EventoGrid;
+import com.function.comun.Outbox;
+import com.function.comun.OutboxRelay;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Map;
 import java.util.Optional;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.OffsetDateTime;
-import java.util.UUID;
-
 /**
  * Función serverless en Azure encargada de crear un nuevo registro en la tabla
  * "ROLES" y enviar un evento a Event Grid cuando se crea correctamente.
  */
 public class CrearRolFunction {
 
-    private static final String EVENT_GRID_TOPIC_ENDPOINT = "https://topic-cloudnative2.eastus-1.eventgrid.azure.net/api/events";
-    private static final String EVENT_GRID_TOPIC_KEY = "C9MVwYnSdg8YinP6KPbsmkMjy2GsXAZCWGuu4G0gZxzomjtIX8BnJQQJ99BEACYeBjFXJ3w3AAABAZEGfSgJ";
+    static {
+        ConexionBD.precalentar();
+    }
 
     @FunctionName("CrearRol")
     public HttpResponseMessage run(
@@ -48,29 +46,32 @@ public class CrearRolFunction {
         // Almacenar el nombre del rol recibido
         String rol = requestBody;
 
-        // Leer variables de entorno para la conexión a la base de datos
-        String dbUrl = System.getenv("DB_URL");
-        String dbUser = System.getenv("DB_USER");
-        String dbPassword = System.getenv("DB_PASSWORD");
-
         String responseMessage;
 
         // Intentar conectarse a la base de datos y ejecutar la sentencia de inserción
-        try (Connection connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
-            // La tabla se denomina "ROLES" (en mayúsculas) y se coloca entre comillas
-            // para preservar el case sensitive.
-            String sql = "INSERT INTO \"ROLES\" (rol) VALUES (?)";
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setString(1, rol);
-                int rowsAffected = ps.executeUpdate();
-                if (rowsAffected > 0) {
-                    responseMessage = "{\"mensaje\":\"Rol creado exitosamente\", \"rol\":\"" + rol + "\"}";
-
-                    // Enviar evento a Event Grid
-                    sendEventToEventGrid("RolCreado", rol, context);
-                } else {
-                    responseMessage = "{\"error\":\"No se pudo crear el rol.\"}";
+        try (Connection connection = ConexionBD.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                // La tabla se denomina "ROLES" (en mayúsculas) y se coloca entre comillas
+                // para preservar el case sensitive.
+                String sql = "INSERT INTO \"ROLES\" (rol) VALUES (?)";
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setString(1, rol);
+                    int rowsAffected = ps.executeUpdate();
+                    if (rowsAffected > 0) {
+                        responseMessage = "{\"mensaje\":\"Rol creado exitosamente\", \"rol\":\"" + rol + "\"}";
+
+                        // Registrar el evento en el outbox, en la misma transacción
+                        Outbox.registrar(connection, EventoGrid.nuevo("RolCreado", "rol/creado",
+                                Map.of("rol", rol)));
+                        connection.commit();
+                    } else {
+                        responseMessage = "{\"error\":\"No se pudo crear el rol.\"}";
+                    }
                 }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             context.getLogger().severe("Error SQL: " + e.getMessage());
@@ -81,48 +82,13 @@ public class CrearRolFunction {
                     .build();
         }
 
+        // Publicar en segundo plano los eventos confirmados en el outbox
+        OutboxRelay.getInstancia().programarDrenado();
+
         // Devolver la respuesta exitosa en formato JSON
         return request.createResponseBuilder(HttpStatus.OK)
                 .body(responseMessage)
                 .header("Content-Type", "application/json")
                 .build();
     }
-
-    private void sendEventToEventGrid(String eventType, String rolName, ExecutionContext context) {
-        try {
-            String eventId = UUID.randomUUID().toString();
-            String eventTime = OffsetDateTime.now().toString();
-
-            String jsonEvent = """
-                    [{
-                        "id": "%s",
-                        "eventType": "%s",
-                        "subject": "rol/creado",
-                        "eventTime": "%s",
-                        "data": {
-                            "rol": "%s"
-                        },
-                        "dataVersion": "1.0"
-                    }]
-                    """.formatted(eventId, eventType, eventTime, rolName);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(EVENT_GRID_TOPIC_ENDPOINT))
-                    .header("aeg-sas-key", EVENT_GRID_TOPIC_KEY)
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonEvent))
-                    .build();
-
-            HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                    .thenAccept(response -> context.getLogger()
-                            .info("Evento enviado a Event Grid: " + response.statusCode()))
-                    .exceptionally(e -> {
-                        context.getLogger().severe("Error al enviar evento a Event Grid: " + e.getMessage());
-                        return null;
-                    });
-
-        } catch (Exception e) {
-            context.getLogger().severe("Excepción al construir evento: " + e.getMessage());
-        }
-    }
 }
@@ -2,28 +2,26 @@ package com.function;
 
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.*;
+import com.function.comun.ConexionBD;
+import com.function.comun.EventoGrid;
+import com.function.comun.Outbox;
+import com.function.comun.OutboxRelay;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Map;
 import java.util.Optional;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.OffsetDateTime;
-import java.util.UUID;
-
 /**
  * Función serverless en Azure para eliminar un rol de la tabla "ROLES" y enviar
  * un evento a Event Grid cuando se crea correctamente.
  */
 public class EliminarRolFunction {
 
-    private static final String EVENT_GRID_TOPIC_ENDPOINT = "https://topic-cloudnative2.eastus-1.eventgrid.azure.net/api/events";
-    private static final String EVENT_GRID_TOPIC_KEY = "C9MVwYnSdg8YinP6KPbsmkMjy2GsXAZCWGuu4G0gZxzomjtIX8BnJQQJ99BEACYeBjFXJ3w3AAABAZEGfSgJ";
+    static {
+        ConexionBD.precalentar();
+    }
 
     /**
      * Función "EliminarRol" invocable mediante una petición HTTP DELETE.
@@ -60,40 +58,42 @@ public class EliminarRolFunction {
                     .build();
         }
 
-        // Recuperar las variables de entorno para la conexión a la base de datos.
-        // DB_URL, DB_USER y DB_PASSWORD deben estar configuradas en la Function App.
-        String dbUrl = System.getenv("DB_URL");
-        String dbUser = System.getenv("DB_USER");
-        String dbPassword = System.getenv("DB_PASSWORD");
-
         String responseMessage;
 
         // Intentar establecer la conexión y ejecutar la sentencia DELETE
-        try (Connection connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
-            // 1. Eliminar relaciones USUARIO_ROLES
-            String deleteUsuarioRolesSql = "DELETE FROM \"USUARIO_ROLES\" WHERE ROL_ID = ?";
-            try (PreparedStatement psDeleteUR = connection.prepareStatement(deleteUsuarioRolesSql)) {
-                psDeleteUR.setInt(1, rolId);
-                psDeleteUR.executeUpdate();
-            }
-
-            // 2. Eliminar el rol de ROLES
-            String sql = "DELETE FROM \"ROLES\" WHERE id_rol = ?";
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setInt(1, rolId);
-                int rowsAffected = ps.executeUpdate();
-                if (rowsAffected > 0) {
-                    responseMessage = "{\"mensaje\":\"Rol eliminado exitosamente\", \"id\":" + rolId + "}";
+        try (Connection connection = ConexionBD.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                // 1. Eliminar relaciones USUARIO_ROLES
+                String deleteUsuarioRolesSql = "DELETE FROM \"USUARIO_ROLES\" WHERE ROL_ID = ?";
+                try (PreparedStatement psDeleteUR = connection.prepareStatement(deleteUsuarioRolesSql)) {
+                    psDeleteUR.setInt(1, rolId);
+                    psDeleteUR.executeUpdate();
+                }
 
-                    // Enviar evento
-                    sendEventToEventGrid("RolEliminado", rolId, context);
-                } else {
-                    responseMessage = "{\"error\":\"Rol con id " + rolId + " no encontrado.\"}";
-                    return request.createResponseBuilder(HttpStatus.NOT_FOUND)
-                            .body(responseMessage)
-                            .header("Content-Type", "application/json")
-                            .build();
+                // 2. Eliminar el rol de ROLES
+                String sql = "DELETE FROM \"ROLES\" WHERE id_rol = ?";
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setInt(1, rolId);
+                    int rowsAffected = ps.executeUpdate();
+                    if (rowsAffected > 0) {
+                        responseMessage = "{\"mensaje\":\"Rol eliminado exitosamente\", \"id\":" + rolId + "}";
+
+                        // Registrar el evento en el outbox, en la misma transacción
+                        Outbox.registrar(connection, EventoGrid.nuevo("RolEliminado", "rol/eliminado",
+                                Map.of("id", rolId)));
+                        connection.commit();
+                    } else {
+                        responseMessage = "{\"error\":\"Rol con id " + rolId + " no encontrado.\"}";
+                        return request.createResponseBuilder(HttpStatus.NOT_FOUND)
+                                .body(responseMessage)
+                                .header("Content-Type", "application/json")
+                                .build();
+                    }
                 }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             context.getLogger().severe("Error SQL: " + e.getMessage());
@@ -104,47 +104,12 @@ public class EliminarRolFunction {
                     .build();
         }
 
+        // Publicar en segundo plano los eventos confirmados en el outbox
+        OutboxRelay.getInstancia().programarDrenado();
+
         return request.createResponseBuilder(HttpStatus.OK)
                 .body(responseMessage)
                 .header("Content-Type", "application/json")
                 .build();
     }
-
-    private void sendEventToEventGrid(String eventType, int rolId, ExecutionContext context) {
-        try {
-            String eventId = UUID.randomUUID().toString();
-            String eventTime = OffsetDateTime.now().toString();
-
-            String jsonEvent = """
-                    [{
-                        "id": "%s",
-                        "eventType": "%s",
-                        "subject": "rol/eliminado",
-                        "eventTime": "%s",
-                        "data": {
-                            "id": %d
-                        },
-                        "dataVersion": "1.0"
-                    }]
-                    """.formatted(eventId, eventType, eventTime, rolId);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(EVENT_GRID_TOPIC_ENDPOINT))
-                    .header("aeg-sas-key", EVENT_GRID_TOPIC_KEY)
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonEvent))
-                    .build();
-
-            HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                    .thenAccept(response -> context.getLogger()
-                            .info("Evento enviado a Event Grid: " + response.statusCode()))
-                    .exceptionally(e -> {
-                        context.getLogger().severe("Error al enviar evento a Event Grid: " + e.getMessage());
-                        return null;
-                    });
-
-        } catch (Exception e) {
-            context.getLogger().severe("Excepción al construir evento: " + e.getMessage());
-        }
-    }
 }
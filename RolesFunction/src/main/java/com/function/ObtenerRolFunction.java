@@ -2,21 +2,17 @@ package com.function;
 
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.*;
+import com.function.comun.ConexionBD;
+import com.function.comun.EventGridPublisher;
+import com.function.comun.EventoGrid;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Map;
 import java.util.Optional;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.OffsetDateTime;
-import java.util.UUID;
-
 /**
  * Función serverless en Azure que permite obtener la información de un rol
  * a partir de su identificador (id_rol) en la tabla "ROLES" y enviar un evento
@@ -24,8 +20,9 @@ import java.util.UUID;
  */
 public class ObtenerRolFunction {
 
-    private static final String EVENT_GRID_TOPIC_ENDPOINT = "https://topic-cloudnative2.eastus-1.eventgrid.azure.net/api/events";
-    private static final String EVENT_GRID_TOPIC_KEY = "C9MVwYnSdg8YinP6KPbsmkMjy2GsXAZCWGuu4G0gZxzomjtIX8BnJQQJ99BEACYeBjFXJ3w3AAABAZEGfSgJ";
+    static {
+        ConexionBD.precalentar();
+    }
 
     @FunctionName("ObtenerRol")
     public HttpResponseMessage run(
@@ -54,15 +51,10 @@ public class ObtenerRolFunction {
                     .build();
         }
 
-        // Recuperar las variables de entorno para la conexión a la base de datos
-        String dbUrl = System.getenv("DB_URL");
-        String dbUser = System.getenv("DB_USER");
-        String dbPassword = System.getenv("DB_PASSWORD");
-
         String rol = null;
 
         // Conectar a la base de datos y ejecutar la consulta para obtener el rol
-        try (Connection connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
+        try (Connection connection = ConexionBD.getConnection()) {
             // La consulta busca el nombre del rol en la tabla "ROLES"
             String sql = "SELECT rol FROM \"ROLES\" WHERE id_rol = ?";
             try (PreparedStatement ps = connection.prepareStatement(sql)) {
@@ -72,7 +64,10 @@ public class ObtenerRolFunction {
                         rol = rs.getString("rol");
 
                         // Enviar evento a Event Grid
-                        sendEventToEventGrid("RolConsultado", rolId, rol, context);
+                        EventGridPublisher.getInstancia().publicar(
+                                EventoGrid.nuevo("RolConsultado", "rol/consultado",
+                                        Map.of("id", rolId, "rol", rol)),
+                                context.getLogger());
                     } else {
                         return request.createResponseBuilder(HttpStatus.NOT_FOUND)
                                 .body("{\"error\":\"Rol con id " + rolId + " no encontrado.\"}")
@@ -96,43 +91,4 @@ public class ObtenerRolFunction {
                 .header("Content-Type", "application/json")
                 .build();
     }
-
-    private void sendEventToEventGrid(String eventType, int rolId, String rolName, ExecutionContext context) {
-        try {
-            String eventId = UUID.randomUUID().toString();
-            String eventTime = OffsetDateTime.now().toString();
-
-            String jsonEvent = """
-                    [{
-                        "id": "%s",
-                        "eventType": "%s",
-                        "subject": "rol/consultado",
-                        "eventTime": "%s",
-                        "data": {
-                            "id": %d,
-                            "rol": "%s"
-                        },
-                        "dataVersion": "1.0"
-                    }]
-                    """.formatted(eventId, eventType, eventTime, rolId, rolName);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(EVENT_GRID_TOPIC_ENDPOINT))
-                    .header("aeg-sas-key", EVENT_GRID_TOPIC_KEY)
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonEvent))
-                    .build();
-
-            HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                    .thenAccept(response -> context.getLogger()
-                            .info("Evento enviado a Event Grid: " + response.statusCode()))
-                    .exceptionally(e -> {
-                        context.getLogger().severe("Error al enviar evento a Event Grid: " + e.getMessage());
-                        return null;
-                    });
-
-        } catch (Exception e) {
-            context.getLogger().severe("Excepción al construir evento: " + e.getMessage());
-        }
-    }
 }
@@ -0,0 +1,20 @@
+package com.function;
+
+import com.microsoft.azure.functions.*;
+import com.microsoft.azure.functions.annotation.*;
+import com.function.comun.graphql.CacheRespuestas;
+
+/**
+ * Función serverless en Azure que recibe los eventos de cambio de Event Grid
+ * (UsuarioCreado, RolAsignado, etc.) e invalida las respuestas cacheadas por
+ * RolesGraphQLFunction que leyeron las tablas afectadas.
+ */
+public class InvalidarCacheFunction {
+
+    @FunctionName("InvalidarCacheRolesGraphQL")
+    public void run(
+            @EventGridTrigger(name = "eventGridEvent") String content,
+            final ExecutionContext context) {
+        CacheRespuestas.invalidarDesdeEventGrid(content, context.getLogger());
+    }
+}
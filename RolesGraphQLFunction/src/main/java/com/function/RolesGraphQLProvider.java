@@ -1,19 +1,34 @@
 package com.function;
 
+import com.function.comun.EjecutorBD;
+import com.function.comun.graphql.CacheRespuestas;
+import com.function.comun.graphql.CostoConsulta;
+import com.function.comun.graphql.DocumentosPreparados;
+import com.function.comun.graphql.ProveedorGraphQL;
+import com.function.comun.graphql.ResolversRoles;
+import com.function.comun.graphql.TiemposGraphQL;
 import graphql.GraphQL;
+import graphql.execution.instrumentation.ChainedInstrumentation;
 import graphql.schema.GraphQLSchema;
 import graphql.schema.idl.*;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+
+import org.dataloader.DataLoaderRegistry;
 
 /**
  * Proveedor para GraphQL de Roles.
- * Carga el esquema 'schema.graphqls' y define los resolvers que conectan con
- * RolDataFetcher.
+ * Carga el esquema de roles y sus resolvers desde el módulo común
+ * ({@link ResolversRoles}), que comparte con el esquema combinado del panel.
  */
-public class RolesGraphQLProvider {
+public class RolesGraphQLProvider implements ProveedorGraphQL {
 
+    /** Resolvers de roles; ejecutan las consultas JDBC fuera del hilo de la petición. */
+    private final ResolversRoles roles = new ResolversRoles(EjecutorBD.getInstancia());
+    /** Documentos parseados y validados, compartidos por todas las peticiones del worker. */
+    private final DocumentosPreparados documentos = DocumentosPreparados.desdeEntorno();
+    /** Latencias por fase y por resolver de este endpoint. */
+    private final TiemposGraphQL tiempos = TiemposGraphQL.desdeEntorno("roles");
+    /** Respuestas de consultas, invalidadas por las mutaciones y eventos de roles. */
+    private final CacheRespuestas cache = CacheRespuestas.desdeEntorno(ResolversRoles.TABLAS);
     private GraphQL graphQL;
 
     public RolesGraphQLProvider() {
@@ -23,56 +38,64 @@ public class RolesGraphQLProvider {
     private void init() {
         try {
             // Cargar el schema de roles
-            InputStream schemaStream = getClass().getResourceAsStream("/schema.graphqls");
-            if (schemaStream == null) {
-                throw new RuntimeException("No se encontró 'schema.graphqls' para roles en resources.");
-            }
-            Reader reader = new InputStreamReader(schemaStream);
-            TypeDefinitionRegistry typeRegistry = new SchemaParser().parse(reader);
+            TypeDefinitionRegistry typeRegistry = new SchemaParser().parse(ResolversRoles.esquema());
 
             // Construir el wiring
-            RuntimeWiring wiring = buildRuntimeWiring();
+            RuntimeWiring wiring = roles.cablear(RuntimeWiring.newRuntimeWiring()).build();
 
             // Crear el esquema ejecutable
             SchemaGenerator schemaGenerator = new SchemaGenerator();
             GraphQLSchema graphQLSchema = schemaGenerator.makeExecutableSchema(typeRegistry, wiring);
-            this.graphQL = GraphQL.newGraphQL(graphQLSchema).build();
+            this.graphQL = GraphQL.newGraphQL(graphQLSchema)
+                    .preparsedDocumentProvider(documentos)
+                    .instrumentation(new ChainedInstrumentation(
+                            // Las mutaciones abren una transacción y publican un evento: pesan más que una lectura
+                            CostoConsulta.desdeEntorno(ResolversRoles.PESOS),
+                            tiempos, cache))
+                    .build();
         } catch (Exception e) {
             throw new RuntimeException("Error al inicializar RolesGraphQLProvider: " + e.getMessage(), e);
         }
     }
 
-    private RuntimeWiring buildRuntimeWiring() {
-        // Instancia de RolDataFetcher que hará la conexión a la BD y la lógica CRUD
-        RolDataFetcher rolDF = new RolDataFetcher();
-
-        return RuntimeWiring.newRuntimeWiring()
-                .type("Query", builder -> builder
-                        .dataFetcher("rol", environment -> {
-                            int id = Integer.parseInt(environment.getArgument("id"));
-                            return rolDF.obtenerRolPorId(id);
-                        })
-                        .dataFetcher("roles", environment -> {
-                            return rolDF.listarRoles();
-                        }))
-                .type("Mutation", builder -> builder
-                        .dataFetcher("crearRol", environment -> {
-                            String rolNombre = environment.getArgument("rol");
-                            return rolDF.crearRol(rolNombre);
-                        })
-                        .dataFetcher("actualizarRol", environment -> {
-                            int id = Integer.parseInt(environment.getArgument("id"));
-                            String rolNombre = environment.getArgument("rol");
-                            return rolDF.actualizarRol(id, rolNombre);
-                        })
-                        .dataFetcher("eliminarRol", environment -> {
-                            int id = Integer.parseInt(environment.getArgument("id"));
-                            return rolDF.eliminarRol(id);
-                        }))
-                .build();
+    /**
+     * Crea el registro de DataLoaders de una petición. Cada ejecución usa el
+     * suyo: los ids se agrupan y se cachean solo dentro de la petición.
+     */
+    @Override
+    public DataLoaderRegistry nuevoRegistro() {
+        DataLoaderRegistry registro = new DataLoaderRegistry();
+        roles.registrarLoaders(registro);
+        return registro;
     }
 
+    @Override
     public GraphQL getGraphQL() {
         return graphQL;
     }
+
+    /**
+     * Retorna la caché de documentos, para exponer sus métricas.
+     */
+    @Override
+    public DocumentosPreparados getDocumentos() {
+        return documentos;
+    }
+
+    /**
+     * Retorna las latencias medidas, para registrar la serialización y
+     * exponer sus métricas.
+     */
+    @Override
+    public TiemposGraphQL getTiempos() {
+        return tiempos;
+    }
+
+    /**
+     * Retorna la caché de respuestas del endpoint.
+     */
+    @Override
+    public CacheRespuestas getCache() {
+        return cache;
+    }
 }
@@ -2,28 +2,26 @@ package com.function;
 
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.*;
+import com.function.comun.ConexionBD;
+import com.function.comun.EventoGrid;
+import com.function.comun.Outbox;
+import com.function.comun.OutboxRelay;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Map;
 import java.util.Optional;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.OffsetDateTime;
-import java.util.UUID;
-
 /**
  * Función serverless para actualizar un usuario
  * y enviar un evento a Azure Event Grid.
  */
 public class ActualizarUsuarioFunction {
 
-    private static final String EVENT_GRID_TOPIC_ENDPOINT = "https://topic-cloudnative2.eastus-1.eventgrid.azure.net/api/events";
-    private static final String EVENT_GRID_TOPIC_KEY = "C9MVwYnSdg8YinP6KPbsmkMjy2GsXAZCWGuu4G0gZxzomjtIX8BnJQQJ99BEACYeBjFXJ3w3AAABAZEGfSgJ";
+    static {
+        ConexionBD.precalentar();
+    }
 
     @FunctionName("ActualizarUsuario")
     public HttpResponseMessage run(
@@ -72,33 +70,36 @@ public class ActualizarUsuarioFunction {
         String nombre = parts[0].trim();
         String email = parts[1].trim();
 
-        // Recuperar variables de entorno para la conexión a la base de datos
-        String dbUrl = System.getenv("DB_URL");
-        String dbUser = System.getenv("DB_USER");
-        String dbPassword = System.getenv("DB_PASSWORD");
-
         String responseMessage;
         // Intentar establecer la conexión y actualizar el usuario
-        try (Connection connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
-            String sql = "UPDATE usuarios SET nombre = ?, email = ? WHERE id_usuario = ?";
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setString(1, nombre);
-                ps.setString(2, email);
-                ps.setInt(3, usuarioId);
-                int rowsAffected = ps.executeUpdate();
-                if (rowsAffected > 0) {
-                    responseMessage = "{\"mensaje\":\"Usuario actualizado exitosamente\", \"id\":" + usuarioId +
-                            ", \"nombre\":\"" + nombre + "\", \"email\":\"" + email + "\"}";
-
-                    // Enviar evento a Event Grid
-                    sendEventToEventGrid("UsuarioActualizado", usuarioId, nombre, email, context);
-                } else {
-                    responseMessage = "{\"error\":\"Usuario con id " + usuarioId + " no encontrado.\"}";
-                    return request.createResponseBuilder(HttpStatus.NOT_FOUND)
-                            .body(responseMessage)
-                            .header("Content-Type", "application/json")
-                            .build();
+        try (Connection connection = ConexionBD.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                String sql = "UPDATE usuarios SET nombre = ?, email = ? WHERE id_usuario = ?";
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setString(1, nombre);
+                    ps.setString(2, email);
+                    ps.setInt(3, usuarioId);
+                    int rowsAffected = ps.executeUpdate();
+                    if (rowsAffected > 0) {
+                        responseMessage = "{\"mensaje\":\"Usuario actualizado exitosamente\", \"id\":" + usuarioId +
+                                ", \"nombre\":\"" + nombre + "\", \"email\":\"" + email + "\"}";
+
+                        // Registrar el evento en el outbox, en la misma transacción
+                        Outbox.registrar(connection, EventoGrid.nuevo("UsuarioActualizado", "usuario/actualizado",
+                                Map.of("id", usuarioId, "nombre", nombre, "email", email)));
+                        connection.commit();
+                    } else {
+                        responseMessage = "{\"error\":\"Usuario con id " + usuarioId + " no encontrado.\"}";
+                        return request.createResponseBuilder(HttpStatus.NOT_FOUND)
+                                .body(responseMessage)
+                                .header("Content-Type", "application/json")
+                                .build();
+                    }
                 }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             context.getLogger().severe("Error SQL: " + e.getMessage());
@@ -109,50 +110,13 @@ public class ActualizarUsuarioFunction {
                     .build();
         }
 
+        // Publicar en segundo plano los eventos confirmados en el outbox
+        OutboxRelay.getInstancia().programarDrenado();
+
         // Retornar respuesta exitosa
         return request.createResponseBuilder(HttpStatus.OK)
                 .body(responseMessage)
                 .header("Content-Type", "application/json")
                 .build();
     }
-
-    private void sendEventToEventGrid(String eventType, int id, String nombre, String email, ExecutionContext context) {
-        try {
-            String eventId = UUID.randomUUID().toString();
-            String eventTime = OffsetDateTime.now().toString();
-
-            String jsonEvent = """
-                    [{
-                        "id": "%s",
-                        "eventType": "%s",
-                        "subject": "usuario/actualizado",
-                        "eventTime": "%s",
-                        "data": {
-                            "id": %d,
-                            "nombre": "%s",
-                            "email": "%s"
-                        },
-                        "dataVersion": "1.0"
-                    }]
-                    """.formatted(eventId, eventType, eventTime, id, nombre, email);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(EVENT_GRID_TOPIC_ENDPOINT))
-                    .header("aeg-sas-key", EVENT_GRID_TOPIC_KEY)
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonEvent))
-                    .build();
-
-            HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                    .thenAccept(response -> context.getLogger()
-                            .info("Evento enviado a Event Grid: " + response.statusCode()))
-                    .exceptionally(e -> {
-                        context.getLogger().severe("Error al enviar evento a Event Grid: " + e.getMessage());
-                        return null;
-                    });
-
-        } catch (Exception e) {
-            context.getLogger().severe("Excepción al construir evento: " + e.getMessage());
-        }
-    }
 }
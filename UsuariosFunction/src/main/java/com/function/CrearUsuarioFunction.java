@@ -2,24 +2,59 @@ package com.function;
 
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.*;
+import com.function.comun.ConexionBD;
+import com.function.comun.OutboxRelay;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 
 import java.sql.*;
-import java.util.Optional;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
  * Función serverless en Azure encargada de crear un nuevo usuario,
- * asignarle un rol por defecto y enviar un evento a Event Grid.
+ * asignarle sus roles iniciales y registrar el evento UsuarioCreado.
+ *
+ * Acepta un JSON {"nombre": ..., "email": ..., "roles": [1, 2]} o el formato
+ * anterior 'nombre,email'. Sin "roles" se asigna el rol por defecto; con una
+ * lista vacía, ninguno. La respuesta incluye el idUsuario generado.
  */
 public class CrearUsuarioFunction {
 
-        private static final String EVENT_GRID_TOPIC_ENDPOINT = "https://topic-cloudnative2.eastus-1.eventgrid.azure.net/api/events";
-        private static final String EVENT_GRID_TOPIC_KEY = "C9MVwYnSdg8YinP6KPbsmkMjy2GsXAZCWGuu4G0gZxzomjtIX8BnJQQJ99BEACYeBjFXJ3w3AAABAZEGfSgJ";
+        private static final Gson GSON = new Gson();
+
+        private static final int ROL_POR_DEFECTO = 3; // 👈 cambia este valor si el rol por defecto es otro
+
+        /**
+         * Cuerpo JSON de la solicitud.
+         */
+        static class Solicitud {
+                String nombre;
+                String email;
+                List<Integer> roles;
+        }
+
+        /**
+         * Bloque de creación. El data del evento se arma en el propio bloque
+         * porque el id recién se conoce ahí.
+         */
+        private static final String CREAR_USUARIO_PLSQL = "DECLARE v_id usuarios.id_usuario%TYPE; "
+                        + "BEGIN "
+                        + "INSERT INTO usuarios (nombre, email) VALUES (?, ?) RETURNING id_usuario INTO v_id; "
+                        + "INSERT INTO usuario_roles (usuario_id, rol_id) "
+                        + "SELECT v_id, r.rol_id FROM JSON_TABLE(?, '$[*]' COLUMNS (rol_id NUMBER PATH '$')) r; "
+                        + "INSERT INTO outbox_eventos (id_evento, tipo_evento, asunto, fecha_evento, data, version_data) "
+                        + "VALUES (?, 'UsuarioCreado', 'usuario/creado', ?, '{\"idUsuario\":' || v_id || '}', '1.0'); "
+                        + "? := v_id; "
+                        + "END;";
+
+        static {
+                ConexionBD.precalentar();
+        }
 
         @FunctionName("CrearUsuario")
         public HttpResponseMessage run(
@@ -37,114 +72,100 @@ public class CrearUsuarioFunction {
                                         .build();
                 }
 
-                String[] parts = requestBody.split(",");
-                if (parts.length < 2) {
+                Solicitud solicitud;
+                try {
+                        solicitud = leerSolicitud(requestBody);
+                } catch (JsonParseException e) {
+                        return request.createResponseBuilder(HttpStatus.BAD_REQUEST)
+                                        .body("{\"error\":\"JSON inválido. Se espera {nombre, email, roles}.\"}")
+                                        .header("Content-Type", "application/json")
+                                        .build();
+                }
+                if (solicitud == null) {
                         return request.createResponseBuilder(HttpStatus.BAD_REQUEST)
                                         .body("{\"error\":\"Formato incorrecto. Se espera 'nombre,email'.\"}")
                                         .header("Content-Type", "application/json")
                                         .build();
                 }
 
-                String nombre = parts[0].trim();
-                String email = parts[1].trim();
-
-                String dbUrl = System.getenv("DB_URL");
-                String dbUser = System.getenv("DB_USER");
-                String dbPassword = System.getenv("DB_PASSWORD");
-
-                String responseMessage;
-                int rolPorDefecto = 3; // 👈 cambia este valor si el rol por defecto es otro
-
-                try (Connection connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
-                        // 1. Insertar usuario
-                        String sql = "INSERT INTO usuarios (nombre, email) VALUES (?, ?)";
-                        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                                ps.setString(1, nombre);
-                                ps.setString(2, email);
-                                ps.executeUpdate();
-                        }
-
-                        // Luego obtén el último usuario
-                        int idUsuario = -1;
-                        String sqlLastId = "SELECT id_usuario FROM usuarios WHERE email = ? ORDER BY id_usuario DESC FETCH FIRST 1 ROWS ONLY";
-                        try (PreparedStatement psLast = connection.prepareStatement(sqlLastId)) {
-                                psLast.setString(1, email);
-                                try (ResultSet rs = psLast.executeQuery()) {
-                                        if (rs.next()) {
-                                                idUsuario = rs.getInt("id_usuario");
-                                        }
-                                }
-                        }
-
-                        if (idUsuario != -1) {
-                                // ✅ 2. Asignar rol por defecto
-                                String sqlAsignarRol = "INSERT INTO usuario_roles (usuario_id, rol_id) VALUES (?, ?)";
-                                try (PreparedStatement psRol = connection.prepareStatement(sqlAsignarRol)) {
-                                        psRol.setInt(1, idUsuario);
-                                        psRol.setInt(2, rolPorDefecto);
-                                        psRol.executeUpdate();
-                                }
-
-                                // ✅ 3. Enviar evento
-                                sendEventToEventGrid(idUsuario, context);
-
-                                responseMessage = "{\"mensaje\":\"Usuario creado y rol asignado exitosamente\", \"idUsuario\":"
-                                                + idUsuario + "}";
-                        } else {
-                                responseMessage = "{\"error\":\"No se pudo obtener el ID del nuevo usuario.\"}";
-                        }
+                String nombre = solicitud.nombre.trim();
+                String email = solicitud.email.trim();
+                // Sin repetidos: la clave primaria de usuario_roles es (usuario, rol)
+                List<Integer> roles = new ArrayList<>(new LinkedHashSet<>(
+                                solicitud.roles != null ? solicitud.roles : List.of(ROL_POR_DEFECTO)));
+                roles.remove(null);
 
+                int idUsuario;
+                try (Connection connection = ConexionBD.getConnection()) {
+                        idUsuario = crearUsuario(connection, nombre, email, roles);
                 } catch (SQLException e) {
                         context.getLogger().severe("Error SQL: " + e.getMessage());
-                        responseMessage = "{\"error\":\"Error al crear el usuario: " + e.getMessage() + "\"}";
+                        String responseMessage = "{\"error\":\"Error al crear el usuario: " + e.getMessage() + "\"}";
                         return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
                                         .body(responseMessage)
                                         .header("Content-Type", "application/json")
                                         .build();
                 }
 
+                // Publicar en segundo plano los eventos confirmados en el outbox
+                OutboxRelay.getInstancia().programarDrenado();
+
                 return request.createResponseBuilder(HttpStatus.OK)
-                                .body(responseMessage)
+                                .body(GSON.toJson(new UsuarioCreadoRespuesta(
+                                                "Usuario creado exitosamente", idUsuario, roles)))
                                 .header("Content-Type", "application/json")
                                 .build();
         }
 
-        private void sendEventToEventGrid(int idUsuario, ExecutionContext context) {
-                try {
-                        String eventId = UUID.randomUUID().toString();
-                        String eventTime = OffsetDateTime.now().toString();
-
-                        String jsonEvent = """
-                                        [{
-                                            "id": "%s",
-                                            "eventType": "UsuarioCreado",
-                                            "subject": "usuario/creado",
-                                            "eventTime": "%s",
-                                            "data": {
-                                                "idUsuario": %d
-                                            },
-                                            "dataVersion": "1.0"
-                                        }]
-                                        """.formatted(eventId, eventTime, idUsuario);
-
-                        HttpRequest request = HttpRequest.newBuilder()
-                                        .uri(URI.create(EVENT_GRID_TOPIC_ENDPOINT))
-                                        .header("aeg-sas-key", EVENT_GRID_TOPIC_KEY)
-                                        .header("Content-Type", "application/json")
-                                        .POST(HttpRequest.BodyPublishers.ofString(jsonEvent))
-                                        .build();
+        /**
+         * Interpreta el cuerpo JSON o 'nombre,email'.
+         *
+         * @return null si faltan el nombre o el email.
+         * @throws JsonParseException si el JSON es inválido.
+         */
+        static Solicitud leerSolicitud(String cuerpo) {
+                Solicitud solicitud;
+                if (cuerpo.startsWith("{")) {
+                        solicitud = GSON.fromJson(cuerpo, Solicitud.class);
+                } else {
+                        String[] parts = cuerpo.split(",");
+                        if (parts.length < 2) {
+                                return null;
+                        }
+                        solicitud = new Solicitud();
+                        solicitud.nombre = parts[0];
+                        solicitud.email = parts[1];
+                }
+                if (solicitud.nombre == null || solicitud.nombre.isBlank()
+                                || solicitud.email == null || solicitud.email.isBlank()) {
+                        return null;
+                }
+                return solicitud;
+        }
 
-                        HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                                        .thenAccept(response -> context.getLogger()
-                                                        .info("Evento UsuarioCreado enviado a Event Grid: "
-                                                                        + response.statusCode()))
-                                        .exceptionally(e -> {
-                                                context.getLogger().severe("Error al enviar evento: " + e.getMessage());
-                                                return null;
-                                        });
-
-                } catch (Exception e) {
-                        context.getLogger().severe("Excepción al construir evento: " + e.getMessage());
+        /**
+         * Inserta el usuario, le asigna sus roles y registra el evento
+         * UsuarioCreado en el outbox con un único bloque PL/SQL: el id se obtiene
+         * con RETURNING INTO, los roles se insertan con una sola sentencia desde
+         * un arreglo JSON (JSON_TABLE) y, con autocommit, el commit viaja en la
+         * misma llamada (un solo round trip, sin importar cuántos roles ni
+         * cuántos usuarios haya). Si una sentencia falla (por ejemplo, un rol
+         * inexistente), Oracle deshace el bloque completo.
+         *
+         * @return Id generado del nuevo usuario.
+         */
+        static int crearUsuario(Connection connection, String nombre, String email, List<Integer> roles)
+                        throws SQLException {
+                connection.setAutoCommit(true);
+                try (CallableStatement cs = connection.prepareCall(CREAR_USUARIO_PLSQL)) {
+                        cs.setString(1, nombre);
+                        cs.setString(2, email);
+                        cs.setString(3, GSON.toJson(roles));
+                        cs.setString(4, UUID.randomUUID().toString());
+                        cs.setString(5, OffsetDateTime.now().toString());
+                        cs.registerOutParameter(6, Types.INTEGER);
+                        cs.execute();
+                        return cs.getInt(6);
                 }
         }
 }
\ No newline at end of file
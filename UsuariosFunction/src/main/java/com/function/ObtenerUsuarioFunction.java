@@ -2,29 +2,26 @@ package com.function;
 
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.*;
+import com.function.comun.ConexionBD;
+import com.function.comun.EventGridPublisher;
+import com.function.comun.EventoGrid;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Map;
 import java.util.Optional;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.OffsetDateTime;
-import java.util.UUID;
-
 /**
  * Función serverless en Azure para consultar un usuario y enviar evento a Event
  * Grid.
  */
 public class ObtenerUsuarioFunction {
 
-    private static final String EVENT_GRID_TOPIC_ENDPOINT = "https://topic-cloudnative2.eastus-1.eventgrid.azure.net/api/events";
-    private static final String EVENT_GRID_TOPIC_KEY = "C9MVwYnSdg8YinP6KPbsmkMjy2GsXAZCWGuu4G0gZxzomjtIX8BnJQQJ99BEACYeBjFXJ3w3AAABAZEGfSgJ";
+    static {
+        ConexionBD.precalentar();
+    }
 
     @FunctionName("ObtenerUsuario")
     public HttpResponseMessage run(
@@ -53,16 +50,11 @@ public class ObtenerUsuarioFunction {
                     .build();
         }
 
-        // Recuperar las variables de entorno para la conexión a la base de datos
-        String dbUrl = System.getenv("DB_URL");
-        String dbUser = System.getenv("DB_USER");
-        String dbPassword = System.getenv("DB_PASSWORD");
-
         String nombre = null;
         String email = null;
 
         // Conectar a la base de datos y ejecutar una consulta SELECT
-        try (Connection connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
+        try (Connection connection = ConexionBD.getConnection()) {
             String sql = "SELECT nombre, email FROM usuarios WHERE id_usuario = ?";
             try (PreparedStatement ps = connection.prepareStatement(sql)) {
                 ps.setInt(1, userId);
@@ -72,7 +64,10 @@ public class ObtenerUsuarioFunction {
                         email = rs.getString("email");
 
                         // Enviar evento a Event Grid
-                        sendEventToEventGrid("UsuarioConsultado", userId, nombre, email, context);
+                        EventGridPublisher.getInstancia().publicar(
+                                EventoGrid.nuevo("UsuarioConsultado", "usuario/consultado",
+                                        Map.of("id", userId, "nombre", nombre, "email", email)),
+                                context.getLogger());
                     } else {
                         return request.createResponseBuilder(HttpStatus.NOT_FOUND)
                                 .body("{\"error\":\"Usuario con id " + userId + " no encontrado.\"}")
@@ -96,45 +91,4 @@ public class ObtenerUsuarioFunction {
                 .header("Content-Type", "application/json")
                 .build();
     }
-
-    private void sendEventToEventGrid(String eventType, int userId, String nombre, String email,
-            ExecutionContext context) {
-        try {
-            String eventId = UUID.randomUUID().toString();
-            String eventTime = OffsetDateTime.now().toString();
-
-            String jsonEvent = """
-                    [{
-                        "id": "%s",
-                        "eventType": "%s",
-                        "subject": "usuario/consultado",
-                        "eventTime": "%s",
-                        "data": {
-                            "id": %d,
-                            "nombre": "%s",
-                            "email": "%s"
-                        },
-                        "dataVersion": "1.0"
-                    }]
-                    """.formatted(eventId, eventType, eventTime, userId, nombre, email);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(EVENT_GRID_TOPIC_ENDPOINT))
-                    .header("aeg-sas-key", EVENT_GRID_TOPIC_KEY)
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonEvent))
-                    .build();
-
-            HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                    .thenAccept(response -> context.getLogger()
-                            .info("Evento enviado a Event Grid: " + response.statusCode()))
-                    .exceptionally(e -> {
-                        context.getLogger().severe("Error al enviar evento a Event Grid: " + e.getMessage());
-                        return null;
-                    });
-
-        } catch (Exception e) {
-            context.getLogger().severe("Excepción al construir evento: " + e.getMessage());
-        }
-    }
 }
@@ -0,0 +1,38 @@
+package com.function;
+
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.TimerTrigger;
+import com.function.comun.ConexionBD;
+import com.function.comun.OutboxRelay;
+
+import java.sql.SQLException;
+
+/**
+ * Función temporizada que publica en Event Grid los eventos pendientes del
+ * outbox. Es solo un respaldo: cada mutación ya programa un drenado al
+ * confirmar su transacción (OutboxRelay.programarDrenado), así que esto cubre
+ * los eventos que ese drenado no alcanzó a enviar (reinicio del worker o
+ * caída de Event Grid) y basta con correrlo una vez por minuto.
+ */
+public class RelayOutboxFunction {
+
+    static {
+        ConexionBD.precalentar();
+    }
+
+    @FunctionName("RelayOutbox")
+    public void run(
+            @TimerTrigger(name = "timer", schedule = "0 * * * * *") String timerInfo,
+            final ExecutionContext context) {
+
+        try {
+            int enviados = OutboxRelay.getInstancia().drenar();
+            if (enviados > 0) {
+                context.getLogger().info("Eventos del outbox publicados: " + enviados);
+            }
+        } catch (SQLException e) {
+            context.getLogger().severe("Error SQL al drenar el outbox: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.function;
+
+import java.util.List;
+
+/**
+ * Respuesta de CrearUsuario, serializada a JSON con Gson.
+ */
+public class UsuarioCreadoRespuesta {
+
+    private final String mensaje;
+    private final int idUsuario;
+    private final List<Integer> roles;
+
+    public UsuarioCreadoRespuesta(String mensaje, int idUsuario, List<Integer> roles) {
+        this.mensaje = mensaje;
+        this.idUsuario = idUsuario;
+        this.roles = roles;
+    }
+
+    public String getMensaje() {
+        return mensaje;
+    }
+
+    public int getIdUsuario() {
+        return idUsuario;
+    }
+
+    public List<Integer> getRoles() {
+        return roles;
+    }
+}
@@ -0,0 +1,128 @@
+package com.function;
+
+import com.function.comun.ConexionBD;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compara la latencia de crear un usuario con el camino anterior (INSERT,
+ * SELECT del id por email e INSERT del rol) y con el bloque PL/SQL de un solo
+ * round trip. El modo SampleTime reporta p50, p95 y p99 de cada camino.
+ *
+ * Escribe en usuarios, usuario_roles y outbox_eventos de la base indicada por
+ * DB_URL: ejecutar solo contra una base de pruebas. No corre con mvn test;
+ * se lanza con: mvn -f UsuariosFunction -Pbenchmark test-compile exec:exec
+ * Al terminar elimina, por id, exactamente las filas que creó.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrearUsuarioBenchmark {
+
+    private static final int ROL_POR_DEFECTO = 3;
+
+    private final String prefijo = "bench-" + System.nanoTime() + "-";
+    /** Usuarios creados por el benchmark, para borrarlos sin filtros por patrón. */
+    private final List<Integer> creados = new ArrayList<>();
+    private Connection connection;
+    private int secuencia;
+
+    @Setup
+    public void conectar() throws SQLException {
+        if (System.getenv("DB_URL") == null) {
+            throw new IllegalStateException("Definir DB_URL, DB_USER y DB_PASSWORD de una base de pruebas");
+        }
+        connection = ConexionBD.getConnection();
+    }
+
+    @Benchmark
+    public int crearUsuarioAnterior() throws SQLException {
+        int id = crearUsuarioAnterior(connection, "bench", prefijo + "a" + (secuencia++) + "@ejemplo.cl");
+        creados.add(id);
+        return id;
+    }
+
+    @Benchmark
+    public int crearUsuarioPlsql() throws SQLException {
+        int id = CrearUsuarioFunction.crearUsuario(connection, "bench", prefijo + "b" + (secuencia++) + "@ejemplo.cl",
+                List.of(ROL_POR_DEFECTO));
+        creados.add(id);
+        return id;
+    }
+
+    /**
+     * Camino anterior: tres sentencias y un commit.
+     */
+    private static int crearUsuarioAnterior(Connection connection, String nombre, String email)
+            throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO usuarios (nombre, email) VALUES (?, ?)")) {
+            ps.setString(1, nombre);
+            ps.setString(2, email);
+            ps.executeUpdate();
+        }
+        int idUsuario;
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT id_usuario FROM usuarios WHERE email = ? ORDER BY id_usuario DESC FETCH FIRST 1 ROWS ONLY")) {
+            ps.setString(1, email);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                idUsuario = rs.getInt("id_usuario");
+            }
+        }
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO usuario_roles (usuario_id, rol_id) VALUES (?, ?)")) {
+            ps.setInt(1, idUsuario);
+            ps.setInt(2, ROL_POR_DEFECTO);
+            ps.executeUpdate();
+        }
+        connection.commit();
+        return idUsuario;
+    }
+
+    @TearDown
+    public void limpiar() throws SQLException {
+        try {
+            connection.setAutoCommit(false);
+            borrar("DELETE FROM usuario_roles WHERE usuario_id = ?");
+            borrar("DELETE FROM outbox_eventos WHERE tipo_evento = 'UsuarioCreado' "
+                    + "AND TO_NUMBER(JSON_VALUE(data, '$.idUsuario')) = ?");
+            borrar("DELETE FROM usuarios WHERE id_usuario = ?");
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void borrar(String sql) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int id : creados) {
+                ps.setInt(1, id);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+}
@@ -1,20 +1,86 @@
 package com.function;
 
+import com.function.comun.EjecutorBD;
+import com.function.comun.graphql.CacheRespuestas;
+import com.function.comun.graphql.CostoConsulta;
+import com.function.comun.graphql.DocumentosPreparados;
+import com.function.comun.graphql.EsquemaCombinado;
+import com.function.comun.graphql.ProveedorGraphQL;
+import com.function.comun.graphql.ResolversRoles;
+import com.function.comun.graphql.TiemposGraphQL;
 import graphql.GraphQL;
+import graphql.execution.instrumentation.ChainedInstrumentation;
 import graphql.schema.GraphQLSchema;
 import graphql.schema.idl.*;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.dataloader.BatchLoader;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderFactory;
+import org.dataloader.DataLoaderRegistry;
 
 /**
  * Proveedor de GraphQL que carga el esquema y define los resolvers.
+ *
+ * Con {@code incluirRoles} arma el esquema combinado del panel: el de
+ * usuarios más el de roles del módulo común ({@link ResolversRoles}), para
+ * que una sola consulta traiga usuarios, sus roles asignados y el catálogo de
+ * roles.
  */
-public class GraphQLProvider {
+public class GraphQLProvider implements ProveedorGraphQL {
+
+    /** Nombre del DataLoader que agrupa las consultas usuario(id) de una petición. */
+    static final String USUARIO_LOADER = "usuario";
+    /** Nombre del DataLoader que carga los roles de todos los usuarios de una respuesta. */
+    static final String ROLES_USUARIO_LOADER = "rolesDeUsuario";
+    /** Las mutaciones abren una transacción y publican un evento: pesan más que una lectura. */
+    private static final Map<String, Integer> PESOS = Map.of(
+            "Mutation.crearUsuario", 10,
+            "Mutation.actualizarUsuario", 10,
+            "Mutation.eliminarUsuario", 10,
+            "Mutation.crearUsuarios", 10,
+            "Mutation.eliminarUsuarios", 10);
+    /** Tablas que leen o modifican los resolvers, para invalidar la caché de respuestas. */
+    private static final Map<String, Set<String>> TABLAS = Map.of(
+            "Query.usuario", Set.of("usuarios"),
+            "Query.usuarios", Set.of("usuarios"),
+            "Usuario.roles", Set.of("usuario_roles", "roles"),
+            "Mutation.crearUsuario", Set.of("usuarios"),
+            "Mutation.actualizarUsuario", Set.of("usuarios"),
+            "Mutation.eliminarUsuario", Set.of("usuarios", "usuario_roles"),
+            "Mutation.crearUsuarios", Set.of("usuarios"),
+            "Mutation.eliminarUsuarios", Set.of("usuarios", "usuario_roles"));
 
+    private final UsuarioDataFetcher usuarioDF = new UsuarioDataFetcher();
+    /** Ejecuta las consultas JDBC de los resolvers fuera del hilo de la petición. */
+    private final EjecutorBD bd = EjecutorBD.getInstancia();
+    /** Documentos parseados y validados, compartidos por todas las peticiones del worker. */
+    private final DocumentosPreparados documentos = DocumentosPreparados.desdeEntorno();
+    /** Resolvers de roles, solo en el esquema combinado del panel (si no, null). */
+    private final ResolversRoles roles;
+    /** Latencias por fase y por resolver de este endpoint. */
+    private final TiemposGraphQL tiempos;
+    /** Respuestas de consultas, invalidadas por tabla. */
+    private CacheRespuestas cache;
     private GraphQL graphQL;
 
     public GraphQLProvider() {
+        this(false);
+    }
+
+    /**
+     * @param incluirRoles Si es true, combina el esquema y los resolvers de
+     *                     roles (endpoint del panel).
+     */
+    public GraphQLProvider(boolean incluirRoles) {
+        this.roles = incluirRoles ? new ResolversRoles(bd) : null;
+        this.tiempos = TiemposGraphQL.desdeEntorno(incluirRoles ? "panel" : "usuarios");
         init();
     }
 
@@ -25,51 +91,126 @@ public class GraphQLProvider {
                 throw new RuntimeException("No se encontró 'schema.graphqls' en resources.");
             }
             Reader streamReader = new InputStreamReader(schemaStream);
-            TypeDefinitionRegistry typeRegistry = new SchemaParser().parse(streamReader);
-            RuntimeWiring wiring = buildRuntimeWiring();
-            GraphQLSchema graphQLSchema = new SchemaGenerator().makeExecutableSchema(typeRegistry, wiring);
-            graphQL = GraphQL.newGraphQL(graphQLSchema).build();
+            RuntimeWiring.Builder wiring = buildRuntimeWiring();
+            Map<String, Integer> pesos = new HashMap<>(PESOS);
+            Map<String, Set<String>> tablas = new HashMap<>(TABLAS);
+            TypeDefinitionRegistry typeRegistry;
+            if (roles == null) {
+                typeRegistry = new SchemaParser().parse(streamReader);
+            } else {
+                typeRegistry = EsquemaCombinado.combinar(List.of(streamReader, ResolversRoles.esquema()));
+                roles.cablear(wiring);
+                pesos.putAll(ResolversRoles.PESOS);
+                tablas.putAll(ResolversRoles.TABLAS);
+            }
+            cache = CacheRespuestas.desdeEntorno(tablas);
+            GraphQLSchema graphQLSchema = new SchemaGenerator().makeExecutableSchema(typeRegistry, wiring.build());
+            graphQL = GraphQL.newGraphQL(graphQLSchema)
+                    .preparsedDocumentProvider(documentos)
+                    .instrumentation(new ChainedInstrumentation(CostoConsulta.desdeEntorno(pesos), tiempos, cache))
+                    .build();
         } catch (Exception e) {
             throw new RuntimeException("Error al inicializar GraphQL: " + e.getMessage(), e);
         }
     }
 
-    private RuntimeWiring buildRuntimeWiring() {
-        UsuarioDataFetcher usuarioDF = new UsuarioDataFetcher();
-
+    private RuntimeWiring.Builder buildRuntimeWiring() {
         return RuntimeWiring.newRuntimeWiring()
                 .type("Query", builder -> builder
                         .dataFetcher("usuario", environment -> {
                             int id = Integer.parseInt(environment.getArgument("id"));
-                            return usuarioDF.obtenerUsuarioPorId(id);
+                            DataLoader<Integer, Map<String, Object>> loader = environment.getDataLoader(USUARIO_LOADER);
+                            return loader.load(id);
                         })
                         .dataFetcher("usuarios", environment -> {
-                            return usuarioDF.listarUsuarios();
+                            Integer first = environment.getArgument("first");
+                            String after = environment.getArgument("after");
+                            return bd.ejecutar(() -> usuarioDF.listarUsuarios(first, after));
+                        }))
+                .type("Usuario", builder -> builder
+                        .dataFetcher("roles", environment -> {
+                            Map<String, Object> usuario = environment.getSource();
+                            DataLoader<Integer, List<Map<String, Object>>> loader = environment
+                                    .getDataLoader(ROLES_USUARIO_LOADER);
+                            return loader.load(((Number) usuario.get("id")).intValue());
                         }))
                 .type("Mutation", builder -> builder
                         .dataFetcher("crearUsuario", environment -> {
                             String nombre = environment.getArgument("nombre");
                             String email = environment.getArgument("email");
-                            return usuarioDF.crearUsuario(nombre, email);
+                            return bd.ejecutar(() -> usuarioDF.crearUsuario(nombre, email));
                         })
                         .dataFetcher("actualizarUsuario", environment -> {
                             int id = Integer.parseInt(environment.getArgument("id"));
                             String nombre = environment.getArgument("nombre");
                             String email = environment.getArgument("email");
-                            return usuarioDF.actualizarUsuario(id, nombre, email);
+                            return bd.ejecutar(() -> usuarioDF.actualizarUsuario(id, nombre, email));
                         })
                         .dataFetcher("eliminarUsuario", environment -> {
                             int id = Integer.parseInt(environment.getArgument("id"));
-                            return usuarioDF.eliminarUsuario(id);
-                        }))
-                .build();
+                            return bd.ejecutar(() -> usuarioDF.eliminarUsuario(id));
+                        })
+                        .dataFetcher("crearUsuarios", environment -> {
+                            List<Map<String, Object>> input = environment.getArgument("input");
+                            return bd.ejecutar(() -> usuarioDF.crearUsuarios(input));
+                        })
+                        .dataFetcher("eliminarUsuarios", environment -> {
+                            List<Integer> ids = environment.<List<String>>getArgument("ids").stream()
+                                    .map(Integer::parseInt).toList();
+                            return bd.ejecutar(() -> usuarioDF.eliminarUsuarios(ids));
+                        }));
+    }
+
+    /**
+     * Crea el registro de DataLoaders de una petición. Cada ejecución usa el
+     * suyo: los ids se agrupan y se cachean solo dentro de la petición.
+     */
+    @Override
+    public DataLoaderRegistry nuevoRegistro() {
+        BatchLoader<Integer, Map<String, Object>> cargador = ids ->
+                bd.ejecutar(() -> usuarioDF.obtenerUsuariosPorIds(ids));
+        BatchLoader<Integer, List<Map<String, Object>>> cargadorRoles = ids ->
+                bd.ejecutar(() -> usuarioDF.obtenerRolesDeUsuarios(ids));
+        DataLoaderRegistry registro = new DataLoaderRegistry();
+        registro.register(USUARIO_LOADER, DataLoaderFactory.newDataLoader(cargador));
+        registro.register(ROLES_USUARIO_LOADER, DataLoaderFactory.newDataLoader(cargadorRoles));
+        if (roles != null) {
+            roles.registrarLoaders(registro);
+        }
+        return registro;
     }
 
     /**
      * Retorna la instancia configurada de GraphQL.
      */
+    @Override
     public GraphQL getGraphQL() {
         return graphQL;
     }
+
+    /**
+     * Retorna la caché de documentos, para exponer sus métricas.
+     */
+    @Override
+    public DocumentosPreparados getDocumentos() {
+        return documentos;
+    }
+
+    /**
+     * Retorna las latencias medidas, para registrar la serialización y
+     * exponer sus métricas.
+     */
+    @Override
+    public TiemposGraphQL getTiempos() {
+        return tiempos;
+    }
+
+    /**
+     * Retorna la caché de respuestas del endpoint.
+     */
+    @Override
+    public CacheRespuestas getCache() {
+        return cache;
+    }
 }
 // Fin del código
\ No newline at end of file
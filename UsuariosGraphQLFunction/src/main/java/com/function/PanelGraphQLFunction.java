@@ -0,0 +1,45 @@
+package com.function;
+
+import com.microsoft.azure.functions.*;
+import com.microsoft.azure.functions.annotation.*;
+import com.function.comun.ConexionBD;
+import com.function.comun.graphql.EndpointGraphQL;
+import java.util.Optional;
+
+/**
+ * Función Azure que expone el esquema combinado de usuarios y roles (panel),
+ * para que el panel se arme con una sola consulta en lugar de llamar a
+ * GraphQLFunction y a RolesGraphQLFunction por separado. Acepta el mismo
+ * formato que GraphQLFunction, incluidos los lotes de operaciones, y la misma
+ * caché de respuestas con ETag.
+ */
+public class PanelGraphQLFunction {
+
+    // Esquema de usuarios más el de roles del módulo común
+    private static final GraphQLProvider provider = new GraphQLProvider(true);
+    private static final EndpointGraphQL endpoint = EndpointGraphQL.desdeEntorno(provider);
+
+    static {
+        ConexionBD.precalentar();
+    }
+
+    @FunctionName("PanelGraphQLHandler")
+    public HttpResponseMessage run(
+            @HttpTrigger(name = "req", methods = {
+                    HttpMethod.POST }, authLevel = AuthorizationLevel.ANONYMOUS, route = "panelgraphql") HttpRequestMessage<Optional<String>> request,
+            final ExecutionContext context) {
+        return endpoint.atender(request, context.getLogger());
+    }
+
+    /**
+     * Métricas del worker: caché de documentos GraphQL, latencias por fase y
+     * por resolver, caché de respuestas y pool de conexiones.
+     */
+    @FunctionName("PanelGraphQLMetricas")
+    public HttpResponseMessage metricas(
+            @HttpTrigger(name = "req", methods = {
+                    HttpMethod.GET }, authLevel = AuthorizationLevel.FUNCTION, route = "panelgraphql/metricas") HttpRequestMessage<Optional<String>> request,
+            final ExecutionContext context) {
+        return endpoint.metricas(request);
+    }
+}
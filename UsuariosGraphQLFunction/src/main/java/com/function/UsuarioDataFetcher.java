@@ -1,6 +1,15 @@
 package com.function;
 
+import com.function.comun.ConexionBD;
+import com.function.comun.ConsultaPorIds;
+import com.function.comun.EventoGrid;
+import com.function.comun.MutacionMasiva;
+import com.function.comun.Outbox;
+import com.function.comun.OutboxRelay;
+import com.function.comun.Paginacion;
+
 import java.sql.*;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -9,124 +18,288 @@ import java.util.HashMap;
  * Clase encargada de los data fetchers (resolvers) para la entidad Usuario.
  * Aquí se implementan los métodos que conectan con la base de datos Oracle,
  * realizando consultas JDBC para CRUD.
+ *
+ * Las mutaciones registran en el outbox los mismos eventos que las funciones
+ * REST (UsuarioCreado, UsuarioActualizado, UsuarioEliminado), en su misma
+ * transacción, para que las demás Function Apps y vetefaas invaliden sus
+ * cachés.
  */
 public class UsuarioDataFetcher {
 
+    /** Tamaño de página cuando la consulta no indica 'first'. */
+    private static final int TAMANO_PAGINA = 50;
+
+    /**
+     * Obtiene varios usuarios con una sola consulta (WHERE id_usuario IN).
+     * Usado por el DataLoader: el resultado sigue el orden de 'ids' y tiene
+     * null para los ids que no existen.
+     */
+    public List<Map<String, Object>> obtenerUsuariosPorIds(List<Integer> ids) throws SQLException {
+        Map<Integer, Map<String, Object>> porId = new HashMap<>();
+        try (Connection conn = getConnection()) {
+            String sql = "SELECT id_usuario, nombre, email FROM usuarios WHERE id_usuario IN (%s)";
+            ConsultaPorIds.consultar(conn, sql, ids, rs -> {
+                Map<String, Object> usuario = new HashMap<>();
+                usuario.put("id", rs.getInt("id_usuario"));
+                usuario.put("nombre", rs.getString("nombre"));
+                usuario.put("email", rs.getString("email"));
+                porId.put(rs.getInt("id_usuario"), usuario);
+            });
+        }
+        List<Map<String, Object>> usuarios = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            usuarios.add(porId.get(id));
+        }
+        return usuarios;
+    }
+
+    /**
+     * Obtiene los roles de varios usuarios con un solo JOIN sobre
+     * usuario_roles y ROLES. Usado por el DataLoader del campo Usuario.roles:
+     * el resultado sigue el orden de 'ids' y tiene una lista vacía para los
+     * usuarios sin roles.
+     */
+    public List<List<Map<String, Object>>> obtenerRolesDeUsuarios(List<Integer> ids) throws SQLException {
+        Map<Integer, List<Map<String, Object>>> porUsuario = new HashMap<>();
+        try (Connection conn = getConnection()) {
+            String sql = "SELECT ur.usuario_id, r.id_rol, r.rol FROM usuario_roles ur "
+                    + "JOIN ROLES r ON r.id_rol = ur.rol_id "
+                    + "WHERE ur.usuario_id IN (%s) ORDER BY ur.usuario_id, r.id_rol";
+            ConsultaPorIds.consultar(conn, sql, ids, rs -> porUsuario
+                    .computeIfAbsent(rs.getInt("usuario_id"), k -> new ArrayList<>())
+                    .add(Map.of("id", rs.getInt("id_rol"), "rol", rs.getString("rol"))));
+        }
+        List<List<Map<String, Object>>> roles = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            roles.add(porUsuario.getOrDefault(id, List.of()));
+        }
+        return roles;
+    }
+
     /**
-     * Obtiene un usuario por su ID, retornando un Map con "id", "nombre" y "email".
+     * Lista una página de usuarios ordenados por id, a partir del cursor
+     * 'after' (paginación keyset sobre la PK). Solo se leen first + 1 filas,
+     * en un único viaje a la BD, sin importar el tamaño de la tabla.
      */
-    public Map<String, Object> obtenerUsuarioPorId(int id) throws SQLException {
+    public Map<String, Object> listarUsuarios(Integer first, String after) throws SQLException {
+        int tamano = Paginacion.tamano(first, TAMANO_PAGINA, Paginacion.TAMANO_MAXIMO);
+        int despuesDe = Paginacion.despuesDe(after, "usuario");
         try (Connection conn = getConnection()) {
-            String sql = "SELECT nombre, email FROM usuarios WHERE id_usuario = ?";
+            String sql = "SELECT id_usuario, nombre, email FROM usuarios WHERE id_usuario > ? "
+                    + "ORDER BY id_usuario FETCH FIRST ? ROWS ONLY";
             try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setInt(1, id);
+                ps.setInt(1, despuesDe);
+                ps.setInt(2, tamano + 1);
+                ps.setFetchSize(tamano + 1);
                 try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) {
+                    List<Map<String, Object>> usuarios = new ArrayList<>(tamano + 1);
+                    while (rs.next()) {
                         Map<String, Object> usuario = new HashMap<>();
-                        usuario.put("id", id);
+                        usuario.put("id", rs.getInt("id_usuario"));
                         usuario.put("nombre", rs.getString("nombre"));
                         usuario.put("email", rs.getString("email"));
-                        return usuario;
+                        usuarios.add(usuario);
                     }
+                    return Paginacion.conexion(usuarios, tamano, "usuario");
                 }
             }
         }
-        return null;
     }
 
     /**
-     * Lista todos los usuarios (demo: sin paginación).
+     * Crea un usuario insertando (nombre, email) en la BD.
      */
-    public List<Map<String, Object>> listarUsuarios() throws SQLException {
+    public Map<String, Object> crearUsuario(String nombre, String email) throws SQLException {
+        Map<String, Object> user = null;
         try (Connection conn = getConnection()) {
-            String sql = "SELECT id_usuario, nombre, email FROM usuarios";
-            try (PreparedStatement ps = conn.prepareStatement(sql);
-                    ResultSet rs = ps.executeQuery()) {
-                List<Map<String, Object>> usuarios = new java.util.ArrayList<>();
-                while (rs.next()) {
-                    Map<String, Object> usuario = new HashMap<>();
-                    usuario.put("id", rs.getInt("id_usuario"));
-                    usuario.put("nombre", rs.getString("nombre"));
-                    usuario.put("email", rs.getString("email"));
-                    usuarios.add(usuario);
+            conn.setAutoCommit(false);
+            try {
+                String sql = "INSERT INTO usuarios (nombre, email) VALUES (?, ?)";
+                try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, nombre);
+                    ps.setString(2, email);
+                    int rows = ps.executeUpdate();
+                    if (rows > 0) {
+                        try (ResultSet keys = ps.getGeneratedKeys()) {
+                            if (keys.next()) {
+                                int id = keys.getInt(1);
+                                user = new HashMap<>();
+                                user.put("id", id);
+                                user.put("nombre", nombre);
+                                user.put("email", email);
+                            }
+                        }
+                    }
+                }
+                if (user == null) {
+                    throw new SQLException("No se pudo crear el usuario en la BD.");
                 }
-                return usuarios;
+                // Registrar el evento en el outbox, en la misma transacción
+                Outbox.registrar(conn, EventoGrid.nuevo("UsuarioCreado", "usuario/creado",
+                        Map.of("idUsuario", user.get("id"))));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
         }
+        OutboxRelay.getInstancia().programarDrenado();
+        return user;
     }
 
     /**
-     * Crea un usuario insertando (nombre, email) en la BD.
+     * Actualiza un usuario existente.
      */
-    public Map<String, Object> crearUsuario(String nombre, String email) throws SQLException {
+    public Map<String, Object> actualizarUsuario(int id, String nombre, String email) throws SQLException {
         try (Connection conn = getConnection()) {
-            String sql = "INSERT INTO usuarios (nombre, email) VALUES (?, ?)";
-            try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                ps.setString(1, nombre);
-                ps.setString(2, email);
-                int rows = ps.executeUpdate();
-                if (rows > 0) {
-                    try (ResultSet keys = ps.getGeneratedKeys()) {
-                        if (keys.next()) {
-                            int id = keys.getInt(1);
-                            Map<String, Object> user = new HashMap<>();
-                            user.put("id", id);
-                            user.put("nombre", nombre);
-                            user.put("email", email);
-                            return user;
-                        }
+            conn.setAutoCommit(false);
+            try {
+                String sql = "UPDATE usuarios SET nombre = ?, email = ? WHERE id_usuario = ?";
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, nombre);
+                    ps.setString(2, email);
+                    ps.setInt(3, id);
+                    if (ps.executeUpdate() == 0) {
+                        throw new SQLException("No se pudo actualizar el usuario con id " + id);
                     }
                 }
+                // Registrar el evento en el outbox, en la misma transacción
+                Outbox.registrar(conn, EventoGrid.nuevo("UsuarioActualizado", "usuario/actualizado",
+                        Map.of("id", id, "nombre", nombre, "email", email)));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
         }
-        throw new SQLException("No se pudo crear el usuario en la BD.");
+        OutboxRelay.getInstancia().programarDrenado();
+        Map<String, Object> user = new HashMap<>();
+        user.put("id", id);
+        user.put("nombre", nombre);
+        user.put("email", email);
+        return user;
     }
 
     /**
-     * Actualiza un usuario existente.
+     * Elimina un usuario por su ID. Retorna true si se eliminó con éxito.
      */
-    public Map<String, Object> actualizarUsuario(int id, String nombre, String email) throws SQLException {
+    public boolean eliminarUsuario(int id) throws SQLException {
         try (Connection conn = getConnection()) {
-            String sql = "UPDATE usuarios SET nombre = ?, email = ? WHERE id_usuario = ?";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, nombre);
-                ps.setString(2, email);
-                ps.setInt(3, id);
-                int rows = ps.executeUpdate();
-                if (rows > 0) {
+            conn.setAutoCommit(false);
+            try {
+                String sql = "DELETE FROM usuarios WHERE id_usuario = ?";
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, id);
+                    if (ps.executeUpdate() == 0) {
+                        conn.rollback();
+                        return false;
+                    }
+                }
+                // Registrar el evento en el outbox, en la misma transacción
+                Outbox.registrar(conn, EventoGrid.nuevo("UsuarioEliminado", "usuario/eliminado", Map.of("id", id)));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        OutboxRelay.getInstancia().programarDrenado();
+        return true;
+    }
+
+    /**
+     * Crea varios usuarios en una sola transacción con executeBatch, en vez
+     * de una conexión por usuario. Los ids se reservan antes de la secuencia
+     * de identidad de la tabla. Retorna un resultado por elemento, en el
+     * orden de la entrada, con el usuario creado o el error (por ejemplo, un
+     * email repetido).
+     */
+    public List<Map<String, Object>> crearUsuarios(List<Map<String, Object>> input) throws SQLException {
+        if (input.isEmpty()) {
+            return List.of();
+        }
+        try (Connection conn = getConnection()) {
+            List<Integer> ids = MutacionMasiva.reservarIds(conn, "USUARIOS", "ID_USUARIO", input.size());
+            String sql = "INSERT INTO usuarios (id_usuario, nombre, email) VALUES (?, ?, ?)";
+            MutacionMasiva.Resultado resultado = MutacionMasiva.ejecutar(conn, List.of(sql), input.size(),
+                    (ps, i) -> {
+                        ps.setInt(1, ids.get(i));
+                        ps.setString(2, (String) input.get(i).get("nombre"));
+                        ps.setString(3, (String) input.get(i).get("email"));
+                    },
+                    r -> {
+                        List<EventoGrid> eventos = new ArrayList<>();
+                        for (int i = 0; i < input.size(); i++) {
+                            if (r.exitoso(i)) {
+                                eventos.add(EventoGrid.nuevo("UsuarioCreado", "usuario/creado",
+                                        Map.of("idUsuario", ids.get(i))));
+                            }
+                        }
+                        return eventos;
+                    });
+            OutboxRelay.getInstancia().programarDrenado();
+            List<Map<String, Object>> resultados = new ArrayList<>(input.size());
+            for (int i = 0; i < input.size(); i++) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("indice", i);
+                if (resultado.exitoso(i)) {
                     Map<String, Object> user = new HashMap<>();
-                    user.put("id", id);
-                    user.put("nombre", nombre);
-                    user.put("email", email);
-                    return user;
+                    user.put("id", ids.get(i));
+                    user.put("nombre", input.get(i).get("nombre"));
+                    user.put("email", input.get(i).get("email"));
+                    item.put("id", ids.get(i));
+                    item.put("usuario", user);
+                } else {
+                    item.put("error", resultado.errores()[i]);
                 }
+                resultados.add(item);
             }
+            return resultados;
         }
-        throw new SQLException("No se pudo actualizar el usuario con id " + id);
     }
 
     /**
-     * Elimina un usuario por su ID. Retorna true si se eliminó con éxito.
+     * Elimina varios usuarios en una sola transacción con executeBatch.
+     * Retorna un resultado por id, en el mismo orden.
      */
-    public boolean eliminarUsuario(int id) throws SQLException {
+    public List<Map<String, Object>> eliminarUsuarios(List<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
         try (Connection conn = getConnection()) {
             String sql = "DELETE FROM usuarios WHERE id_usuario = ?";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setInt(1, id);
-                int rows = ps.executeUpdate();
-                return rows > 0;
+            MutacionMasiva.Resultado resultado = MutacionMasiva.ejecutar(conn, List.of(sql), ids.size(),
+                    (ps, i) -> ps.setInt(1, ids.get(i)),
+                    r -> {
+                        List<EventoGrid> eventos = new ArrayList<>();
+                        for (int i = 0; i < ids.size(); i++) {
+                            if (r.exitoso(i) && r.filas()[i] != 0) {
+                                eventos.add(EventoGrid.nuevo("UsuarioEliminado", "usuario/eliminado",
+                                        Map.of("id", ids.get(i))));
+                            }
+                        }
+                        return eventos;
+                    });
+            OutboxRelay.getInstancia().programarDrenado();
+            List<Map<String, Object>> resultados = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("indice", i);
+                item.put("id", ids.get(i));
+                // SUCCESS_NO_INFO (-2) también cuenta como eliminado
+                item.put("eliminado", resultado.exitoso(i) && resultado.filas()[i] != 0);
+                item.put("error", resultado.errores()[i]);
+                resultados.add(item);
             }
+            return resultados;
         }
     }
 
     /**
-     * Helper para obtener la conexión JDBC usando variables de entorno
-     * DB_URL, DB_USER, DB_PASSWORD.
+     * Helper para obtener una conexión del pool compartido (ver ConexionBD),
+     * configurado con las variables de entorno DB_URL, DB_USER, DB_PASSWORD.
      */
     private Connection getConnection() throws SQLException {
-        String dbUrl = System.getenv("DB_URL");
-        String dbUser = System.getenv("DB_USER");
-        String dbPassword = System.getenv("DB_PASSWORD");
-        return DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+        return ConexionBD.getConnection();
     }
 }
@@ -0,0 +1,151 @@
+package proyecto.vetefaas.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Cliente HTTP para las llamadas a las funciones de Azure (REST y GraphQL).
+ *
+ * Por defecto usa Apache HttpClient 5 con un pool de conexiones keep-alive
+ * por host, timeouts de conexión y lectura, y respuestas gzip (el cliente
+ * envía Accept-Encoding y descomprime). Con vetefaas.http.http2=true usa el
+ * HttpClient del JDK, que multiplexa las peticiones sobre una conexión HTTP/2
+ * por host (sin gzip ni métricas de pool).
+ *
+ * Métricas (actuator): http.client.requests por host (client.name) y URI,
+ * httpcomponents.httpclient.pool.* para el pool completo y
+ * vetefaas.http.pool.conexiones por host y estado (leased, available,
+ * pending).
+ */
+@Configuration
+public class ClienteHttpConfig {
+
+    @Value("${vetefaas.http.conexiones-por-host:20}")
+    private int conexionesPorHost;
+
+    @Value("${vetefaas.http.conexiones-total:50}")
+    private int conexionesTotal;
+
+    @Value("${vetefaas.http.timeout-conexion-ms:3000}")
+    private long timeoutConexionMs;
+
+    // Holgado: el arranque en frío de una función puede tardar varios segundos
+    @Value("${vetefaas.http.timeout-lectura-ms:30000}")
+    private long timeoutLecturaMs;
+
+    // Menor que el timeout de inactividad del balanceador de Azure (4 minutos)
+    @Value("${vetefaas.http.keep-alive-s:60}")
+    private long keepAliveS;
+
+    @Value("${vetefaas.http.http2:false}")
+    private boolean http2;
+
+    // Hosts con gauges registrados
+    private final Set<String> hostsRegistrados = ConcurrentHashMap.newKeySet();
+
+    @Bean
+    public ClientHttpRequestFactory clienteHttp(MeterRegistry registry) {
+        if (http2) {
+            HttpClient cliente = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(Duration.ofMillis(timeoutConexionMs))
+                    .build();
+            JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(cliente);
+            factory.setReadTimeout(Duration.ofMillis(timeoutLecturaMs));
+            return factory;
+        }
+
+        PoolingHttpClientConnectionManager pool = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnPerRoute(conexionesPorHost)
+                .setMaxConnTotal(conexionesTotal)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(timeoutConexionMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(timeoutLecturaMs))
+                        // Renovar las conexiones de vez en cuando para seguir cambios de DNS
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(pool, "vetefaas").bindTo(registry);
+
+        return new HttpComponentsClientHttpRequestFactory(HttpClients.custom()
+                .setConnectionManager(pool)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        // Espera máxima por una conexión libre del pool
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(timeoutConexionMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(timeoutLecturaMs))
+                        .setConnectionKeepAlive(TimeValue.ofSeconds(keepAliveS))
+                        .build())
+                .evictIdleConnections(TimeValue.ofSeconds(keepAliveS))
+                .addRequestInterceptorFirst((request, entity, context) -> {
+                    if (request.getAuthority() != null) {
+                        registrarHost(registry, pool, request.getAuthority().getHostName());
+                    }
+                })
+                .build());
+    }
+
+    /**
+     * RestTemplate del servicio. Se arma con el RestTemplateBuilder de Spring
+     * Boot para que registre la latencia de cada petición.
+     */
+    @Bean
+    public RestTemplate restTemplate(RestTemplateBuilder builder, ClientHttpRequestFactory clienteHttp) {
+        return builder.requestFactory(() -> clienteHttp).build();
+    }
+
+    /**
+     * Registra los gauges del pool de un host la primera vez que se le hace
+     * una petición (los hosts vienen de la configuración y de URLs fijas).
+     */
+    private void registrarHost(MeterRegistry registry, PoolingHttpClientConnectionManager pool, String host) {
+        if (!hostsRegistrados.add(host)) {
+            return;
+        }
+        registrarGauge(registry, pool, host, "leased", PoolStats::getLeased);
+        registrarGauge(registry, pool, host, "available", PoolStats::getAvailable);
+        registrarGauge(registry, pool, host, "pending", PoolStats::getPending);
+    }
+
+    private static void registrarGauge(MeterRegistry registry, PoolingHttpClientConnectionManager pool,
+            String host, String estado, ToIntFunction<PoolStats> valor) {
+        Gauge.builder("vetefaas.http.pool.conexiones", pool, p -> {
+            int total = 0;
+            // Una ruta por esquema y puerto del host
+            for (HttpRoute ruta : p.getRoutes()) {
+                if (host.equals(ruta.getTargetHost().getHostName())) {
+                    total += valor.applyAsInt(p.getStats(ruta));
+                }
+            }
+            return total;
+        })
+                .tag("host", host)
+                .tag("estado", estado)
+                .description("Conexiones del pool HTTP hacia el host")
+                .register(registry);
+    }
+}
@@ -0,0 +1,63 @@
+package proyecto.vetefaas.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import proyecto.vetefaas.service.AzureFunctionService;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Webhook de Event Grid: invalida la caché de lectura cuando las funciones
+ * publican cambios hechos por otros clientes. Se suscribe al tópico de
+ * eventos con la URL https://&lt;app&gt;/api/eventos?clave=&lt;vetefaas.cache.clave-eventos&gt;.
+ * Sin clave configurada el endpoint queda deshabilitado (404).
+ *
+ * Las mutaciones GraphQL no publican eventos: sus cambios se ven al cumplirse
+ * vetefaas.cache.refresco-s (o ttl-s).
+ */
+@RestController
+@RequestMapping("/api/eventos")
+public class EventosCacheController {
+
+    private static final String VALIDACION = "Microsoft.EventGrid.SubscriptionValidationEvent";
+
+    private final AzureFunctionService azureService;
+
+    // Vacía: webhook deshabilitado
+    @Value("${vetefaas.cache.clave-eventos:}")
+    private String claveEventos;
+
+    public EventosCacheController(AzureFunctionService azureService) {
+        this.azureService = azureService;
+    }
+
+    @PostMapping
+    @SuppressWarnings("unchecked")
+    public ResponseEntity<Object> recibir(@RequestParam(name = "clave", required = false) String clave,
+            @RequestBody List<Map<String, Object>> eventos) {
+        if (claveEventos.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        // Comparación en tiempo constante, para no filtrar la clave por latencia
+        if (clave == null || !MessageDigest.isEqual(claveEventos.getBytes(StandardCharsets.UTF_8),
+                clave.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        for (Map<String, Object> evento : eventos) {
+            String tipo = (String) evento.get("eventType");
+            Map<String, Object> data = (Map<String, Object>) evento.get("data");
+            // Alta de la suscripción: Event Grid espera el código de validación de vuelta
+            if (VALIDACION.equals(tipo) && data != null) {
+                return ResponseEntity.ok(Map.of("validationResponse", data.get("validationCode")));
+            }
+            azureService.invalidarPorEvento(tipo, data);
+        }
+        return ResponseEntity.ok().build();
+    }
+}
@@ -19,15 +19,19 @@ public class PanelCombinadoController {
     public String mostrarModo(@PathVariable String tipo, Model model) {
         model.addAttribute("modo", tipo);
 
+        AzureFunctionService.Panel panel;
         if ("graphql".equalsIgnoreCase(tipo)) {
-            model.addAttribute("usuarios", azureService.obtenerUsuariosGraphql());
-            model.addAttribute("roles", azureService.obtenerRolesGraphql());
+            // Una sola consulta al esquema combinado trae usuarios y roles
+            panel = azureService.obtenerPanelGraphql();
         } else if ("rest".equalsIgnoreCase(tipo)) {
-            model.addAttribute("usuarios", azureService.obtenerUsuariosRest());
-            model.addAttribute("roles", azureService.obtenerRolesRest());
+            // Usuarios y roles se piden en paralelo
+            panel = azureService.obtenerPanelRest();
         } else {
             return "redirect:/";
         }
+        model.addAttribute("usuarios", panel.usuarios());
+        model.addAttribute("roles", panel.roles());
+        model.addAttribute("incompletos", panel.incompletos());
 
         return "panel_combinado";
     }
@@ -1,9 +1,13 @@
 package proyecto.vetefaas.model;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class Usuario {
     private Integer id;
     private String nombre;
     private String email;
+    private List<Rol> roles = new ArrayList<>();
 
     public Usuario() {
     }
@@ -39,6 +43,14 @@ public class Usuario {
         this.email = email;
     }
 
+    public List<Rol> getRoles() {
+        return roles;
+    }
+
+    public void setRoles(List<Rol> roles) {
+        this.roles = roles;
+    }
+
     @Override
     public String toString() {
         return "Usuario{" +
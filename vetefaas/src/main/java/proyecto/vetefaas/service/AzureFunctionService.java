@@ -1,5 +1,9 @@
 package proyecto.vetefaas.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
@@ -7,17 +11,36 @@ import org.springframework.web.client.RestTemplate;
 import proyecto.vetefaas.model.Usuario;
 import proyecto.vetefaas.model.Rol;
 
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Service
 public class AzureFunctionService {
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private static final Logger log = LoggerFactory.getLogger(AzureFunctionService.class);
+
+    // Cliente con pool de conexiones y métricas (ver ClienteHttpConfig)
+    private final RestTemplate restTemplate;
 
     // ------------------ REST Usuarios ------------------
     private final String USUARIOS_REST = "https://usuariosfunction.azurewebsites.net/api";
     private final String CREAR_USUARIO_URL = USUARIOS_REST + "/crearusuario";
+    // Rol que se asigna a los usuarios creados desde el formulario
+    private static final int ROL_POR_DEFECTO = 3;
     private final String ACTUALIZAR_USUARIO_URL = USUARIOS_REST + "/actualizarusuario?id={id}";
     private final String ELIMINAR_USUARIO_URL = USUARIOS_REST + "/eliminarusuario?id={id}";
     private final String OBTENER_USUARIO_URL = USUARIOS_REST + "/obtenerusuario?id={id}";
@@ -28,15 +51,89 @@ public class AzureFunctionService {
     private final String ACTUALIZAR_ROL_URL = ROLES_REST + "/actualizarrol?id={id}";
     private final String ELIMINAR_ROL_URL = ROLES_REST + "/eliminarrol?id={id}";
     private final String OBTENER_ROL_URL = ROLES_REST + "/obtenerrol?id={id}";
-    private final String ASIGNAR_ROL_URL = ROLES_REST + "/asignarrol";
 
     // ------------------ GraphQL ------------------
+    private static final int TAMANO_PAGINA_GRAPHQL = 500;
+
+    // Hash SHA-256 de cada consulta, para Automatic Persisted Queries
+    private final Map<String, String> hashesConsultas = new ConcurrentHashMap<>();
+
     @Value("${azure.functions.graphql-url-usuarios}")
     private String graphqlUsuariosUrl;
 
     @Value("${azure.functions.graphql-url-roles}")
     private String graphqlRolesUrl;
 
+    // Esquema combinado de usuarios y roles: el panel se arma con una sola consulta
+    @Value("${azure.functions.graphql-url-panel}")
+    private String graphqlPanelUrl;
+
+    // Plazo para armar el panel: lo que no llegue a tiempo se muestra como no disponible
+    @Value("${vetefaas.panel.plazo-ms:5000}")
+    private long plazoPanelMs;
+
+    // Hilos para las llamadas remotas del panel, que se hacen en paralelo
+    private final ExecutorService llamadasRemotas;
+
+    // ------------------ Caché de lectura ------------------
+    // Clave de las cachés de listados, que tienen una sola entrada
+    private static final String TODOS = "todos";
+
+    private final CacheLectura<String, List<Usuario>> listaUsuarios;
+    private final CacheLectura<String, List<Rol>> listaRoles;
+    private final CacheLectura<String, Panel> panelCombinado;
+    private final CacheLectura<Integer, Usuario> usuarios;
+    private final CacheLectura<Integer, Rol> roles;
+
+    // Peticiones de respaldo para las lecturas (arranques en frío)
+    private final CoberturaLecturas cobertura;
+
+    public AzureFunctionService(RestTemplate restTemplate, MeterRegistry registry, CoberturaLecturas cobertura,
+            @Value("${vetefaas.panel.hilos:16}") int hilosPanel,
+            @Value("${vetefaas.cache.maximo:1000}") long maximoCache,
+            @Value("${vetefaas.cache.ttl-s:300}") long ttlCacheS,
+            @Value("${vetefaas.cache.refresco-s:30}") long refrescoCacheS) {
+        this.restTemplate = restTemplate;
+        this.cobertura = cobertura;
+        AtomicInteger contador = new AtomicInteger();
+        this.llamadasRemotas = new ThreadPoolExecutor(hilosPanel, hilosPanel, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread hilo = new Thread(r, "panel-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+        ((ThreadPoolExecutor) llamadasRemotas).allowCoreThreadTimeOut(true);
+
+        // Las recargas en segundo plano usan los mismos hilos que el panel
+        Duration ttl = Duration.ofSeconds(ttlCacheS);
+        Duration refresco = Duration.ofSeconds(refrescoCacheS);
+        this.listaUsuarios = new CacheLectura<>("usuarios.lista", maximoCache, ttl, refresco, llamadasRemotas,
+                registry, clave -> consultarUsuariosGraphql());
+        this.listaRoles = new CacheLectura<>("roles.lista", maximoCache, ttl, refresco, llamadasRemotas,
+                registry, clave -> consultarRolesGraphql());
+        this.panelCombinado = new CacheLectura<>("panel", maximoCache, ttl, refresco, llamadasRemotas,
+                registry, clave -> consultarPanelGraphql());
+        this.usuarios = new CacheLectura<>("usuarios", maximoCache, ttl, refresco, llamadasRemotas, registry,
+                id -> cobertura.ejecutar("obtenerusuario",
+                        () -> restTemplate.getForObject(OBTENER_USUARIO_URL, Usuario.class, id)));
+        this.roles = new CacheLectura<>("roles", maximoCache, ttl, refresco, llamadasRemotas, registry,
+                id -> cobertura.ejecutar("obtenerrol",
+                        () -> restTemplate.getForObject(OBTENER_ROL_URL, Rol.class, id)));
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        llamadasRemotas.shutdownNow();
+    }
+
+    /**
+     * Datos del panel combinado: usuarios (con sus roles) y catálogo de roles.
+     * {@code incompletos} nombra las secciones ("usuarios", "roles") que no
+     * respondieron dentro del plazo o fallaron; su listado viene vacío.
+     */
+    public record Panel(List<Usuario> usuarios, List<Rol> roles, List<String> incompletos) {
+    }
+
     // ------------------ CRUD Usuarios REST ------------------
     /*
      * public void crearUsuario(Usuario usuario) {
@@ -49,27 +146,36 @@ public class AzureFunctionService {
      * }
      */
 
-    public void crearUsuario(Usuario usuario) {
-        String body = usuario.getNombre() + "," + usuario.getEmail();
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.TEXT_PLAIN);
-        HttpEntity<String> entity = new HttpEntity<>(body, headers);
-
-        restTemplate.postForEntity(CREAR_USUARIO_URL, entity, String.class);
-
-        List<Usuario> usuarios = obtenerTodosLosUsuarios();
-        if (!usuarios.isEmpty()) {
-            Usuario ultimoUsuario = usuarios.stream()
-                    .max(Comparator.comparingInt(Usuario::getId))
-                    .orElseThrow();
+    public int crearUsuario(Usuario usuario) {
+        return crearUsuario(usuario, List.of(ROL_POR_DEFECTO));
+    }
 
-            int usuarioId = ultimoUsuario.getId();
-            int rolPorDefecto = 3;
+    /**
+     * Crea el usuario con sus roles iniciales en una sola llamada a la
+     * función, que responde con el id generado: el costo no depende de
+     * cuántos usuarios existan.
+     *
+     * @return Id del nuevo usuario, que también queda en {@code usuario}.
+     */
+    @SuppressWarnings("unchecked")
+    public int crearUsuario(Usuario usuario, List<Integer> roles) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("nombre", usuario.getNombre());
+        body.put("email", usuario.getEmail());
+        body.put("roles", roles);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
 
-            String asignarBody = usuarioId + "," + rolPorDefecto;
-            HttpEntity<String> asignarEntity = new HttpEntity<>(asignarBody, headers);
-            restTemplate.postForEntity(ASIGNAR_ROL_URL, asignarEntity, String.class);
+        Map<String, Object> respuesta = restTemplate.postForObject(CREAR_USUARIO_URL,
+                new HttpEntity<>(body, headers), Map.class);
+        invalidarListadosUsuarios();
+        if (respuesta == null || respuesta.get("idUsuario") == null) {
+            throw new IllegalStateException("CrearUsuario no retornó el id del usuario: " + respuesta);
         }
+
+        int idUsuario = idEntero(respuesta.get("idUsuario"));
+        usuario.setId(idUsuario);
+        return idUsuario;
     }
 
     public void actualizarUsuario(Usuario usuario) {
@@ -79,14 +185,18 @@ public class AzureFunctionService {
         HttpEntity<String> entity = new HttpEntity<>(body, headers);
 
         restTemplate.exchange(ACTUALIZAR_USUARIO_URL, HttpMethod.PUT, entity, String.class, usuario.getId());
+        usuarios.invalidar(usuario.getId());
+        invalidarListadosUsuarios();
     }
 
     public void eliminarUsuario(int id) {
         restTemplate.exchange(ELIMINAR_USUARIO_URL, HttpMethod.DELETE, null, String.class, id);
+        usuarios.invalidar(id);
+        invalidarListadosUsuarios();
     }
 
     public Usuario obtenerUsuarioPorId(int id) {
-        return restTemplate.getForObject(OBTENER_USUARIO_URL, Usuario.class, id);
+        return usuarios.obtener(id);
     }
 
     public List<Usuario> obtenerTodosLosUsuarios() {
@@ -95,13 +205,16 @@ public class AzureFunctionService {
 
     // ------------------ CRUD Usuarios GraphQL ------------------
     public List<Usuario> obtenerUsuariosGraphql() {
-        String graphqlPayload = """
-                {
-                  "query": "query { usuarios { id nombre email } }"
-                }
-                """;
+        return listaUsuarios.obtener(TODOS);
+    }
 
-        return ejecutarGraphqlUsuarios(graphqlPayload);
+    private List<Usuario> consultarUsuariosGraphql() {
+        String query = "query($after: String) { usuarios(first: " + TAMANO_PAGINA_GRAPHQL + ", after: $after) "
+                + "{ nodes { id nombre email roles { id rol } } pageInfo { hasNextPage endCursor } } }";
+
+        return ejecutarGraphqlPaginado(graphqlUsuariosUrl, query, "usuarios").stream()
+                .map(this::aUsuario)
+                .collect(Collectors.toList());
     }
 
     // ------------------ CRUD Usuarios REST (GET All) ------------------
@@ -111,13 +224,124 @@ public class AzureFunctionService {
 
     // ------------------ CRUD Roles GraphQL ------------------
     public List<Rol> obtenerRolesGraphql() {
-        String graphqlPayload = """
-                {
-                  "query": "query { roles { id rol } }"
-                }
-                """;
+        return listaRoles.obtener(TODOS);
+    }
+
+    private List<Rol> consultarRolesGraphql() {
+        String query = "query($after: String) { roles(first: " + TAMANO_PAGINA_GRAPHQL + ", after: $after) "
+                + "{ nodes { id rol } pageInfo { hasNextPage endCursor } } }";
+
+        return ejecutarGraphqlPaginado(graphqlRolesUrl, query, "roles").stream()
+                .map(r -> new Rol(
+                        idEntero(r.get("id")),
+                        (String) r.get("rol")))
+                .collect(Collectors.toList());
+    }
+
+    // ------------------ Panel combinado GraphQL ------------------
+    /**
+     * Obtiene usuarios y roles con una sola consulta al esquema combinado. Si
+     * alguno de los dos listados tiene más de una página, las siguientes se
+     * piden con @include solo para el listado que falta.
+     */
+    public Panel obtenerPanelGraphql() {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(plazoPanelMs);
+        List<String> incompletos = new ArrayList<>();
+        Panel panel = esperar(CompletableFuture.supplyAsync(() -> panelCombinado.obtener(TODOS), llamadasRemotas),
+                limite, "usuarios y roles", null, incompletos);
+        return panel != null ? panel : new Panel(List.of(), List.of(), List.of("usuarios", "roles"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Panel consultarPanelGraphql() {
+        String query = "query($despuesUsuarios: String, $despuesRoles: String, $conUsuarios: Boolean!, "
+                + "$conRoles: Boolean!) { "
+                + "usuarios(first: " + TAMANO_PAGINA_GRAPHQL + ", after: $despuesUsuarios) @include(if: $conUsuarios) "
+                + "{ nodes { id nombre email roles { id rol } } pageInfo { hasNextPage endCursor } } "
+                + "roles(first: " + TAMANO_PAGINA_GRAPHQL + ", after: $despuesRoles) @include(if: $conRoles) "
+                + "{ nodes { id rol } pageInfo { hasNextPage endCursor } } }";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        List<Usuario> usuarios = new ArrayList<>();
+        List<Rol> roles = new ArrayList<>();
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("conUsuarios", true);
+        variables.put("conRoles", true);
+        while (Boolean.TRUE.equals(variables.get("conUsuarios")) || Boolean.TRUE.equals(variables.get("conRoles"))) {
+            Map<String, Object> body = ejecutarGraphql(graphqlPanelUrl, query, variables, headers);
+            if (body == null || body.get("data") == null)
+                break;
+
+            Map<String, Object> data = (Map<String, Object>) body.get("data");
+            Map<String, Object> conexionUsuarios = (Map<String, Object>) data.get("usuarios");
+            if (conexionUsuarios != null) {
+                ((List<Map<String, Object>>) conexionUsuarios.get("nodes")).forEach(u -> usuarios.add(aUsuario(u)));
+                siguientePagina(conexionUsuarios, variables, "despuesUsuarios", "conUsuarios");
+            }
+            Map<String, Object> conexionRoles = (Map<String, Object>) data.get("roles");
+            if (conexionRoles != null) {
+                ((List<Map<String, Object>>) conexionRoles.get("nodes"))
+                        .forEach(r -> roles.add(new Rol(idEntero(r.get("id")), (String) r.get("rol"))));
+                siguientePagina(conexionRoles, variables, "despuesRoles", "conRoles");
+            }
+        }
+        return new Panel(usuarios, roles, List.of());
+    }
+
+    // ------------------ Panel combinado REST ------------------
+    /**
+     * Obtiene usuarios y roles en paralelo, de modo que el panel tarda lo que
+     * la llamada más lenta y no la suma de ambas. Si una no responde dentro
+     * del plazo, el panel se muestra con la otra.
+     */
+    public Panel obtenerPanelRest() {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(plazoPanelMs);
+        CompletableFuture<List<Usuario>> usuarios = CompletableFuture.supplyAsync(this::obtenerUsuariosRest,
+                llamadasRemotas);
+        CompletableFuture<List<Rol>> roles = CompletableFuture.supplyAsync(this::obtenerRolesRest, llamadasRemotas);
+
+        List<String> incompletos = new ArrayList<>();
+        return new Panel(
+                esperar(usuarios, limite, "usuarios", List.of(), incompletos),
+                esperar(roles, limite, "roles", List.of(), incompletos),
+                incompletos);
+    }
 
-        return ejecutarGraphqlRoles(graphqlPayload);
+    /**
+     * Espera el resultado hasta el instante límite (System.nanoTime). Si no
+     * llega a tiempo o falla, anota la sección como incompleta y retorna el
+     * valor por defecto. La llamada abandonada termina sola por el timeout de
+     * lectura del cliente HTTP.
+     */
+    private <T> T esperar(CompletableFuture<T> futuro, long limite, String seccion, T porDefecto,
+            List<String> incompletos) {
+        try {
+            return futuro.get(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            futuro.cancel(true);
+            log.warn("Panel sin {}: no respondió dentro de {} ms", seccion, plazoPanelMs);
+        } catch (ExecutionException e) {
+            log.warn("Panel sin {}: {}", seccion, e.getCause().toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futuro.cancel(true);
+        }
+        incompletos.add(seccion);
+        return porDefecto;
+    }
+
+    /**
+     * Deja en las variables el cursor de la página siguiente del listado, o
+     * lo excluye de la próxima consulta si no hay más páginas.
+     */
+    @SuppressWarnings("unchecked")
+    private static void siguientePagina(Map<String, Object> conexion, Map<String, Object> variables,
+            String cursor, String incluir) {
+        Map<String, Object> pageInfo = (Map<String, Object>) conexion.get("pageInfo");
+        boolean hayMas = Boolean.TRUE.equals(pageInfo.get("hasNextPage"));
+        variables.put(cursor, hayMas ? pageInfo.get("endCursor") : null);
+        variables.put(incluir, hayMas);
     }
 
     // ------------------ CRUD Roles REST ------------------
@@ -132,6 +356,7 @@ public class AzureFunctionService {
         HttpEntity<String> entity = new HttpEntity<>(body, headers);
 
         restTemplate.postForEntity(CREAR_ROL_URL, entity, String.class);
+        invalidarListadosRoles();
     }
 
     public void actualizarRol(Rol rol) {
@@ -141,76 +366,173 @@ public class AzureFunctionService {
         HttpEntity<String> entity = new HttpEntity<>(body, headers);
 
         restTemplate.exchange(ACTUALIZAR_ROL_URL, HttpMethod.PUT, entity, String.class, rol.getId());
+        roles.invalidar(rol.getId());
+        invalidarListadosRoles();
+        // Los listados de usuarios incluyen el nombre de sus roles
+        invalidarListadosUsuarios();
     }
 
     public void eliminarRol(int id) {
         restTemplate.exchange(ELIMINAR_ROL_URL, HttpMethod.DELETE, null, String.class, id);
+        roles.invalidar(id);
+        invalidarListadosRoles();
+        invalidarListadosUsuarios();
     }
 
     public Rol obtenerRolPorId(int id) {
-        return restTemplate.getForObject(OBTENER_ROL_URL, Rol.class, id);
+        return roles.obtener(id);
     }
 
-    // ------------------ Helpers privados ------------------
-    @SuppressWarnings("unchecked")
-    private List<Usuario> ejecutarGraphqlUsuarios(String graphqlPayload) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        HttpEntity<String> entity = new HttpEntity<>(graphqlPayload, headers);
-
-        ResponseEntity<Map<String, Object>> response = restTemplate.postForEntity(graphqlUsuariosUrl, entity,
-                (Class<Map<String, Object>>) (Class<?>) Map.class);
-
-        Map<String, Object> body = response.getBody();
-        System.out.println("Respuesta completa del GraphQL: " + body);
-        if (response.getStatusCode() != HttpStatus.OK || body == null)
-            return List.of();
-
-        Map<String, Object> data = (Map<String, Object>) body.get("data");
-        List<Map<String, Object>> users = (List<Map<String, Object>>) data.get("usuarios");
-
-        return users.stream()
-                .map(u -> {
-                    Object idRaw = u.get("id");
-                    int id = (idRaw instanceof Number)
-                            ? ((Number) idRaw).intValue()
-                            : Integer.parseInt(idRaw.toString());
-
-                    return new Usuario(
-                            id,
-                            (String) u.get("nombre"),
-                            (String) u.get("email"));
-                })
-                .collect(Collectors.toList());
+    // ------------------ Invalidación de la caché ------------------
+    private void invalidarListadosUsuarios() {
+        listaUsuarios.invalidar(TODOS);
+        panelCombinado.invalidar(TODOS);
+    }
+
+    private void invalidarListadosRoles() {
+        listaRoles.invalidar(TODOS);
+        panelCombinado.invalidar(TODOS);
     }
 
+    /**
+     * Invalida lo afectado por un evento de Event Grid publicado por las
+     * funciones (cambios hechos por otros clientes). Los eventos de consulta
+     * se ignoran y los de tipo desconocido vacían toda la caché.
+     *
+     * @param data Datos del evento; {@code id} es el usuario o rol afectado.
+     */
+    public void invalidarPorEvento(String tipo, Map<String, Object> data) {
+        Object id = data != null ? data.get("id") : null;
+        switch (tipo == null ? "" : tipo) {
+            case "UsuarioCreado", "RolAsignado" -> invalidarListadosUsuarios();
+            case "UsuarioActualizado", "UsuarioEliminado" -> {
+                if (id != null) {
+                    usuarios.invalidar(idEntero(id));
+                } else {
+                    usuarios.invalidarTodo();
+                }
+                invalidarListadosUsuarios();
+            }
+            case "RolCreado" -> invalidarListadosRoles();
+            case "RolActualizado", "RolEliminado" -> {
+                if (id != null) {
+                    roles.invalidar(idEntero(id));
+                } else {
+                    roles.invalidarTodo();
+                }
+                invalidarListadosRoles();
+                invalidarListadosUsuarios();
+            }
+            default -> {
+                if (tipo == null || !tipo.endsWith("Consultado")) {
+                    listaUsuarios.invalidarTodo();
+                    listaRoles.invalidarTodo();
+                    panelCombinado.invalidarTodo();
+                    usuarios.invalidarTodo();
+                    roles.invalidarTodo();
+                }
+            }
+        }
+    }
+
+    // ------------------ Helpers privados ------------------
+    /**
+     * Recorre todas las páginas de una consulta GraphQL paginada por cursor
+     * (variable $after) y retorna los nodos de todas ellas.
+     */
     @SuppressWarnings("unchecked")
-    private List<Rol> ejecutarGraphqlRoles(String graphqlPayload) {
+    private List<Map<String, Object>> ejecutarGraphqlPaginado(String url, String query, String campo) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
-        HttpEntity<String> entity = new HttpEntity<>(graphqlPayload, headers);
 
-        ResponseEntity<Map<String, Object>> response = restTemplate.postForEntity(graphqlRolesUrl, entity,
-                (Class<Map<String, Object>>) (Class<?>) Map.class);
+        List<Map<String, Object>> nodos = new ArrayList<>();
+        String after = null;
+        do {
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("after", after);
 
-        Map<String, Object> body = response.getBody();
-        if (response.getStatusCode() != HttpStatus.OK || body == null)
-            return List.of();
+            Map<String, Object> body = ejecutarGraphql(url, query, variables, headers);
+            if (body == null || body.get("data") == null)
+                break;
 
-        Map<String, Object> data = (Map<String, Object>) body.get("data");
-        List<Map<String, Object>> roles = (List<Map<String, Object>>) data.get("roles");
+            Map<String, Object> data = (Map<String, Object>) body.get("data");
+            Map<String, Object> conexion = (Map<String, Object>) data.get(campo);
+            nodos.addAll((List<Map<String, Object>>) conexion.get("nodes"));
 
-        return roles.stream()
-                .map(r -> {
-                    Object idRaw = r.get("id");
-                    int id = (idRaw instanceof Number)
-                            ? ((Number) idRaw).intValue()
-                            : Integer.parseInt(idRaw.toString());
+            Map<String, Object> pageInfo = (Map<String, Object>) conexion.get("pageInfo");
+            after = Boolean.TRUE.equals(pageInfo.get("hasNextPage")) ? (String) pageInfo.get("endCursor") : null;
+        } while (after != null);
 
-                    return new Rol(
-                            id,
-                            (String) r.get("rol"));
-                })
-                .collect(Collectors.toList());
+        return nodos;
+    }
+
+    /**
+     * Ejecuta una consulta con Automatic Persisted Queries: primero envía solo
+     * el hash SHA-256 y, si la función aún no conoce la consulta
+     * (PersistedQueryNotFound), la reenvía completa para que quede registrada.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> ejecutarGraphql(String url, String query, Map<String, Object> variables,
+            HttpHeaders headers) {
+        Map<String, Object> extensions = Map.of("persistedQuery",
+                Map.of("version", 1, "sha256Hash", hashesConsultas.computeIfAbsent(query, AzureFunctionService::sha256)));
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("variables", variables);
+        payload.put("extensions", extensions);
+        for (int intento = 0; intento < 2; intento++) {
+            if (intento == 1) {
+                payload.put("query", query);
+            }
+            // Copia: una petición de respaldo puede seguir en curso cuando el
+            // llamador ya cambió las variables para la página siguiente
+            Map<String, Object> envio = new HashMap<>(payload);
+            envio.put("variables", new HashMap<>(variables));
+            HttpEntity<Map<String, Object>> peticion = new HttpEntity<>(envio, headers);
+            ResponseEntity<Map<String, Object>> response = cobertura.ejecutar(url, () -> restTemplate.postForEntity(
+                    url, peticion, (Class<Map<String, Object>>) (Class<?>) Map.class));
+
+            Map<String, Object> body = response.getBody();
+            if (response.getStatusCode() != HttpStatus.OK || body == null)
+                return null;
+
+            List<Map<String, Object>> errores = (List<Map<String, Object>>) body.getOrDefault("errors", List.of());
+            boolean noRegistrada = errores.stream().anyMatch(e -> "PersistedQueryNotFound".equals(e.get("message")));
+            if (!noRegistrada)
+                return body;
+        }
+        return null;
+    }
+
+    private static String sha256(String texto) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(texto.getBytes(StandardCharsets.UTF_8));
+            return String.format("%064x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Convierte un nodo Usuario de GraphQL, incluidos sus roles (resueltos en
+     * la misma consulta, sin llamar a la función de roles).
+     */
+    @SuppressWarnings("unchecked")
+    private Usuario aUsuario(Map<String, Object> u) {
+        Usuario usuario = new Usuario(
+                idEntero(u.get("id")),
+                (String) u.get("nombre"),
+                (String) u.get("email"));
+        List<Map<String, Object>> roles = (List<Map<String, Object>>) u.getOrDefault("roles", List.of());
+        usuario.setRoles(roles.stream()
+                .map(r -> new Rol(idEntero(r.get("id")), (String) r.get("rol")))
+                .collect(Collectors.toList()));
+        return usuario;
+    }
+
+    private static int idEntero(Object idRaw) {
+        return (idRaw instanceof Number)
+                ? ((Number) idRaw).intValue()
+                : Integer.parseInt(idRaw.toString());
     }
 }
@@ -0,0 +1,74 @@
+package proyecto.vetefaas.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Caché de lectura (read-through) de las respuestas de las funciones.
+ *
+ * Las entradas se descartan por tamaño (LRU aproximado) o al cumplir el TTL.
+ * Pasado el tiempo de refresco, una entrada se sigue sirviendo mientras se
+ * recarga en segundo plano (stale-while-revalidate); si la recarga falla, se
+ * conserva la anterior. Si la entrada se invalida durante una recarga, el
+ * resultado de esa recarga se descarta.
+ *
+ * Métricas: cache.gets (hit/miss), cache.evictions, etc. de Micrometer con el
+ * tag cache=nombre, y vetefaas.cache.antiguedad con la antigüedad de cada
+ * entrada servida.
+ */
+class CacheLectura<K, V> {
+
+    private record Entrada<V>(V valor, long obtenidaEn) {
+    }
+
+    private final LoadingCache<K, Entrada<V>> cache;
+    private final Timer antiguedad;
+
+    /**
+     * @param cargar Carga el valor desde la función; null no se guarda.
+     */
+    CacheLectura(String nombre, long maximo, Duration ttl, Duration refresco, Executor executor,
+            MeterRegistry registry, Function<K, V> cargar) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximo)
+                .expireAfterWrite(ttl)
+                .refreshAfterWrite(refresco)
+                .executor(executor)
+                .recordStats()
+                .build(clave -> {
+                    V valor = cargar.apply(clave);
+                    return valor == null ? null : new Entrada<>(valor, System.nanoTime());
+                });
+        CaffeineCacheMetrics.monitor(registry, cache, nombre);
+        this.antiguedad = Timer.builder("vetefaas.cache.antiguedad")
+                .tag("cache", nombre)
+                .description("Antigüedad de las entradas servidas desde la caché")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
+    V obtener(K clave) {
+        Entrada<V> entrada = cache.get(clave);
+        if (entrada == null) {
+            return null;
+        }
+        antiguedad.record(System.nanoTime() - entrada.obtenidaEn(), TimeUnit.NANOSECONDS);
+        return entrada.valor();
+    }
+
+    void invalidar(K clave) {
+        cache.invalidate(clave);
+    }
+
+    void invalidarTodo() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,256 @@
+package proyecto.vetefaas.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Peticiones de respaldo (hedging) para las lecturas idempotentes hacia las
+ * funciones: si la respuesta no llega dentro del percentil configurado de la
+ * latencia reciente de esa operación, se envía una segunda petición igual y
+ * se usa la que responda primero. Así un arranque en frío de una instancia
+ * del plan de consumo no se traslada entero a la página.
+ *
+ * Las peticiones de respaldo tienen un presupuesto global: cada lectura
+ * abona {@code presupuesto} (p. ej. 0,1) a un saldo acotado y cada respaldo
+ * gasta 1, de modo que nunca superan esa fracción de las lecturas y una
+ * degradación general no duplica la carga sobre las funciones.
+ *
+ * Desactivado por defecto (vetefaas.cobertura.habilitada). La petición que
+ * pierde no se interrumpe: termina sola por el timeout de lectura del
+ * cliente HTTP.
+ */
+@Component
+public class CoberturaLecturas {
+
+    // El saldo se lleva en milésimas de respaldo, para no acumular error de redondeo
+    private static final long RESPALDO = 1000;
+    /** Saldo máximo: respaldos seguidos que se permiten tras un período tranquilo. */
+    private static final long SALDO_MAXIMO = 10 * RESPALDO;
+
+    private final boolean habilitada;
+    private final double percentil;
+    private final long minimoMs;
+    private final int muestrasMinimas;
+    private final int tamanoVentana;
+    private final long abonoPorLectura;
+
+    private final Map<String, Ventana> ventanas = new ConcurrentHashMap<>();
+    private long saldo;
+
+    // Propio y sin límite de hilos: quien llama puede ser un hilo del pool del
+    // panel o de la caché, y la concurrencia ya la acota el pool HTTP
+    private final ExecutorService intentos;
+
+    private final MeterRegistry registry;
+    private final Counter sinPresupuesto;
+
+    public CoberturaLecturas(
+            @Value("${vetefaas.cobertura.habilitada:false}") boolean habilitada,
+            @Value("${vetefaas.cobertura.percentil:95}") double percentil,
+            @Value("${vetefaas.cobertura.minimo-ms:50}") long minimoMs,
+            @Value("${vetefaas.cobertura.muestras-minimas:20}") int muestrasMinimas,
+            @Value("${vetefaas.cobertura.ventana:200}") int tamanoVentana,
+            @Value("${vetefaas.cobertura.presupuesto:0.1}") double presupuesto,
+            MeterRegistry registry) {
+        this.habilitada = habilitada;
+        this.percentil = percentil;
+        this.minimoMs = minimoMs;
+        this.muestrasMinimas = muestrasMinimas;
+        this.tamanoVentana = tamanoVentana;
+        this.abonoPorLectura = Math.round(presupuesto * RESPALDO);
+        this.registry = registry;
+
+        AtomicInteger contador = new AtomicInteger();
+        this.intentos = Executors.newCachedThreadPool(r -> {
+            Thread hilo = new Thread(r, "cobertura-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        this.sinPresupuesto = Counter.builder("vetefaas.cobertura.sin.presupuesto")
+                .description("Respaldos no enviados por falta de presupuesto")
+                .register(registry);
+        Gauge.builder("vetefaas.cobertura.saldo", this, CoberturaLecturas::saldo)
+                .description("Respaldos disponibles en el presupuesto")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        intentos.shutdownNow();
+    }
+
+    /**
+     * Ejecuta una lectura idempotente con respaldo.
+     *
+     * @param operacion Nombre de la operación; cada una lleva su propia
+     *                  latencia reciente.
+     * @return El resultado de la primera petición exitosa. Si ambas fallan, se
+     *         lanza el error de la primera.
+     */
+    public <T> T ejecutar(String operacion, Supplier<T> llamada) {
+        if (!habilitada) {
+            return llamada.get();
+        }
+        Ventana ventana = ventanas.computeIfAbsent(operacion, Ventana::new);
+        abonar();
+
+        long umbralMs = ventana.umbralMs();
+        if (umbralMs < 0) {
+            // Aún sin latencias suficientes para estimar el percentil
+            return medir(ventana, llamada);
+        }
+
+        CompletableFuture<T> primera = CompletableFuture.supplyAsync(() -> medir(ventana, llamada), intentos);
+        try {
+            return primera.get(umbralMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Sigue en curso: se evalúa el respaldo
+        } catch (ExecutionException e) {
+            throw relanzar(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Lectura interrumpida: " + operacion);
+        }
+
+        if (!gastar()) {
+            sinPresupuesto.increment();
+            return esperar(primera);
+        }
+        ventana.enviadas.increment();
+        CompletableFuture<T> segunda = CompletableFuture.supplyAsync(() -> medir(ventana, llamada), intentos);
+
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        primera.whenComplete((valor, error) -> {
+            if (error == null) {
+                resultado.complete(valor);
+            } else {
+                // Si la primera falla, se espera el respaldo
+                segunda.whenComplete((v, e) -> {
+                    if (e != null) {
+                        resultado.completeExceptionally(error);
+                    }
+                });
+            }
+        });
+        segunda.whenComplete((valor, error) -> {
+            if (error == null && resultado.complete(valor)) {
+                ventana.ganadas.increment();
+            }
+        });
+        return esperar(resultado);
+    }
+
+    /**
+     * Umbral actual de la operación en ms, o -1 si aún no hay muestras
+     * suficientes.
+     */
+    long umbralMs(String operacion) {
+        Ventana ventana = ventanas.get(operacion);
+        return ventana == null ? -1 : ventana.umbralMs();
+    }
+
+    /** Respaldos disponibles. */
+    synchronized double saldo() {
+        return (double) saldo / RESPALDO;
+    }
+
+    private synchronized void abonar() {
+        saldo = Math.min(SALDO_MAXIMO, saldo + abonoPorLectura);
+    }
+
+    private synchronized boolean gastar() {
+        if (saldo < RESPALDO) {
+            return false;
+        }
+        saldo -= RESPALDO;
+        return true;
+    }
+
+    private static <T> T medir(Ventana ventana, Supplier<T> llamada) {
+        long inicio = System.nanoTime();
+        T valor = llamada.get();
+        // Solo las exitosas: los errores rápidos bajarían el umbral
+        ventana.registrar(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        return valor;
+    }
+
+    private static <T> T esperar(CompletableFuture<T> futuro) {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            throw relanzar(e.getCause());
+        }
+    }
+
+    /** Relanza el error original de la llamada (RestClientException, etc.). */
+    private static RuntimeException relanzar(Throwable causa) {
+        if (causa instanceof RuntimeException r) {
+            return r;
+        }
+        if (causa instanceof Error e) {
+            throw e;
+        }
+        return new CompletionException(causa);
+    }
+
+    /**
+     * Últimas latencias exitosas de una operación (ventana circular) y sus
+     * contadores.
+     */
+    private class Ventana {
+
+        private final long[] latencias = new long[tamanoVentana];
+        private int siguiente;
+        private int cantidad;
+
+        final Counter enviadas;
+        final Counter ganadas;
+
+        Ventana(String operacion) {
+            this.enviadas = Counter.builder("vetefaas.cobertura.respaldos")
+                    .tag("operacion", operacion)
+                    .tag("resultado", "enviado")
+                    .description("Peticiones de respaldo")
+                    .register(registry);
+            this.ganadas = Counter.builder("vetefaas.cobertura.respaldos")
+                    .tag("operacion", operacion)
+                    .tag("resultado", "ganado")
+                    .description("Peticiones de respaldo")
+                    .register(registry);
+        }
+
+        synchronized void registrar(long ms) {
+            latencias[siguiente] = ms;
+            siguiente = (siguiente + 1) % latencias.length;
+            cantidad = Math.min(cantidad + 1, latencias.length);
+        }
+
+        synchronized long umbralMs() {
+            if (cantidad < muestrasMinimas) {
+                return -1;
+            }
+            long[] ordenadas = Arrays.copyOf(latencias, cantidad);
+            Arrays.sort(ordenadas);
+            int indice = (int) Math.ceil(percentil / 100 * cantidad) - 1;
+            return Math.max(minimoMs, ordenadas[Math.max(0, Math.min(indice, cantidad - 1))]);
+        }
+    }
+}
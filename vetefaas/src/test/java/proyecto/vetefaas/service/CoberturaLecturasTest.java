@@ -0,0 +1,291 @@
+package proyecto.vetefaas.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de las peticiones de respaldo contra un servidor local cuyas
+ * respuestas controla la prueba: cada petición programada espera a que se la
+ * libere, así que las aserciones son sobre el orden de las peticiones y los
+ * contadores, no sobre el tiempo transcurrido.
+ */
+class CoberturaLecturasTest {
+
+    /** Cota de seguridad de las esperas; ninguna aserción depende de ella. */
+    private static final long ESPERA_S = 10;
+
+    private HttpServer servidor;
+    private String url;
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger peticiones = new AtomicInteger();
+    // Guiones de las próximas peticiones, en orden de llegada; sin guion se responde 200 de inmediato
+    private final Queue<Guion> guiones = new ConcurrentLinkedQueue<>();
+    private final List<Guion> todos = new CopyOnWriteArrayList<>();
+    // Estados de error que recibió el cliente, en orden
+    private final BlockingQueue<Integer> fallos = new LinkedBlockingQueue<>();
+    private CoberturaLecturas cobertura;
+
+    /** Respuesta programada: avisa al llegar, espera a que se la libere y responde con el estado. */
+    private static final class Guion {
+        final int estado;
+        final CountDownLatch llego = new CountDownLatch(1);
+        final CountDownLatch liberar = new CountDownLatch(1);
+        final CountDownLatch respondio = new CountDownLatch(1);
+
+        Guion(int estado) {
+            this.estado = estado;
+        }
+
+        void esperarLlegada() throws InterruptedException {
+            assertTrue(llego.await(ESPERA_S, TimeUnit.SECONDS), "la petición no llegó");
+        }
+    }
+
+    @BeforeEach
+    void iniciar() throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        servidor.createContext("/", intercambio -> {
+            int numero = peticiones.incrementAndGet();
+            Guion guion = guiones.poll();
+            int estado = 200;
+            if (guion != null) {
+                guion.llego.countDown();
+                try {
+                    guion.liberar.await(ESPERA_S, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                estado = guion.estado;
+            }
+            byte[] cuerpo = String.valueOf(numero).getBytes(StandardCharsets.UTF_8);
+            intercambio.sendResponseHeaders(estado, cuerpo.length);
+            intercambio.getResponseBody().write(cuerpo);
+            intercambio.close();
+            if (guion != null) {
+                guion.respondio.countDown();
+            }
+        });
+        servidor.setExecutor(Executors.newCachedThreadPool());
+        servidor.start();
+        url = "http://127.0.0.1:" + servidor.getAddress().getPort() + "/";
+    }
+
+    @AfterEach
+    void detener() {
+        // Ninguna petición queda colgada aunque la prueba haya fallado
+        todos.forEach(guion -> guion.liberar.countDown());
+        servidor.stop(0);
+        if (cobertura != null) {
+            cobertura.cerrar();
+        }
+    }
+
+    private CoberturaLecturas cobertura(boolean habilitada, double presupuesto) {
+        cobertura = new CoberturaLecturas(habilitada, 95, 50, 20, 200, presupuesto, registry);
+        return cobertura;
+    }
+
+    private Guion programar(int estado) {
+        Guion guion = new Guion(estado);
+        guiones.add(guion);
+        todos.add(guion);
+        return guion;
+    }
+
+    private String leer(CoberturaLecturas cobertura) {
+        return cobertura.ejecutar("prueba", () -> {
+            try {
+                return restTemplate.getForObject(url, String.class);
+            } catch (HttpStatusCodeException e) {
+                fallos.add(e.getStatusCode().value());
+                throw e;
+            }
+        });
+    }
+
+    private CompletableFuture<String> leerEnParalelo(CoberturaLecturas cobertura) {
+        return CompletableFuture.supplyAsync(() -> leer(cobertura));
+    }
+
+    private static String resultado(CompletableFuture<String> lectura) throws Exception {
+        return lectura.get(ESPERA_S, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Espera a que el contador llegue al valor: se incrementa en el hilo de la
+     * petición, que puede ir detrás del que recibe el resultado.
+     */
+    private static void esperarContador(double esperado, DoubleSupplier contador) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(ESPERA_S);
+        while (contador.getAsDouble() < esperado && System.nanoTime() < limite) {
+            Thread.sleep(5);
+        }
+        assertEquals(esperado, contador.getAsDouble());
+    }
+
+    /** Espera a que la lectura decida no enviar respaldo por falta de presupuesto. */
+    private void esperarSinPresupuesto(double esperado) throws InterruptedException {
+        esperarContador(esperado, () -> registry.get("vetefaas.cobertura.sin.presupuesto").counter().count());
+    }
+
+    private double respaldos(String resultado) {
+        return registry.find("vetefaas.cobertura.respaldos").tag("resultado", resultado).counters().stream()
+                .mapToDouble(Counter::count).sum();
+    }
+
+    /** Llena la ventana de latencias con lecturas inmediatas (y abona presupuesto). */
+    private void calentar(CoberturaLecturas cobertura) {
+        for (int i = 0; i < 20; i++) {
+            leer(cobertura);
+        }
+        peticiones.set(0);
+    }
+
+    @Test
+    void respaldoRespondeAntesQueLaPeticionLenta() throws Exception {
+        CoberturaLecturas cobertura = cobertura(true, 0.1);
+        calentar(cobertura);
+        assertTrue(cobertura.umbralMs("prueba") >= 50);
+
+        // La primera queda retenida hasta el final de la prueba
+        Guion lenta = programar(200);
+        CompletableFuture<String> lectura = leerEnParalelo(cobertura);
+
+        // Responde el respaldo (segunda petición) mientras la primera sigue sin responder
+        assertEquals("2", resultado(lectura));
+        assertEquals(1, lenta.respondio.getCount());
+        assertEquals(2, peticiones.get());
+        assertEquals(1.0, respaldos("enviado"));
+        esperarContador(1, () -> respaldos("ganado"));
+    }
+
+    @Test
+    void sinPresupuestoEsperaLaPrimera() throws Exception {
+        CoberturaLecturas cobertura = cobertura(true, 0);
+        calentar(cobertura);
+
+        Guion lenta = programar(200);
+        CompletableFuture<String> lectura = leerEnParalelo(cobertura);
+        lenta.esperarLlegada();
+
+        // Venció el umbral y no había presupuesto: sigue esperando a la primera
+        esperarSinPresupuesto(1);
+        assertFalse(lectura.isDone());
+
+        lenta.liberar.countDown();
+        assertEquals("1", resultado(lectura));
+        assertEquals(1, peticiones.get());
+    }
+
+    @Test
+    void presupuestoLimitaLosRespaldos() throws Exception {
+        // 20 lecturas de calentamiento abonan 2 respaldos
+        CoberturaLecturas cobertura = cobertura(true, 0.1);
+        calentar(cobertura);
+        assertEquals(2.0, cobertura.saldo());
+
+        // Las dos primeras lecturas lentas llevan respaldo (peticiones 1 a 4)
+        programar(200);
+        assertEquals("2", resultado(leerEnParalelo(cobertura)));
+        programar(200);
+        assertEquals("4", resultado(leerEnParalelo(cobertura)));
+
+        // La tercera ya no tiene presupuesto y responde la propia (petición 5)
+        Guion tercera = programar(200);
+        CompletableFuture<String> lectura = leerEnParalelo(cobertura);
+        tercera.esperarLlegada();
+        esperarSinPresupuesto(1);
+        tercera.liberar.countDown();
+        assertEquals("5", resultado(lectura));
+
+        assertEquals(5, peticiones.get());
+        assertEquals(2.0, respaldos("enviado"));
+        assertEquals(0.3, cobertura.saldo(), 1e-9);
+    }
+
+    @Test
+    void siLaPrimeraFallaUsaElRespaldo() throws Exception {
+        CoberturaLecturas cobertura = cobertura(true, 0.1);
+        calentar(cobertura);
+
+        Guion primera = programar(500);
+        Guion respaldo = programar(200);
+        CompletableFuture<String> lectura = leerEnParalelo(cobertura);
+        primera.esperarLlegada();
+        respaldo.esperarLlegada();
+
+        // La primera falla antes de que responda el respaldo
+        primera.liberar.countDown();
+        assertEquals(500, fallos.poll(ESPERA_S, TimeUnit.SECONDS));
+        assertFalse(lectura.isDone());
+
+        respaldo.liberar.countDown();
+        assertEquals("2", resultado(lectura));
+    }
+
+    @Test
+    void siAmbasFallanRelanzaElError() throws Exception {
+        CoberturaLecturas cobertura = cobertura(true, 0.1);
+        calentar(cobertura);
+
+        Guion primera = programar(500);
+        Guion respaldo = programar(503);
+        CompletableFuture<String> lectura = leerEnParalelo(cobertura);
+        primera.esperarLlegada();
+        respaldo.esperarLlegada();
+
+        // El respaldo falla primero: se sigue esperando a la primera
+        respaldo.liberar.countDown();
+        assertEquals(503, fallos.poll(ESPERA_S, TimeUnit.SECONDS));
+        assertFalse(lectura.isDone());
+
+        // Se relanza el error de la primera petición
+        primera.liberar.countDown();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> resultado(lectura));
+        HttpServerErrorException causa = assertInstanceOf(HttpServerErrorException.class, e.getCause());
+        assertEquals(500, causa.getStatusCode().value());
+    }
+
+    @Test
+    void deshabilitadaHaceUnaSolaPeticion() throws Exception {
+        CoberturaLecturas cobertura = cobertura(false, 0.1);
+        calentar(cobertura);
+
+        Guion lenta = programar(200);
+        CompletableFuture<String> lectura = leerEnParalelo(cobertura);
+        lenta.esperarLlegada();
+        lenta.liberar.countDown();
+
+        assertEquals("1", resultado(lectura));
+        assertEquals(1, peticiones.get());
+        assertEquals(-1, cobertura.umbralMs("prueba"));
+        assertTrue(registry.find("vetefaas.cobertura.respaldos").counters().isEmpty());
+    }
+}